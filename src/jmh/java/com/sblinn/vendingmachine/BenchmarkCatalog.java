@@ -0,0 +1,54 @@
+package com.sblinn.vendingmachine;
+
+import com.sblinn.vendingmachine.dto.Item;
+import com.sblinn.vendingmachine.dto.Money;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Generates catalogs of any size for the benchmarks. Slots are named A0, A1,
+ * ... and every item costs $2.50. The catalog benchmarks run with 10 to
+ * 1,000,000 slots, narrow a run with e.g. -p catalogSize=10,1000
+ *
+ * @author sarablinn
+ */
+public class BenchmarkCatalog {
+
+    private BenchmarkCatalog() {
+    }
+
+
+    public static Item item(int slot, int numAvailable) {
+        return new Item("A" + slot, "Item " + slot, numAvailable,
+                Money.ofCents(250));
+    }
+
+    public static List<Item> items(int catalogSize) {
+        List<Item> items = new ArrayList<>(catalogSize);
+        for(int i = 0; i < catalogSize; i++) {
+            items.add(item(i, 5));
+        }
+        return items;
+    }
+
+    /**
+     * Writes an inventory text file with catalogSize slots, each holding
+     * numAvailable items, to a temp file the caller should delete.
+     */
+    public static File inventoryFile(int catalogSize, int numAvailable)
+            throws IOException {
+        File inventoryFile = File.createTempFile("inventory", ".txt");
+        try (PrintWriter out = new PrintWriter(new FileWriter(inventoryFile))) {
+            for(int i = 0; i < catalogSize; i++) {
+                out.println("A" + i + "::Item " + i + "::" + numAvailable
+                        + "::2.50");
+            }
+        }
+        return inventoryFile;
+    }
+
+}
@@ -0,0 +1,64 @@
+package com.sblinn.vendingmachine.dao;
+
+import com.sblinn.vendingmachine.BenchmarkCatalog;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of reading and writing the whole inventory text file, by catalog size.
+ *
+ * @author sarablinn
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class InventoryFileBenchmark {
+
+    @Param({"10", "1000", "100000", "1000000"})
+    public int catalogSize;
+
+    private File inventoryFile;
+    private VendingMachineDaoFileImpl dao;
+
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        inventoryFile = BenchmarkCatalog.inventoryFile(catalogSize, 5);
+        // legacy mode, so every loadInventory() reads the file
+        dao = new VendingMachineDaoFileImpl(inventoryFile.getPath(), false);
+        dao.loadInventory();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        inventoryFile.delete();
+    }
+
+    @Benchmark
+    public void loadInventory() throws PersistenceException {
+        dao.loadInventory();
+    }
+
+    @Benchmark
+    public void writeInventory() throws PersistenceException {
+        dao.writeInventory();
+    }
+
+}
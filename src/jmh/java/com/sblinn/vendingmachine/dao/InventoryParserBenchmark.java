@@ -0,0 +1,106 @@
+package com.sblinn.vendingmachine.dao;
+
+import com.sblinn.vendingmachine.BenchmarkCatalog;
+import com.sblinn.vendingmachine.dto.Item;
+import com.sblinn.vendingmachine.dto.Money;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Scanner;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Time to parse a whole inventory text file into a map of items: the
+ * Scanner and String.split("::") loop loadInventory() used to run, against
+ * InventoryFileParser. Run with
+ * -Djmh.args="InventoryParserBenchmark -p catalogSize=1000000".
+ *
+ * @author sarablinn
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class InventoryParserBenchmark {
+
+    @Param({"100000", "1000000"})
+    public int catalogSize;
+
+    private File inventoryFile;
+    private final InventoryFileParser parser = new InventoryFileParser();
+
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        inventoryFile = BenchmarkCatalog.inventoryFile(catalogSize, 5);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        inventoryFile.delete();
+    }
+
+    @Benchmark
+    public Map<String, Item> scannerSplit() throws IOException {
+        Map<String, Item> items = new HashMap<>();
+        scannerSplit(items::put);
+        return items;
+    }
+
+    @Benchmark
+    public Map<String, Item> byteScanning() throws PersistenceException {
+        Map<String, Item> items = new HashMap<>();
+        parser.parse(inventoryFile.toPath(),
+                (item) -> items.put(item.getLocationID(), item));
+        return items;
+    }
+
+    /**
+     * Parse cost alone, without building the map both loaders share.
+     */
+    @Benchmark
+    public void scannerSplitParseOnly(Blackhole blackhole) throws IOException {
+        scannerSplit((locationID, item) -> blackhole.consume(item));
+    }
+
+    @Benchmark
+    public int byteScanningParseOnly(Blackhole blackhole)
+            throws PersistenceException {
+        return parser.parse(inventoryFile.toPath(), blackhole::consume);
+    }
+
+    private void scannerSplit(BiConsumer<String, Item> items)
+            throws IOException {
+        try (Scanner scanner = new Scanner(new BufferedReader(
+                new FileReader(inventoryFile)))) {
+            while(scanner.hasNextLine()) {
+                String[] itemData = scanner.nextLine().split("::");
+                Item item = new Item(itemData[0], itemData[1],
+                        Integer.parseInt(itemData[2]),
+                        Money.parse(itemData[3]));
+                items.accept(item.getLocationID(), item);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,113 @@
+package com.sblinn.vendingmachine.dao;
+
+import com.sblinn.vendingmachine.BenchmarkCatalog;
+import com.sblinn.vendingmachine.dto.Item;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Menu readers against a sale writer on one cached file DAO. Each group runs
+ * three reader threads, which walk every in-stock item the way the menu
+ * does, and one writer thread, which sells one item from a slot per call.
+ *
+ * snapshot readers take the DAO's current InventorySnapshot, with no lock.
+ * locked readers hold the DAO's lock while they walk the items, the way
+ * every read was served before the inventory was kept as snapshots, so they
+ * wait out each sale's file write.
+ *
+ * @author sarablinn
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class InventorySnapshotBenchmark {
+
+    @Param({"100", "10000"})
+    public int catalogSize;
+
+    private File inventoryFile;
+    private VendingMachineDaoFileImpl dao;
+    private final AtomicInteger nextSlot = new AtomicInteger();
+
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException, PersistenceException {
+        inventoryFile = BenchmarkCatalog.inventoryFile(catalogSize,
+                Integer.MAX_VALUE);
+        dao = new VendingMachineDaoFileImpl(inventoryFile.getPath(), true);
+        dao.loadInventory();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        inventoryFile.delete();
+    }
+
+
+    @Benchmark
+    @Group("snapshot")
+    @GroupThreads(3)
+    public long snapshotRead() throws PersistenceException {
+        return walk(dao.getInventorySnapshot().getInStockItems());
+    }
+
+    @Benchmark
+    @Group("snapshot")
+    @GroupThreads(1)
+    public Item snapshotSale() throws PersistenceException {
+        return sell();
+    }
+
+    @Benchmark
+    @Group("locked")
+    @GroupThreads(3)
+    public long lockedRead() throws PersistenceException {
+        synchronized(dao) {
+            return walk(dao.getInStockItems());
+        }
+    }
+
+    @Benchmark
+    @Group("locked")
+    @GroupThreads(1)
+    public Item lockedSale() throws PersistenceException {
+        return sell();
+    }
+
+
+    private Item sell() throws PersistenceException {
+        String locationID = "A" + (nextSlot.getAndIncrement() % catalogSize);
+        Item item = dao.getItem(locationID);
+        return dao.updateItem(locationID,
+                item.withNumAvailable(item.getNumAvailable() - 1));
+    }
+
+    private static long walk(Iterable<Item> items) {
+        long numAvailable = 0;
+        for(Item item : items) {
+            numAvailable += item.getNumAvailable();
+        }
+        return numAvailable;
+    }
+
+}
@@ -0,0 +1,43 @@
+package com.sblinn.vendingmachine.dao;
+
+import com.sblinn.vendingmachine.BenchmarkCatalog;
+import com.sblinn.vendingmachine.dto.Item;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Per-line cost of converting an Item to and from the inventory text format.
+ *
+ * @author sarablinn
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ItemMarshallingBenchmark {
+
+    private final Item item = BenchmarkCatalog.item(4711, 5);
+    private final String itemAsText = "A4711::Item 4711::5::2.50";
+
+
+    @Benchmark
+    public String marshallItem() {
+        return VendingMachineDaoFileImpl.marshallItem(item);
+    }
+
+    @Benchmark
+    public Item unmarshallItem() {
+        return VendingMachineDaoFileImpl.unmarshallItem(itemAsText);
+    }
+
+}
@@ -0,0 +1,69 @@
+package com.sblinn.vendingmachine.dao;
+
+import com.sblinn.vendingmachine.dto.Item;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares getItem() latency of the per-call reload DAO against cached mode.
+ *
+ * @author sarablinn
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class VendingMachineDaoFileImplBenchmark {
+
+    @Param({"false", "true"})
+    public boolean cached;
+
+    @Param({"10", "100", "1000"})
+    public int catalogSize;
+
+    private File inventoryFile;
+    private VendingMachineDao dao;
+    private String locationID;
+
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        inventoryFile = File.createTempFile("inventory", ".txt");
+        try (PrintWriter out = new PrintWriter(new FileWriter(inventoryFile))) {
+            for(int i = 0; i < catalogSize; i++) {
+                out.println("A" + i + "::Item " + i + "::5::2.50");
+            }
+        }
+        dao = new VendingMachineDaoFileImpl(inventoryFile.getPath(), cached);
+        locationID = "A" + (catalogSize / 2);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        inventoryFile.delete();
+    }
+
+    @Benchmark
+    public Item getItem() throws PersistenceException {
+        return dao.getItem(locationID);
+    }
+
+}
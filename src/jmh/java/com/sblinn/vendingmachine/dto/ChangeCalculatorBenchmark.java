@@ -0,0 +1,48 @@
+package com.sblinn.vendingmachine.dto;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Time to make change for small and very large refunds. The time should be
+ * the same for every amount, and with -prof gc the reused holder should show
+ * no allocation:
+ *     mvn -Pbenchmark test-compile exec:exec \
+ *         -Djmh.args="ChangeCalculatorBenchmark -prof gc"
+ *
+ * @author sarablinn
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ChangeCalculatorBenchmark {
+
+    @Param({"91", "1000004"})
+    private long changeInPennies;
+
+    private final Change holder = new Change(0, 0, 0, 0);
+
+
+    @Benchmark
+    public Change reusedHolder() {
+        return ChangeCalculator.ALL_COINS.calculate(changeInPennies, holder);
+    }
+
+    @Benchmark
+    public Change newChange() {
+        return new Change(Money.ofCents(changeInPennies));
+    }
+
+}
@@ -0,0 +1,208 @@
+package com.sblinn.vendingmachine.load;
+
+import com.sblinn.vendingmachine.controller.VendingMachineController;
+import com.sblinn.vendingmachine.load.ScriptedUserIO.Operation;
+import com.sblinn.vendingmachine.load.ScriptedUserIO.Step;
+import com.sblinn.vendingmachine.metrics.LatencyHistogram;
+import com.sblinn.vendingmachine.service.VendingMachineServiceLayer;
+import com.sblinn.vendingmachine.ui.VendingMachineView;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.springframework.context.support.FileSystemXmlApplicationContext;
+
+/**
+ * Drives many concurrent controller sessions through the real Spring wiring
+ * and reports throughput and latency percentiles per controller operation.
+ *
+ *     mvn -Pbenchmark test-compile exec:exec@load-driver \
+ *         -Dload.args="--sessions 5000 --threads 32"
+ *
+ * Options:
+ *     --context FILE     Spring context, the built applicationContext.xml
+ *     --sessions N       sessions to run (default 1000)
+ *     --threads N        sessions running at once (default 16)
+ *     --steps N          random steps per session (default 10)
+ *     --catalog N        slots in the generated inventory.txt (default 100)
+ *     --seed N           seed for the random sessions (default 42)
+ *     --script STEPS     play the same steps in every session instead of 
+ *                        random ones, e.g. "insert 12 0 0 0; buy A1"
+ *
+ * The run happens in the current directory (target/load-driver when started
+ * through Maven), where inventory.txt is generated and audit.txt is written.
+ *
+ * @author sarablinn
+ */
+public class LoadDriver {
+
+    private String contextFile = "applicationContext.xml";
+    private int sessions = 1000;
+    private int threads = 16;
+    private int stepsPerSession = 10;
+    private int catalogSize = 100;
+    private long seed = 42;
+    private List<Step> script;
+
+    private final Map<Operation, LatencyHistogram> latencies =
+            new EnumMap<>(Operation.class);
+
+
+    public static void main(String[] args) throws Exception {
+        LoadDriver driver = new LoadDriver();
+        driver.parseArgs(args);
+        driver.run();
+    }
+
+
+    private void run() throws Exception {
+        for(Operation operation : Operation.values()) {
+            latencies.put(operation, new LatencyHistogram());
+        }
+        writeInventory();
+
+        try (FileSystemXmlApplicationContext appContext =
+                new FileSystemXmlApplicationContext("file:" + contextFile)) {
+            VendingMachineServiceLayer service = appContext.getBean(
+                    "service", VendingMachineServiceLayer.class);
+
+            ExecutorService pool = Executors.newFixedThreadPool(threads);
+            List<Future<Integer>> results = new ArrayList<>();
+            long start = System.nanoTime();
+            for(int i = 0; i < sessions; i++) {
+                List<Step> steps = script != null
+                        ? script : randomSteps(new SplittableRandom(seed + i));
+                results.add(pool.submit(() -> runSession(service, steps)));
+            }
+            int purchases = 0;
+            for(Future<Integer> result : results) {
+                purchases += result.get();
+            }
+            long elapsed = System.nanoTime() - start;
+            pool.shutdown();
+            pool.awaitTermination(1, TimeUnit.MINUTES);
+
+            report(elapsed, purchases);
+        }
+    }
+
+    private int runSession(VendingMachineServiceLayer service,
+            List<Step> steps) {
+        ScriptedUserIO io = new ScriptedUserIO(steps, latencies);
+        new VendingMachineController(new VendingMachineView(io), service).run();
+        io.finishSession();
+        return io.getPurchases();
+    }
+
+    private List<Step> randomSteps(SplittableRandom random) {
+        List<Step> steps = new ArrayList<>(stepsPerSession);
+        for(int i = 0; i < stepsPerSession; i++) {
+            if(random.nextInt(10) < 6) {
+                steps.add(Step.insertCoins(random.nextInt(9),
+                        random.nextInt(6), random.nextInt(6),
+                        random.nextInt(11)));
+            } else {
+                steps.add(Step.purchase("A" + random.nextInt(catalogSize)));
+            }
+        }
+        return steps;
+    }
+
+    /**
+     * Generates inventory.txt with plenty of stock in every slot.
+     */
+    private void writeInventory() throws IOException {
+        SplittableRandom random = new SplittableRandom(seed);
+        try (PrintWriter out = new PrintWriter(
+                new FileWriter("inventory.txt"))) {
+            for(int i = 0; i < catalogSize; i++) {
+                int priceInNickels = 10 + random.nextInt(51);
+                out.println("A" + i + "::Item " + i + "::1000000::"
+                        + priceInNickels / 20 + "."
+                        + String.format("%02d", priceInNickels % 20 * 5));
+            }
+        }
+    }
+
+    private void report(long elapsedNanos, int purchases) {
+        double seconds = elapsedNanos / 1e9;
+        System.out.printf("%d sessions on %d threads in %.2f s "
+                + "(%.1f sessions/s), %d purchases completed%n",
+                sessions, threads, seconds, sessions / seconds, purchases);
+        System.out.printf("%-13s %10s %10s %10s %10s %10s %10s%n",
+                "operation", "count", "ops/s", "p50 us", "p99 us",
+                "p99.9 us", "max us");
+        for(Operation operation : Operation.values()) {
+            LatencyHistogram histogram = latencies.get(operation);
+            System.out.printf("%-13s %10d %10.1f %10.1f %10.1f %10.1f %10.1f%n",
+                    operation, histogram.getCount(),
+                    histogram.getCount() / seconds,
+                    histogram.getPercentileNanos(50) / 1e3,
+                    histogram.getPercentileNanos(99) / 1e3,
+                    histogram.getPercentileNanos(99.9) / 1e3,
+                    histogram.getMaxNanos() / 1e3);
+        }
+    }
+
+    private void parseArgs(String[] args) {
+        for(int i = 0; i + 1 < args.length; i += 2) {
+            String value = args[i + 1];
+            switch(args[i]) {
+                case "--context":
+                    contextFile = value;
+                    break;
+                case "--sessions":
+                    sessions = Integer.parseInt(value);
+                    break;
+                case "--threads":
+                    threads = Integer.parseInt(value);
+                    break;
+                case "--steps":
+                    stepsPerSession = Integer.parseInt(value);
+                    break;
+                case "--catalog":
+                    catalogSize = Integer.parseInt(value);
+                    break;
+                case "--seed":
+                    seed = Long.parseLong(value);
+                    break;
+                case "--script":
+                    script = parseScript(value);
+                    break;
+                default:
+                    throw new IllegalArgumentException(
+                            "Unknown option: " + args[i]);
+            }
+        }
+    }
+
+    /**
+     * Parses steps such as "insert 12 0 0 0; buy A1".
+     */
+    private List<Step> parseScript(String text) {
+        List<Step> steps = new ArrayList<>();
+        for(String stepText : text.split(";")) {
+            String[] words = stepText.trim().split("\\s+");
+            if(words[0].equals("insert") && words.length == 5) {
+                steps.add(Step.insertCoins(Integer.parseInt(words[1]),
+                        Integer.parseInt(words[2]), Integer.parseInt(words[3]),
+                        Integer.parseInt(words[4])));
+            } else if(words[0].equals("buy") && words.length == 2) {
+                steps.add(Step.purchase(words[1]));
+            } else {
+                throw new IllegalArgumentException(
+                        "Unknown script step: " + stepText);
+            }
+        }
+        return steps;
+    }
+
+}
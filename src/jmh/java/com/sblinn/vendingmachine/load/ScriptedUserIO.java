@@ -0,0 +1,150 @@
+package com.sblinn.vendingmachine.load;
+
+import com.sblinn.vendingmachine.metrics.LatencyHistogram;
+import com.sblinn.vendingmachine.ui.UserIO;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * UserIO that plays one session's steps against a real controller instead of
+ * a person. It answers the menu prompt with the next step's choice, the coin 
+ * prompts with the step's coins, the location ID prompt with the step's slot
+ * and every other prompt with ENTER. After the last step it picks Exit.
+ *
+ * The time from answering the menu until the controller shows the menu again
+ * (or, for Exit, until the session ends) is recorded for that operation.
+ *
+ * @author sarablinn
+ */
+public class ScriptedUserIO implements UserIO {
+
+    public enum Operation {
+        START, INSERT_COINS, PURCHASE, EXIT
+    }
+
+    /**
+     * One menu choice and the answers it needs.
+     */
+    public static class Step {
+
+        final Operation operation;
+        final int[] coins;
+        final String locationID;
+
+        private Step(Operation operation, int[] coins, String locationID) {
+            this.operation = operation;
+            this.coins = coins;
+            this.locationID = locationID;
+        }
+
+        public static Step insertCoins(int quarters, int dimes, int nickels,
+                int pennies) {
+            return new Step(Operation.INSERT_COINS,
+                    new int[] {quarters, dimes, nickels, pennies}, null);
+        }
+
+        public static Step purchase(String locationID) {
+            return new Step(Operation.PURCHASE, null, locationID);
+        }
+    }
+
+    private static final Step EXIT = new Step(Operation.EXIT, null, null);
+    private static final String PURCHASE_SUCCESS =
+            "=== ITEM PURCHASE SUCCESSFUL ===";
+
+    private final Iterator<Step> steps;
+    private final Map<Operation, LatencyHistogram> latencies;
+
+    private Step current;
+    private Operation timedOperation = Operation.START;
+    private long operationStart = System.nanoTime();
+    private int coinsAnswered;
+    private int purchases;
+
+
+    /**
+     *
+     * @param steps - the session's steps, Exit is added after the last one
+     * @param latencies - histogram for every Operation, shared by sessions
+     */
+    public ScriptedUserIO(List<Step> steps,
+            Map<Operation, LatencyHistogram> latencies) {
+        this.steps = steps.iterator();
+        this.latencies = latencies;
+    }
+
+
+    @Override
+    public void print(String msg) {
+        if(PURCHASE_SUCCESS.equals(msg)) {
+            purchases++;
+        }
+    }
+
+    /**
+     * The only ranged prompt is the main menu.
+     */
+    @Override
+    public int readInt(String prompt, int min, int max) {
+        finishOperation();
+        current = steps.hasNext() ? steps.next() : EXIT;
+        coinsAnswered = 0;
+        timedOperation = current.operation;
+        operationStart = System.nanoTime();
+
+        switch(current.operation) {
+            case INSERT_COINS:
+                return 1;
+            case PURCHASE:
+                return 2;
+            default:
+                return 3;
+        }
+    }
+
+    /**
+     * Coin prompts, asked quarters, dimes, nickels then pennies.
+     */
+    @Override
+    public int readInt(String prompt) {
+        if(current == null || current.coins == null 
+                || coinsAnswered >= current.coins.length) {
+            return 0;
+        }
+        return current.coins[coinsAnswered++];
+    }
+
+    @Override
+    public String readString(String prompt) {
+        if(current != null && current.locationID != null
+                && prompt.contains("location ID")) {
+            return current.locationID;
+        }
+        return "";
+    }
+
+    /**
+     * Records the last operation once the controller has returned.
+     */
+    public void finishSession() {
+        finishOperation();
+    }
+
+    /**
+     * @return number of purchases the machine completed in this session
+     */
+    public int getPurchases() {
+        return purchases;
+    }
+
+
+    private void finishOperation() {
+        if(timedOperation != null) {
+            latencies.get(timedOperation).record(
+                    System.nanoTime() - operationStart);
+            timedOperation = null;
+        }
+    }
+
+}
@@ -0,0 +1,65 @@
+package com.sblinn.vendingmachine.service;
+
+import com.sblinn.vendingmachine.dto.Change;
+import com.sblinn.vendingmachine.dto.Money;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of making change from a 500-coin hopper on every sale. Each operation
+ * dispenses the change and deposits the same coins back, so the hopper's 
+ * contents change every time and the fallback table is never reused.
+ *
+ *     mvn -Pbenchmark test-compile exec:exec \
+ *         -Djmh.args="CoinHopperBenchmark"
+ *
+ * greedy makes $0.65 from a full hopper, fallback makes $0.30 from a hopper
+ * with one quarter and no nickels or pennies, which greedy cannot do.
+ *
+ * @author sarablinn
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CoinHopperBenchmark {
+
+    private CoinHopper fullHopper;
+    private CoinHopper greedyFailsHopper;
+    private final Money greedyAmount = Money.ofCents(65);
+    private final Money fallbackAmount = Money.ofCents(30);
+
+
+    @Setup
+    public void setUp() {
+        fullHopper = new CoinHopper(125, 125, 125, 125);
+        greedyFailsHopper = new CoinHopper(1, 499, 0, 0);
+    }
+
+
+    @Benchmark
+    public Change greedy() throws Exception {
+        Change change = fullHopper.dispense(greedyAmount);
+        fullHopper.deposit(change);
+        return change;
+    }
+
+    @Benchmark
+    public Change fallback() throws Exception {
+        Change change = greedyFailsHopper.dispense(fallbackAmount);
+        greedyFailsHopper.deposit(change);
+        return change;
+    }
+
+}
@@ -0,0 +1,77 @@
+package com.sblinn.vendingmachine.service;
+
+import com.sblinn.vendingmachine.dto.Change;
+import com.sblinn.vendingmachine.dto.Item;
+import com.sblinn.vendingmachine.dto.Money;
+import com.sblinn.vendingmachine.service.SellItemConcurrencyBenchmark.InMemoryDao;
+import com.sblinn.vendingmachine.service.SellItemConcurrencyBenchmark.NoAuditDao;
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Latency of the sale path with Money (long cents) against the BigDecimal
+ * entry points kept for the edges. Add the gc profiler to compare
+ * allocations per sale:
+ *     mvn -Pbenchmark test-compile exec:exec \
+ *         -Djmh.args="MoneyBenchmark -prof gc"
+ *
+ * gc.alloc.rate.norm is the number of bytes allocated per operation.
+ *
+ * @author sarablinn
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MoneyBenchmark {
+
+    private VendingMachineServiceLayer service;
+    private final Money funds = Money.ofCents(500);
+    private final BigDecimal fundsDecimal = new BigDecimal("5.00");
+    private final Change change = new Change(141);
+
+
+    @Setup
+    public void setUp() {
+        InMemoryDao dao = new InMemoryDao();
+        Item item = new Item("A1", "Twinkle Pies")
+                .withNumAvailable(Integer.MAX_VALUE)
+                .withPrice(Money.ofCents(135));
+        dao.items.put(item.getLocationID(), item);
+        service = new VendingMachineServiceLayerImpl(dao, new NoAuditDao());
+    }
+
+
+    @Benchmark
+    public Change sellItemMoney() throws Exception {
+        return service.sellItem("A1", funds);
+    }
+
+    @Benchmark
+    public Change sellItemBigDecimal() throws Exception {
+        return service.sellItem("A1", fundsDecimal);
+    }
+
+    @Benchmark
+    public Money changeValue() {
+        return change.getChangeValue();
+    }
+
+    @Benchmark
+    public BigDecimal changeSum() {
+        return change.getChangeSum();
+    }
+
+}
@@ -0,0 +1,118 @@
+package com.sblinn.vendingmachine.service;
+
+import com.sblinn.vendingmachine.BenchmarkCatalog;
+import com.sblinn.vendingmachine.dao.PersistenceException;
+import com.sblinn.vendingmachine.dao.VendingMachineAuditDao;
+import com.sblinn.vendingmachine.dao.VendingMachineDao;
+import com.sblinn.vendingmachine.dao.VendingMachineDaoFileImpl;
+import com.sblinn.vendingmachine.dto.Change;
+import com.sblinn.vendingmachine.dto.Item;
+import com.sblinn.vendingmachine.dto.Money;
+import com.sblinn.vendingmachine.service.SellItemConcurrencyBenchmark.InMemoryDao;
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * One sale committed through the DAO's commitSale, as sellItem does, against
+ * the same sale made the way it used to be: read the item, then save one
+ * less through the public updateItem, which reads and checks the item again
+ * and audits it with a formatted UPDATED entry.
+ *
+ * memory is an in-memory DAO, so the numbers show the service's own work;
+ * file is a cached VendingMachineDaoFileImpl of 100 items, whose file write
+ * is the same for both paths. The audit DAO keeps the last entry instead of
+ * writing it. sellItem also makes change, which the update path does not,
+ * so the comparison is, if anything, kind to the update path.
+ *
+ * @author sarablinn
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SaleCommitBenchmark {
+
+    private static final int CATALOG_SIZE = 100;
+
+    @Param({"memory", "file"})
+    public String store;
+
+    private File inventoryFile;
+    private VendingMachineServiceLayer service;
+    private final LastEntryAuditDao auditDao = new LastEntryAuditDao();
+    private final String locationID = "A" + (CATALOG_SIZE / 2);
+    private final Money funds = Money.ofCents(300);
+
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        VendingMachineDao dao;
+        if(store.equals("file")) {
+            inventoryFile = BenchmarkCatalog.inventoryFile(CATALOG_SIZE,
+                    Integer.MAX_VALUE);
+            dao = new VendingMachineDaoFileImpl(inventoryFile.getPath(), true);
+        } else {
+            InMemoryDao memoryDao = new InMemoryDao();
+            for(int i = 0; i < CATALOG_SIZE; i++) {
+                memoryDao.createItem("A" + i, new Item("A" + i, "Item " + i,
+                        Integer.MAX_VALUE, Money.ofCents(135)));
+            }
+            dao = memoryDao;
+        }
+        service = new VendingMachineServiceLayerImpl(dao, auditDao);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        if(inventoryFile != null) {
+            inventoryFile.delete();
+        }
+    }
+
+
+    @Benchmark
+    public Change commitSale() throws Exception {
+        return service.sellItem(locationID, funds);
+    }
+
+    @Benchmark
+    public Item updateItem() throws Exception {
+        Item item = service.getItem(locationID);
+        return service.updateItem(locationID,
+                item.withNumAvailable(item.getNumAvailable() - 1));
+    }
+
+
+    static class LastEntryAuditDao implements VendingMachineAuditDao {
+
+        String lastEntry;
+
+        @Override
+        public void writeAuditEntry(String entry) throws PersistenceException {
+            lastEntry = entry;
+        }
+
+        @Override
+        public void writeAuditEntries(List<String> entries)
+                throws PersistenceException {
+            lastEntry = entries.get(entries.size() - 1);
+        }
+    }
+
+}
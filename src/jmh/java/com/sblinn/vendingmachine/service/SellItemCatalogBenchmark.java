@@ -0,0 +1,77 @@
+package com.sblinn.vendingmachine.service;
+
+import com.sblinn.vendingmachine.BenchmarkCatalog;
+import com.sblinn.vendingmachine.dao.PersistenceException;
+import com.sblinn.vendingmachine.dao.VendingMachineDaoFileImpl;
+import com.sblinn.vendingmachine.dao.VendingMachineDaoFileImpl.WriteMode;
+import com.sblinn.vendingmachine.dto.Change;
+import com.sblinn.vendingmachine.dto.Money;
+import com.sblinn.vendingmachine.service.SellItemConcurrencyBenchmark.NoAuditDao;
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * A single sale through the service layer and the cached file DAO, as wired
+ * in applicationContext.xml, by catalog size and write mode. WRITE_THROUGH
+ * persists the inventory on every sale, so this shows what the storage
+ * choice costs per sale; COALESCED writes it at most once a second or every
+ * 1000 sales.
+ *
+ * @author sarablinn
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SellItemCatalogBenchmark {
+
+    @Param({"10", "1000", "100000", "1000000"})
+    public int catalogSize;
+
+    @Param({"WRITE_THROUGH", "COALESCED"})
+    public WriteMode writeMode;
+
+    private File inventoryFile;
+    private VendingMachineDaoFileImpl dao;
+    private VendingMachineServiceLayer service;
+    private String locationID;
+    private final Money funds = Money.ofCents(300);
+
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        inventoryFile = BenchmarkCatalog.inventoryFile(catalogSize,
+                Integer.MAX_VALUE);
+        dao = new VendingMachineDaoFileImpl(inventoryFile.getPath(), true,
+                writeMode, 1000, 1000);
+        service = new VendingMachineServiceLayerImpl(dao, new NoAuditDao());
+        locationID = "A" + (catalogSize / 2);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws PersistenceException {
+        dao.close();
+        inventoryFile.delete();
+    }
+
+    @Benchmark
+    public Change sellItem() throws Exception {
+        return service.sellItem(locationID, funds);
+    }
+
+}
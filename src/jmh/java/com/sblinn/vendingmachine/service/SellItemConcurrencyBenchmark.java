@@ -0,0 +1,129 @@
+package com.sblinn.vendingmachine.service;
+
+import com.sblinn.vendingmachine.dao.PersistenceException;
+import com.sblinn.vendingmachine.dao.VendingMachineAuditDao;
+import com.sblinn.vendingmachine.dao.VendingMachineDao;
+import com.sblinn.vendingmachine.dto.Change;
+import com.sblinn.vendingmachine.dto.Item;
+import com.sblinn.vendingmachine.dto.Money;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Sale throughput of the service layer with concurrent buyers. The DAO is an
+ * in-memory map so the numbers show locking cost rather than file I/O.
+ *
+ * Scale across cores by running it with different thread counts:
+ *     mvn -Pbenchmark test-compile exec:exec \
+ *         -Djmh.args="SellItemConcurrencyBenchmark -t 1"   (then -t 2, 4, ...)
+ *
+ * sellDistinctSlots gives every thread its own slot, sellSameSlot makes all
+ * threads fight over one slot.
+ *
+ * @author sarablinn
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SellItemConcurrencyBenchmark {
+
+    private static final int SLOTS = 256;
+
+    private VendingMachineServiceLayer service;
+    private final AtomicInteger nextSlot = new AtomicInteger();
+    private final Money funds = Money.ofCents(500);
+
+
+    @Setup
+    public void setUp() {
+        InMemoryDao dao = new InMemoryDao();
+        for(int i = 0; i < SLOTS; i++) {
+            Item item = new Item("A" + i, "Item " + i)
+                    .withNumAvailable(Integer.MAX_VALUE)
+                    .withPrice(Money.ofCents(135));
+            dao.items.put(item.getLocationID(), item);
+        }
+        service = new VendingMachineServiceLayerImpl(dao, new NoAuditDao());
+    }
+
+    @State(Scope.Thread)
+    public static class Buyer {
+        String locationID;
+
+        @Setup
+        public void setUp(SellItemConcurrencyBenchmark benchmark) {
+            locationID = "A" + (benchmark.nextSlot.getAndIncrement() % SLOTS);
+        }
+    }
+
+    @Benchmark
+    public Change sellDistinctSlots(Buyer buyer) throws Exception {
+        return service.sellItem(buyer.locationID, funds);
+    }
+
+    @Benchmark
+    public Change sellSameSlot() throws Exception {
+        return service.sellItem("A0", funds);
+    }
+
+
+    static class InMemoryDao implements VendingMachineDao {
+
+        final ConcurrentHashMap<String, Item> items = new ConcurrentHashMap<>();
+
+        @Override
+        public Item createItem(String locationID, Item item) {
+            return items.put(locationID.toUpperCase(), item);
+        }
+
+        @Override
+        public Item getItem(String locationID) {
+            return items.get(locationID.toUpperCase());
+        }
+
+        @Override
+        public List<Item> getAllItems() {
+            return new ArrayList<>(items.values());
+        }
+
+        @Override
+        public Item updateItem(String locationID, Item updatedItem) {
+            items.put(locationID.toUpperCase(), updatedItem);
+            return updatedItem;
+        }
+
+        @Override
+        public Item deleteItem(String locationID) {
+            return items.remove(locationID.toUpperCase());
+        }
+    }
+
+    static class NoAuditDao implements VendingMachineAuditDao {
+
+        @Override
+        public void writeAuditEntry(String entry) throws PersistenceException {
+        }
+
+        @Override
+        public void writeAuditEntries(List<String> entries)
+                throws PersistenceException {
+        }
+    }
+
+}
@@ -0,0 +1,107 @@
+package com.sblinn.vendingmachine.ui;
+
+import com.sblinn.vendingmachine.BenchmarkCatalog;
+import com.sblinn.vendingmachine.dto.Item;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Cost of rendering the item menu, by catalog size. The UserIO hands every
+ * print to a Blackhole, so only the formatting is measured.
+ * redrawUnchanged is the controller's loop when the inventory version has
+ * not moved, redrawAfterSale when one item's stock changed.
+ *
+ * @author sarablinn
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class VendingMachineViewBenchmark {
+
+    @Param({"10", "1000", "100000", "1000000"})
+    public int catalogSize;
+
+    private List<Item> items;
+    private VendingMachineView view;
+    private long inventoryVersion = 1;
+
+
+    @Setup
+    public void setUp(Blackhole blackhole) {
+        items = BenchmarkCatalog.items(catalogSize);
+        view = new VendingMachineView(new BlackholeIO(blackhole));
+        view.updateMenu(inventoryVersion, items);
+    }
+
+    @Benchmark
+    public void displayAllItems() {
+        view.displayAllItems(items, "5.00");
+    }
+
+    @Benchmark
+    public int redrawUnchanged() {
+        if(!view.isMenuCurrent(inventoryVersion)) {
+            view.updateMenu(inventoryVersion, items);
+        }
+        return view.printVendingMachineMenuAndGetSelection("5.00");
+    }
+
+    @Benchmark
+    public int redrawAfterSale() {
+        int slot = items.size() / 2;
+        Item sold = items.get(slot);
+        items.set(slot,
+                sold.withNumAvailable(sold.getNumAvailable() == 5 ? 4 : 5));
+        inventoryVersion++;
+        if(!view.isMenuCurrent(inventoryVersion)) {
+            view.updateMenu(inventoryVersion, items);
+        }
+        return view.printVendingMachineMenuAndGetSelection("5.00");
+    }
+
+
+    static class BlackholeIO implements UserIO {
+
+        private final Blackhole blackhole;
+
+        BlackholeIO(Blackhole blackhole) {
+            this.blackhole = blackhole;
+        }
+
+        @Override
+        public void print(String msg) {
+            blackhole.consume(msg);
+        }
+
+        @Override
+        public int readInt(String prompt) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public int readInt(String prompt, int min, int max) {
+            return min;
+        }
+
+        @Override
+        public String readString(String prompt) {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+}
@@ -2,7 +2,7 @@ package com.sblinn.vendingmachine;
 
 
 import com.sblinn.vendingmachine.controller.VendingMachineController;
-import org.springframework.context.ApplicationContext;
+import com.sblinn.vendingmachine.server.VendingMachineServer;
 import org.springframework.context.support.ClassPathXmlApplicationContext;
 
 
@@ -13,7 +13,14 @@ import org.springframework.context.support.ClassPathXmlApplicationContext;
  */
 public class App {
     
-    public static void main(String[] args) {
+    /**
+     * Runs a console session, or with the argument "server" serves 
+     * networked kiosks until the process is stopped.
+     * 
+     * @param args 
+     * @throws Exception 
+     */
+    public static void main(String[] args) throws Exception {
         
 //        UserIO io = new UserIOConsoleImpl();
 //        
@@ -31,13 +38,24 @@ public class App {
 //        
 //        controller.run();
 
-        ApplicationContext appContext = new ClassPathXmlApplicationContext(
-                "classpath:applicationContext.xml");
+        ClassPathXmlApplicationContext appContext = 
+                new ClassPathXmlApplicationContext(
+                        "classpath:applicationContext.xml");
+        // flush the audit log even if the JVM is stopped mid-session
+        appContext.registerShutdownHook();
+        
+        if(args.length > 0 && args[0].equals("server")) {
+            VendingMachineServer server = 
+                    appContext.getBean("server", VendingMachineServer.class);
+            server.run();
+            return;
+        }
         
         VendingMachineController controller = 
                 appContext.getBean("controller", VendingMachineController.class);
         
         controller.run();
+        appContext.close();
   
     }
 }
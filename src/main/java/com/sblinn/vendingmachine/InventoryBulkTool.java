@@ -0,0 +1,111 @@
+package com.sblinn.vendingmachine;
+
+import com.sblinn.vendingmachine.dao.InventoryRowFormat;
+import com.sblinn.vendingmachine.dao.PersistenceException;
+import com.sblinn.vendingmachine.service.ImportReport;
+import com.sblinn.vendingmachine.service.VendingMachineServiceLayer;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import org.springframework.context.support.ClassPathXmlApplicationContext;
+
+/**
+ * Imports or exports the whole inventory in CSV or NDJSON form, through the
+ * same service as the vending machine itself.
+ *
+ * Usage: InventoryBulkTool (import | export) (csv | ndjson) file
+ *
+ * @author sarablinn
+ */
+public class InventoryBulkTool {
+
+    public static void main(String[] args) throws Exception {
+        if(args.length != 3
+                || !(args[0].equals("import") || args[0].equals("export"))
+                || !(args[1].equalsIgnoreCase("csv")
+                        || args[1].equalsIgnoreCase("ndjson"))) {
+            System.out.println("Usage: InventoryBulkTool "
+                    + "(import | export) (csv | ndjson) file");
+            return;
+        }
+
+        InventoryRowFormat format = InventoryRowFormat.fromName(args[1]);
+        try (ClassPathXmlApplicationContext appContext =
+                new ClassPathXmlApplicationContext(
+                        "classpath:applicationContext.xml")) {
+            VendingMachineServiceLayer service = appContext.getBean(
+                    "service", VendingMachineServiceLayer.class);
+
+            if(args[0].equals("import")) {
+                ImportReport report = importItems(service, args[2], format);
+                System.out.println(report);
+                report.getRejections().forEach(System.out::println);
+            } else {
+                long start = System.nanoTime();
+                long rows = exportItems(service, args[2], format);
+                long elapsedNanos = System.nanoTime() - start;
+                System.out.println(String.format(
+                        "Exported %d rows in %d ms (%.0f rows/s).", rows,
+                        TimeUnit.NANOSECONDS.toMillis(elapsedNanos),
+                        rows * (double) TimeUnit.SECONDS.toNanos(1)
+                                / Math.max(1, elapsedNanos)));
+            }
+        }
+    }
+
+    /**
+     * Streams the rows of a file into the service's importItems.
+     *
+     * @param service - VendingMachineServiceLayer
+     * @param file - CSV or NDJSON file to read
+     * @param format - InventoryRowFormat of the file
+     * @return ImportReport
+     * @throws PersistenceException
+     */
+    public static ImportReport importItems(VendingMachineServiceLayer service,
+            String file, InventoryRowFormat format)
+            throws PersistenceException {
+        try (Stream<String> rows =
+                Files.lines(Paths.get(file), StandardCharsets.UTF_8)) {
+            return service.importItems(rows, format);
+        } catch(IOException | UncheckedIOException e) {
+            throw new PersistenceException("Unable to read import file "
+                    + file + ".", e);
+        }
+    }
+
+    /**
+     * Writes every item in the inventory, sold out ones included, to a 
+     * file, one row per item.
+     *
+     * @param service - VendingMachineServiceLayer
+     * @param file - CSV or NDJSON file to write, replaced if it exists
+     * @param format - InventoryRowFormat of the file
+     * @return number of items written
+     * @throws PersistenceException
+     */
+    public static long exportItems(VendingMachineServiceLayer service,
+            String file, InventoryRowFormat format)
+            throws PersistenceException {
+        try (Writer out = Files.newBufferedWriter(
+                Paths.get(file), StandardCharsets.UTF_8)) {
+            return service.exportItems(format, (row) -> {
+                try {
+                    out.write(row);
+                    out.write(System.lineSeparator());
+                } catch(IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch(IOException | UncheckedIOException e) {
+            throw new PersistenceException("Unable to write export file "
+                    + file + ".", e);
+        }
+    }
+
+}
@@ -3,14 +3,13 @@ package com.sblinn.vendingmachine.controller;
 
 import com.sblinn.vendingmachine.dao.PersistenceException;
 import com.sblinn.vendingmachine.dto.Change;
-import com.sblinn.vendingmachine.dto.Item;
+import com.sblinn.vendingmachine.dto.InventorySnapshot;
+import com.sblinn.vendingmachine.dto.Money;
 import com.sblinn.vendingmachine.service.InsufficientFundsException;
 import com.sblinn.vendingmachine.service.InvalidDataException;
 import com.sblinn.vendingmachine.service.NoItemInventoryException;
 import com.sblinn.vendingmachine.service.VendingMachineServiceLayer;
 import com.sblinn.vendingmachine.ui.VendingMachineView;
-import java.math.BigDecimal;
-import java.util.List;
 
 /**
  *
@@ -62,16 +61,23 @@ public class VendingMachineController {
     }
     
     private int getMenuSelection() throws PersistenceException {
-        List<Item> itemList = service.getAllItems();
-        String remBalanceStr = remBalance.getChangeSum().toString();
+        // the version and the items come from one snapshot, so the menu 
+        // never shows items from a newer version than it is labelled with
+        InventorySnapshot inventory = service.getInventorySnapshot();
+        if(!view.isMenuCurrent(inventory.getVersion())) {
+            view.updateMenu(inventory.getVersion(), 
+                    inventory.getInStockItems());
+        }
+        String remBalanceStr = remBalance.getChangeValue().toString();
         
-        return view.printVendingMachineMenuAndGetSelection(
-                itemList, remBalanceStr);
+        return view.printVendingMachineMenuAndGetSelection(remBalanceStr);
     }
     
     private void insertCoins() {
         view.displayInsertCoinsBanner();
-        this.remBalance = this.remBalance.addChange(view.getInsertedMoney());
+        Change insertedMoney = view.getInsertedMoney();
+        service.insertMoney(insertedMoney);
+        this.remBalance = this.remBalance.addChange(insertedMoney);
         viewBalance();
         view.displayContinuePrompt();
     }
@@ -83,14 +89,14 @@ public class VendingMachineController {
         view.displayPurchaseItemBanner();
         
         String locationID;
-        BigDecimal balance;
+        Money balance;
         
         boolean keepGoing = false;
         while (keepGoing == false) {
             try {
                 locationID = view.getItemSelection();
                 service.getItem(locationID);
-                balance = remBalance.getChangeSum();
+                balance = remBalance.getChangeValue();
                 remBalance = service.sellItem(locationID, balance);
                 view.displayPurchaseSuccessBanner();
                 refundChange();
@@ -98,8 +104,8 @@ public class VendingMachineController {
                 keepGoing = true;
             } catch(InvalidDataException e) {
                 view.displayErrorMessage(e.getMessage());
-            // exits the purchase sale when item out of stock 
-            // or user needs more money
+            // exits the purchase sale when item out of stock, exact change
+            // is unavailable or user needs more money
             } catch(NoItemInventoryException e) {
                 view.displayErrorMessage(e.getMessage());
                 view.displayContinuePrompt();
@@ -114,7 +120,7 @@ public class VendingMachineController {
     }
     
     private void viewBalance() {
-        view.displayBalance(remBalance.getChangeSum().toString());
+        view.displayBalance(remBalance.getChangeValue().toString());
     }
     
     private void refundChange() {
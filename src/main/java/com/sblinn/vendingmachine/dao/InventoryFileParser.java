@@ -0,0 +1,231 @@
+
+package com.sblinn.vendingmachine.dao;
+
+import com.sblinn.vendingmachine.dto.Item;
+import com.sblinn.vendingmachine.dto.Money;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Consumer;
+
+/**
+ * Reads a "::" delimited inventory file, as written by
+ * VendingMachineDaoFileImpl, without Scanner, regular expressions or a
+ * String per line. The file is read through a FileChannel into a ByteBuffer
+ * that is kept between calls, lines and delimiters are found by scanning the
+ * bytes, and counts and prices are decoded straight from the bytes. Only the
+ * location ID and name become Strings.
+ *
+ * Not thread safe; each DAO owns its own parser.
+ *
+ * @author sarablinn
+ */
+public class InventoryFileParser {
+
+    private static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+    private ByteBuffer buffer;
+    private long lineNumber;
+
+
+    public InventoryFileParser() {
+        this(DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * @param bufferSize - initial read buffer size in bytes, grown if a
+     *                     single line does not fit
+     */
+    public InventoryFileParser(int bufferSize) {
+        buffer = ByteBuffer.allocate(bufferSize);
+    }
+
+
+    /**
+     * Parses every line of the inventory file and hands each item to items.
+     * Blank lines are skipped.
+     *
+     * @param inventoryFile - Path of the inventory file
+     * @param items - receives each Item in file order
+     * @return number of items read
+     * @throws PersistenceException if the file cannot be read or a line is
+     *         malformed
+     */
+    public int parse(Path inventoryFile, Consumer<Item> items)
+            throws PersistenceException {
+        int itemCount = 0;
+        lineNumber = 0;
+        buffer.clear();
+
+        try (FileChannel channel =
+                FileChannel.open(inventoryFile, StandardOpenOption.READ)) {
+            // bytes before scanFrom were already searched for a line end
+            int scanFrom = 0;
+            while(true) {
+                int read = channel.read(buffer);
+                byte[] bytes = buffer.array();
+                int limit = buffer.position();
+                int lineStart = 0;
+
+                for(int i = scanFrom; i < limit; i++) {
+                    if(bytes[i] == '\n') {
+                        itemCount += parseLine(bytes, lineStart, i, items);
+                        lineStart = i + 1;
+                    }
+                }
+
+                if(read == -1) {
+                    if(lineStart < limit) {
+                        itemCount += parseLine(bytes, lineStart, limit, items);
+                    }
+                    return itemCount;
+                }
+
+                // keep the unfinished line for the next read
+                int remaining = limit - lineStart;
+                if(remaining == bytes.length) {
+                    ByteBuffer larger = ByteBuffer.allocate(bytes.length * 2);
+                    larger.put(bytes, 0, limit);
+                    buffer = larger;
+                } else {
+                    System.arraycopy(bytes, lineStart, bytes, 0, remaining);
+                    buffer.position(remaining);
+                }
+                scanFrom = remaining;
+            }
+        } catch(IOException e) {
+            throw new PersistenceException(
+                    "Unable to load item data into memory.", e);
+        }
+    }
+
+    /**
+     * Parses the line in bytes[start, end).
+     *
+     * @return 1 if an item was read, 0 for a blank line
+     */
+    private int parseLine(byte[] bytes, int start, int end,
+            Consumer<Item> items) throws PersistenceException {
+        lineNumber++;
+        if(end > start && bytes[end - 1] == '\r') {
+            end--;
+        }
+        if(end == start) {
+            return 0;
+        }
+
+        int nameStart = delimiterAfter(bytes, start, end) + 2;
+        int countStart = delimiterAfter(bytes, nameStart, end) + 2;
+        int priceStart = delimiterAfter(bytes, countStart, end) + 2;
+        // anything after a fourth delimiter is ignored
+        int priceEnd = indexOfDelimiter(bytes, priceStart, end);
+        if(priceEnd < 0) {
+            priceEnd = end;
+        }
+
+        items.accept(new Item(
+                new String(bytes, start, nameStart - 2 - start,
+                        StandardCharsets.UTF_8),
+                new String(bytes, nameStart, countStart - 2 - nameStart,
+                        StandardCharsets.UTF_8),
+                parseCount(bytes, countStart, priceStart - 2),
+                Money.ofCents(parseCents(bytes, priceStart, priceEnd))));
+        return 1;
+    }
+
+    private int delimiterAfter(byte[] bytes, int from, int end)
+            throws PersistenceException {
+        int delimiter = indexOfDelimiter(bytes, from, end);
+        if(delimiter < 0) {
+            throw malformed("missing field");
+        }
+        return delimiter;
+    }
+
+    private static int indexOfDelimiter(byte[] bytes, int from, int end) {
+        for(int i = from; i < end - 1; i++) {
+            if(bytes[i] == ':' && bytes[i + 1] == ':') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private int parseCount(byte[] bytes, int start, int end)
+            throws PersistenceException {
+        boolean negative = start < end && bytes[start] == '-';
+        int i = negative ? start + 1 : start;
+        if(i == end) {
+            throw malformed("missing quantity");
+        }
+
+        long count = 0;
+        for(; i < end; i++) {
+            int digit = bytes[i] - '0';
+            if(digit < 0 || digit > 9) {
+                throw malformed("invalid quantity");
+            }
+            count = count * 10 + digit;
+            if(count > Integer.MAX_VALUE) {
+                throw malformed("invalid quantity");
+            }
+        }
+        return (int) (negative ? -count : count);
+    }
+
+    /**
+     * Decodes a dollar amount such as "2.50", "2.5" or "3" into cents.
+     * Fractions of a cent are refused, as Money.parse does.
+     */
+    private long parseCents(byte[] bytes, int start, int end)
+            throws PersistenceException {
+        boolean negative = start < end && bytes[start] == '-';
+        int i = negative ? start + 1 : start;
+        long dollars = 0;
+        long cents = 0;
+        int digits = 0;
+
+        try {
+            for(; i < end && bytes[i] != '.'; i++, digits++) {
+                int digit = bytes[i] - '0';
+                if(digit < 0 || digit > 9) {
+                    throw malformed("invalid price");
+                }
+                dollars = Math.addExact(Math.multiplyExact(dollars, 10), digit);
+            }
+            if(i < end) {
+                // skip the '.', then read the cents
+                i++;
+                for(int place = 0; i < end; i++, place++, digits++) {
+                    int digit = bytes[i] - '0';
+                    if(digit < 0 || digit > 9) {
+                        throw malformed("invalid price");
+                    }
+                    if(place == 0) {
+                        cents += digit * 10;
+                    } else if(place == 1) {
+                        cents += digit;
+                    } else if(digit != 0) {
+                        throw malformed("price has fractions of a cent");
+                    }
+                }
+            }
+            if(digits == 0) {
+                throw malformed("missing price");
+            }
+            long total = Math.addExact(Math.multiplyExact(dollars, 100), cents);
+            return negative ? -total : total;
+        } catch(ArithmeticException e) {
+            throw malformed("invalid price");
+        }
+    }
+
+    private PersistenceException malformed(String reason) {
+        return new PersistenceException("Unable to load item data into "
+                + "memory: " + reason + " on line " + lineNumber + ".");
+    }
+
+}
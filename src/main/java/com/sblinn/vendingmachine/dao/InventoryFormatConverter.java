@@ -0,0 +1,92 @@
+package com.sblinn.vendingmachine.dao;
+
+import com.sblinn.vendingmachine.dto.Item;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.List;
+
+/**
+ * Converts inventories between the "::" delimited text format used by 
+ * VendingMachineDaoFileImpl and the memory-mapped binary format used by 
+ * VendingMachineDaoMappedImpl.
+ * 
+ * Usage: InventoryFormatConverter (to-binary | to-text) sourceFile targetFile
+ * 
+ * @author sarablinn
+ */
+public class InventoryFormatConverter {
+    
+    public static void main(String[] args) throws PersistenceException {
+        if(args.length != 3 
+                || !(args[0].equals("to-binary") || args[0].equals("to-text"))) {
+            System.out.println("Usage: InventoryFormatConverter "
+                    + "(to-binary | to-text) sourceFile targetFile");
+            return;
+        }
+        
+        int itemCount;
+        if(args[0].equals("to-binary")) {
+            itemCount = textToBinary(args[1], args[2]);
+        } else {
+            itemCount = binaryToText(args[1], args[2]);
+        }
+        System.out.println("Converted " + itemCount + " items.");
+    }
+    
+    /**
+     * Copies every item of a text inventory file into a binary inventory
+     * file. Items already in the binary file at the same location are 
+     * replaced. Nothing is written unless every location ID fits a binary 
+     * slot.
+     * 
+     * @param textFile - source inventory.txt style file
+     * @param binaryFile - target binary file, created if missing
+     * @return number of items converted
+     * @throws PersistenceException if a location ID is longer than 
+     *         VendingMachineDaoMappedImpl.MAX_LOCATION_ID_LENGTH
+     */
+    public static int textToBinary(String textFile, String binaryFile) 
+            throws PersistenceException {
+        List<Item> items = new VendingMachineDaoFileImpl(textFile).getAllItems();
+        for(Item item : items) {
+            VendingMachineDaoMappedImpl.locationIDBytes(
+                    item.getLocationID().toUpperCase());
+        }
+        VendingMachineDaoMappedImpl binaryDao = 
+                new VendingMachineDaoMappedImpl(binaryFile);
+        int itemCount = 0;
+        for(Item item : items) {
+            binaryDao.createItem(item.getLocationID(), item);
+            itemCount++;
+        }
+        binaryDao.close();
+        return itemCount;
+    }
+    
+    /**
+     * Writes every item of a binary inventory file to a text inventory file,
+     * replacing its contents.
+     * 
+     * @param binaryFile - source binary file
+     * @param textFile - target inventory.txt style file
+     * @return number of items converted
+     * @throws PersistenceException 
+     */
+    public static int binaryToText(String binaryFile, String textFile) 
+            throws PersistenceException {
+        int itemCount = 0;
+        try (PrintWriter out = new PrintWriter(new FileWriter(textFile))) {
+            for(Item item : new VendingMachineDaoMappedImpl(binaryFile)
+                    .getAllItems()) {
+                out.println(VendingMachineDaoFileImpl.marshallItem(item));
+                itemCount++;
+            }
+        } catch(IOException e) {
+            throw new PersistenceException("Unable to save data "
+                    + "to inventory file.", e);
+        }
+        return itemCount;
+    }
+    
+}
@@ -0,0 +1,323 @@
+
+package com.sblinn.vendingmachine.dao;
+
+import com.sblinn.vendingmachine.dto.Item;
+import com.sblinn.vendingmachine.dto.Money;
+
+/**
+ * Line based formats for bulk import and export of inventory. Each item is
+ * one line, so inventories of any size can be streamed a row at a time.
+ *
+ * CSV rows are locationID,name,numAvailable,price under a header row; location
+ * IDs and names containing commas or quotes are quoted with "" escaping. NDJSON rows are
+ * flat objects such as
+ * {"locationID":"A1","name":"Twinkle Pies","numAvailable":5,"price":"2.50"}.
+ *
+ * @author sarablinn
+ */
+public enum InventoryRowFormat {
+
+    CSV {
+        @Override
+        public String header() {
+            return "locationID,name,numAvailable,price";
+        }
+
+        @Override
+        public String formatRow(Item item) {
+            return quoteCsv(item.getLocationID()) + ","
+                    + quoteCsv(item.getName()) + ","
+                    + item.getNumAvailable() + ","
+                    + item.getPrice();
+        }
+
+        @Override
+        public Item parseRow(String row) {
+            String[] fields = splitCsv(row);
+            if(fields.length != 4) {
+                throw new IllegalArgumentException("Expected 4 fields but "
+                        + "found " + fields.length + ".");
+            }
+            return toItem(fields[0], fields[1], fields[2], fields[3]);
+        }
+    },
+
+    NDJSON {
+        @Override
+        public String header() {
+            return null;
+        }
+
+        @Override
+        public String formatRow(Item item) {
+            return "{\"locationID\":" + quoteJson(item.getLocationID())
+                    + ",\"name\":" + quoteJson(item.getName())
+                    + ",\"numAvailable\":" + item.getNumAvailable()
+                    + ",\"price\":\"" + item.getPrice() + "\"}";
+        }
+
+        @Override
+        public Item parseRow(String row) {
+            String[] fields = new String[4];
+            new JsonRowParser(row).parseInto(fields);
+            return toItem(fields[0], fields[1], fields[2], fields[3]);
+        }
+    };
+
+    private static final String[] FIELD_NAMES =
+            {"locationID", "name", "numAvailable", "price"};
+
+
+    /**
+     * @return the first line of a file in this format, or null if it has none
+     */
+    public abstract String header();
+
+    /**
+     * @param item - Item
+     * @return the item as one line, without a line separator
+     */
+    public abstract String formatRow(Item item);
+
+    /**
+     * Converts one line into an Item. The location ID is made uppercase, the
+     * other fields are taken as they are; business rules are checked by the
+     * service layer.
+     *
+     * @param row - one line of the file
+     * @return Item
+     * @throws IllegalArgumentException if the line is malformed
+     */
+    public abstract Item parseRow(String row);
+
+    /**
+     * @param line - a line of the file
+     * @return true if the line is this format's header row
+     */
+    public boolean isHeader(String line) {
+        return header() != null && header().equals(line);
+    }
+
+    /**
+     * Picks the format from a name such as "csv" or "ndjson".
+     *
+     * @param name - String
+     * @return InventoryRowFormat
+     * @throws IllegalArgumentException if there is no such format
+     */
+    public static InventoryRowFormat fromName(String name) {
+        return valueOf(name.toUpperCase());
+    }
+
+
+    private static Item toItem(String locationID, String name,
+            String numAvailable, String price) {
+        if(locationID == null || locationID.trim().isEmpty()) {
+            throw new IllegalArgumentException("Missing location ID.");
+        }
+        String id = locationID.trim().toUpperCase();
+        try {
+            return new Item(id, name,
+                    numAvailable == null
+                            ? 0 : Integer.parseInt(numAvailable.trim()),
+                    price == null || price.trim().isEmpty()
+                            ? null : Money.parse(price.trim()));
+        } catch(NumberFormatException | ArithmeticException e) {
+            throw new IllegalArgumentException("Invalid quantity or price "
+                    + "for " + id + ".", e);
+        }
+    }
+
+    private static String quoteCsv(String value) {
+        if(value.indexOf(',') < 0 && value.indexOf('"') < 0) {
+            return value;
+        }
+        return "\"" + value.replace("\"", "\"\"") + "\"";
+    }
+
+    private static String[] splitCsv(String row) {
+        String[] fields = new String[FIELD_NAMES.length + 1];
+        int fieldCount = 0;
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+
+        for(int i = 0; i < row.length(); i++) {
+            char c = row.charAt(i);
+            if(quoted) {
+                if(c == '"' && i + 1 < row.length() && row.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if(c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if(c == '"') {
+                quoted = true;
+            } else if(c == ',') {
+                if(fieldCount == fields.length - 1) {
+                    throw new IllegalArgumentException("Too many fields.");
+                }
+                fields[fieldCount++] = field.toString();
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        if(quoted) {
+            throw new IllegalArgumentException("Unterminated quoted field.");
+        }
+        fields[fieldCount++] = field.toString();
+
+        String[] result = new String[fieldCount];
+        System.arraycopy(fields, 0, result, 0, fieldCount);
+        return result;
+    }
+
+    private static String quoteJson(String value) {
+        StringBuilder quoted = new StringBuilder(value.length() + 2);
+        quoted.append('"');
+        for(int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if(c == '"' || c == '\\') {
+                quoted.append('\\').append(c);
+            } else if(c < 0x20) {
+                quoted.append(String.format("\\u%04x", (int) c));
+            } else {
+                quoted.append(c);
+            }
+        }
+        return quoted.append('"').toString();
+    }
+
+    /**
+     * Reads one flat JSON object whose values are strings, numbers or null.
+     * Keys other than the four item fields are ignored.
+     */
+    private static class JsonRowParser {
+
+        private final String row;
+        private int pos;
+
+
+        JsonRowParser(String row) {
+            this.row = row;
+        }
+
+        void parseInto(String[] fields) {
+            expect('{');
+            skipWhitespace();
+            if(peek() == '}') {
+                pos++;
+            } else {
+                do {
+                    skipWhitespace();
+                    String key = readString();
+                    expect(':');
+                    String value = readValue();
+                    for(int i = 0; i < FIELD_NAMES.length; i++) {
+                        if(FIELD_NAMES[i].equals(key)) {
+                            fields[i] = value;
+                        }
+                    }
+                    skipWhitespace();
+                } while(next() == ',');
+
+                if(row.charAt(pos - 1) != '}') {
+                    throw malformed();
+                }
+            }
+            skipWhitespace();
+            if(pos != row.length()) {
+                throw malformed();
+            }
+        }
+
+        private String readValue() {
+            skipWhitespace();
+            char c = peek();
+            if(c == '"') {
+                return readString();
+            }
+            int start = pos;
+            while(pos < row.length()
+                    && ",} \t".indexOf(row.charAt(pos)) < 0) {
+                pos++;
+            }
+            String literal = row.substring(start, pos);
+            if(literal.isEmpty()) {
+                throw malformed();
+            }
+            return literal.equals("null") ? null : literal;
+        }
+
+        private String readString() {
+            expect('"');
+            StringBuilder value = new StringBuilder();
+            while(true) {
+                char c = next();
+                if(c == '"') {
+                    return value.toString();
+                }
+                if(c != '\\') {
+                    value.append(c);
+                    continue;
+                }
+                char escaped = next();
+                switch(escaped) {
+                    case 'n': value.append('\n'); break;
+                    case 't': value.append('\t'); break;
+                    case 'r': value.append('\r'); break;
+                    case 'b': value.append('\b'); break;
+                    case 'f': value.append('\f'); break;
+                    case 'u':
+                        if(pos + 4 > row.length()) {
+                            throw malformed();
+                        }
+                        try {
+                            value.append((char) Integer.parseInt(
+                                    row.substring(pos, pos + 4), 16));
+                        } catch(NumberFormatException e) {
+                            throw malformed();
+                        }
+                        pos += 4;
+                        break;
+                    default: value.append(escaped);
+                }
+            }
+        }
+
+        private void expect(char expected) {
+            skipWhitespace();
+            if(next() != expected) {
+                throw malformed();
+            }
+        }
+
+        private char peek() {
+            if(pos >= row.length()) {
+                throw malformed();
+            }
+            return row.charAt(pos);
+        }
+
+        private char next() {
+            char c = peek();
+            pos++;
+            return c;
+        }
+
+        private void skipWhitespace() {
+            while(pos < row.length()
+                    && Character.isWhitespace(row.charAt(pos))) {
+                pos++;
+            }
+        }
+
+        private IllegalArgumentException malformed() {
+            return new IllegalArgumentException("Malformed JSON at column "
+                    + (pos + 1) + ".");
+        }
+    }
+
+}
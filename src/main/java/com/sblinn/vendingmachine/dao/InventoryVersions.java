@@ -0,0 +1,37 @@
+
+package com.sblinn.vendingmachine.dao;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Starting inventory version for a DAO that opens or reloads its store.
+ * Versions are not kept on disk, so a DAO that started counting from 0 on
+ * every open would hand out versions an earlier instance already gave to
+ * other Items, and a stale Item read before a restart or a fleet eviction
+ * could pass a compare-and-set. Seeds are taken from the clock instead, far
+ * enough apart that a DAO would need a million changes per millisecond to
+ * reach the next seed, so versions keep rising across reopens and are never
+ * Item.UNVERSIONED.
+ *
+ * @author sarablinn
+ */
+final class InventoryVersions {
+
+    private static final long VERSIONS_PER_MILLI = 1_000_000;
+    // two seeds taken in the same millisecond still differ
+    private static final AtomicLong lastSeed = new AtomicLong();
+
+
+    private InventoryVersions() {
+    }
+
+
+    /**
+     * @return a version above every seed taken before it
+     */
+    static long seed() {
+        long clockSeed = System.currentTimeMillis() * VERSIONS_PER_MILLI;
+        return lastSeed.updateAndGet((last) -> Math.max(last + 1, clockSeed));
+    }
+
+}
@@ -1,6 +1,9 @@
 
 package com.sblinn.vendingmachine.dao;
 
+import java.time.LocalDateTime;
+import java.util.List;
+
 /**
  *
  * @author sarablinn
@@ -15,4 +18,27 @@ public interface VendingMachineAuditDao {
      */
     public void writeAuditEntry(String entry) throws PersistenceException;
     
+    /**
+     * Writes several audit entries to the audit log with a single write.
+     * 
+     * @param entries - List of String entries, in order
+     * @throws PersistenceException 
+     */
+    public void writeAuditEntries(List<String> entries) 
+            throws PersistenceException;
+    
+    /**
+     * Writes several audit entries that were made earlier with a single 
+     * write, each stamped with the time it was made rather than the time of 
+     * the write. DAOs that do not stamp entries ignore the timestamps.
+     * 
+     * @param entries - List of String entries, in order
+     * @param timestamps - time each entry was made, in the same order
+     * @throws PersistenceException 
+     */
+    public default void writeAuditEntries(List<String> entries, 
+            List<LocalDateTime> timestamps) throws PersistenceException {
+        writeAuditEntries(entries);
+    }
+    
 }
@@ -0,0 +1,322 @@
+package com.sblinn.vendingmachine.dao;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Audit DAO that takes audit writes off the caller's thread. Entries go onto
+ * a bounded queue and a background thread drains them in batches, handing
+ * each batch to the wrapped audit DAO as a single writeAuditEntries() call
+ * (one write to the audit file).
+ *
+ * A batch is written once it holds batchSize entries or once its first entry
+ * has waited lingerMillis, whichever comes first. Each entry is timestamped
+ * when it is queued and the timestamp is handed to the wrapped DAO with it,
+ * so the log shows when the event happened, not when its batch was written.
+ *
+ * A batch that fails to write is retried up to MAX_WRITE_ATTEMPTS times. If
+ * it still fails its entries are counted in getFailedEntryCount() and the
+ * failure is reported to the next caller.
+ *
+ * close() stops accepting entries, writes everything still queued and must
+ * be called on shutdown (the Spring context does this through
+ * destroy-method).
+ *
+ * @author sarablinn
+ */
+public class VendingMachineAuditDaoAsyncImpl implements VendingMachineAuditDao {
+
+    /**
+     * What writeAuditEntry() does when the queue is full.
+     */
+    public enum FullQueuePolicy {
+        /** Wait until the writer thread makes room. */
+        BLOCK,
+        /** Discard the entry and count it in getDroppedEntryCount(). */
+        DROP,
+        /**
+         * Write the entry synchronously on the caller's thread. It may then
+         * land in the log ahead of entries that are still queued.
+         */
+        CALLER_RUNS
+    }
+
+    public static final int MAX_WRITE_ATTEMPTS = 3;
+    private static final long RETRY_DELAY_MILLIS = 100;
+
+    private final VendingMachineAuditDao auditDao;
+    private final BlockingQueue<QueuedEntry> queue;
+    private final int batchSize;
+    private final long lingerMillis;
+    private final FullQueuePolicy fullQueuePolicy;
+
+    private final Thread writer;
+    // the writer thread and CALLER_RUNS callers both write to auditDao
+    private final Object writeLock = new Object();
+    private final AtomicLong droppedEntryCount = new AtomicLong();
+    private final AtomicLong failedEntryCount = new AtomicLong();
+    // callers queue under the read lock, close() stops them under the write 
+    // lock, so nothing is queued after close() has drained the queue
+    private final ReadWriteLock closeLock = new ReentrantReadWriteLock();
+    private volatile boolean running = true;
+    private volatile PersistenceException writeFailure;
+
+
+    /**
+     *
+     * @param auditDao - audit DAO that batches are written to
+     * @param queueCapacity - maximum number of entries waiting to be written
+     * @param batchSize - maximum number of entries written at once
+     * @param lingerMillis - longest time an entry waits for its batch to fill
+     * @param fullQueuePolicy - what to do when the queue is full
+     */
+    public VendingMachineAuditDaoAsyncImpl(VendingMachineAuditDao auditDao,
+            int queueCapacity, int batchSize, long lingerMillis,
+            FullQueuePolicy fullQueuePolicy) {
+
+        if(batchSize < 1 || lingerMillis < 0) {
+            throw new IllegalArgumentException(
+                    "batchSize must be positive and lingerMillis not negative.");
+        }
+        this.auditDao = auditDao;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.batchSize = batchSize;
+        this.lingerMillis = lingerMillis;
+        this.fullQueuePolicy = fullQueuePolicy;
+
+        this.writer = new Thread(this::drainQueue, "audit-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+
+    /**
+     * Queues an audit entry, stamped with the current time, to be written by 
+     * the background thread. A failure of an earlier background write is 
+     * reported here.
+     *
+     * @param entry - String
+     * @throws PersistenceException if an earlier write failed, or the DAO 
+     *         is closing
+     */
+    @Override
+    public void writeAuditEntry(String entry) throws PersistenceException {
+        rethrowWriteFailure();
+        QueuedEntry queuedEntry = new QueuedEntry(entry, LocalDateTime.now());
+        closeLock.readLock().lock();
+        try {
+            if(!running) {
+                throw new PersistenceException("Unable to persist audit "
+                        + "information, audit log is closed.");
+            }
+            enqueue(queuedEntry);
+        } finally {
+            closeLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Queues several audit entries, in order.
+     *
+     * @param entries - List of String entries
+     * @throws PersistenceException
+     */
+    @Override
+    public void writeAuditEntries(List<String> entries)
+            throws PersistenceException {
+        for(String entry : entries) {
+            writeAuditEntry(entry);
+        }
+    }
+
+    /**
+     * Stops accepting entries, writes everything still queued and waits for
+     * the writer thread to finish.
+     *
+     * @throws PersistenceException if a queued batch could not be written
+     */
+    public void close() throws PersistenceException {
+        closeLock.writeLock().lock();
+        try {
+            running = false;
+        } finally {
+            closeLock.writeLock().unlock();
+        }
+        writer.interrupt();
+        try {
+            writer.join();
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // entries queued by callers that raced with close()
+        List<QueuedEntry> remaining = new ArrayList<>();
+        queue.drainTo(remaining);
+        writeBatch(remaining);
+        rethrowWriteFailure();
+    }
+
+    /**
+     * @return number of entries discarded by the DROP policy
+     */
+    public long getDroppedEntryCount() {
+        return droppedEntryCount.get();
+    }
+
+    /**
+     * @return number of entries whose batch still failed after 
+     *         MAX_WRITE_ATTEMPTS
+     */
+    public long getFailedEntryCount() {
+        return failedEntryCount.get();
+    }
+
+
+    /**
+     * Queues the entry, or applies the full queue policy. Callers hold the 
+     * read lock of closeLock.
+     */
+    private void enqueue(QueuedEntry queuedEntry) 
+            throws PersistenceException {
+        if(queue.offer(queuedEntry)) {
+            return;
+        }
+
+        switch(fullQueuePolicy) {
+            case BLOCK:
+                try {
+                    queue.put(queuedEntry);
+                } catch(InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new PersistenceException(
+                            "Unable to persist audit information.", e);
+                }
+                break;
+            case DROP:
+                droppedEntryCount.incrementAndGet();
+                break;
+            case CALLER_RUNS:
+                synchronized(writeLock) {
+                    auditDao.writeAuditEntries(
+                            Collections.singletonList(queuedEntry.entry),
+                            Collections.singletonList(queuedEntry.timestamp));
+                }
+                break;
+        }
+    }
+
+    private void drainQueue() {
+        List<QueuedEntry> batch = new ArrayList<>(batchSize);
+        while(running || !queue.isEmpty()) {
+            try {
+                QueuedEntry first = queue.poll(1, TimeUnit.SECONDS);
+                if(first == null) {
+                    continue;
+                }
+                batch.add(first);
+                fillBatch(batch);
+            } catch(InterruptedException e) {
+                // close() interrupts a waiting writer; the loop then drains
+                // whatever is left without waiting
+            }
+            if(!running) {
+                queue.drainTo(batch, batchSize - batch.size());
+            }
+            writeBatch(batch);
+        }
+    }
+
+    /**
+     * Adds queued entries to the batch until it is full or the linger time
+     * since its first entry runs out.
+     */
+    private void fillBatch(List<QueuedEntry> batch) 
+            throws InterruptedException {
+        long deadline = System.nanoTime()
+                + TimeUnit.MILLISECONDS.toNanos(lingerMillis);
+        queue.drainTo(batch, batchSize - batch.size());
+        while(batch.size() < batchSize && running) {
+            long remaining = deadline - System.nanoTime();
+            if(remaining <= 0) {
+                return;
+            }
+            QueuedEntry next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+            if(next == null) {
+                return;
+            }
+            batch.add(next);
+            queue.drainTo(batch, batchSize - batch.size());
+        }
+    }
+
+    /**
+     * Writes the batch with the timestamps its entries were queued with, 
+     * retrying a failed write before giving the entries up.
+     */
+    private void writeBatch(List<QueuedEntry> batch) {
+        if(batch.isEmpty()) {
+            return;
+        }
+        List<String> entries = new ArrayList<>(batch.size());
+        List<LocalDateTime> timestamps = new ArrayList<>(batch.size());
+        for(QueuedEntry queuedEntry : batch) {
+            entries.add(queuedEntry.entry);
+            timestamps.add(queuedEntry.timestamp);
+        }
+        for(int attempt = 1; ; attempt++) {
+            try {
+                synchronized(writeLock) {
+                    auditDao.writeAuditEntries(entries, timestamps);
+                }
+                break;
+            } catch(PersistenceException e) {
+                if(attempt == MAX_WRITE_ATTEMPTS) {
+                    failedEntryCount.addAndGet(batch.size());
+                    writeFailure = e;
+                    break;
+                }
+                pauseBeforeRetry(attempt);
+            }
+        }
+        batch.clear();
+    }
+
+    private void pauseBeforeRetry(int attempt) {
+        try {
+            Thread.sleep(attempt * RETRY_DELAY_MILLIS);
+        } catch(InterruptedException e) {
+            // close() is waiting, retry straight away
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void rethrowWriteFailure() throws PersistenceException {
+        PersistenceException failure = writeFailure;
+        if(failure != null) {
+            writeFailure = null;
+            throw failure;
+        }
+    }
+
+
+    /**
+     * An audit entry and the time it was queued.
+     */
+    private static class QueuedEntry {
+
+        private final String entry;
+        private final LocalDateTime timestamp;
+
+        QueuedEntry(String entry, LocalDateTime timestamp) {
+            this.entry = entry;
+            this.timestamp = timestamp;
+        }
+    }
+}
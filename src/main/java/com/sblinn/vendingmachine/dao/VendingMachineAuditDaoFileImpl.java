@@ -1,40 +1,367 @@
-
 package com.sblinn.vendingmachine.dao;
 
-import java.io.FileWriter;
+import com.sblinn.vendingmachine.jfr.AuditWriteEvent;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.PrintWriter;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
 
 /**
+ * Rolling audit log. The audit file is opened once, and the entries of each
+ * writeAuditEntry or writeAuditEntries call are gathered in a write buffer
+ * of WRITE_BUFFER_BYTES and go to the file's channel in one write before the
+ * call returns. If that write fails the bytes it did not get out stay in the
+ * buffer and are written ahead of the next entries, so a line is never left
+ * half written. When the file would grow past the segment size, or when
+ * the day changes, it is renamed to a dated segment
+ * (e.g. audit.2022-01-27.1.txt) and a new audit file is started. Rolled
+ * segments are gzip-compressed on a background thread; a segment that fails
+ * to compress is retried, and again after the next roll. Only the newest
+ * retainedSegments segments, compressed or not, are kept.
  *
  * @author sarablinn
  */
 public class VendingMachineAuditDaoFileImpl implements VendingMachineAuditDao {
 
-    public static final String AUDIT_FILE = "audit.txt";
-    
+    public static final String DEFAULT_AUDIT_FILE = "audit.txt";
+    public static final long DEFAULT_MAX_SEGMENT_BYTES = 10 * 1024 * 1024;
+    public static final int DEFAULT_RETAINED_SEGMENTS = 30;
+    public static final int WRITE_BUFFER_BYTES = 64 * 1024;
+    private static final int MAX_COMPRESS_ATTEMPTS = 3;
+    private static final long COMPRESS_RETRY_DELAY_MILLIS = 100;
+
+    private final String AUDIT_FILE;
+    private final long maxSegmentBytes;
+    private final int retainedSegments;
+
+    private FileChannel channel;
+    private final ByteBuffer writeBuffer =
+            ByteBuffer.allocate(WRITE_BUFFER_BYTES);
+    private long segmentSize;
+    private LocalDate segmentDate;
+    private final ExecutorService compressor =
+            Executors.newSingleThreadExecutor((r) -> {
+                Thread t = new Thread(r, "audit-segment-compressor");
+                t.setDaemon(true);
+                return t;
+            });
+
+
+    public VendingMachineAuditDaoFileImpl() {
+        this(DEFAULT_AUDIT_FILE);
+    }
+
+    /**
+     *
+     * @param auditFile - audit log text file
+     */
+    public VendingMachineAuditDaoFileImpl(String auditFile) {
+        this(auditFile, DEFAULT_MAX_SEGMENT_BYTES, DEFAULT_RETAINED_SEGMENTS);
+    }
+
+    /**
+     *
+     * @param auditFile - audit log text file
+     * @param maxSegmentBytes - size at which the audit file is rolled
+     * @param retainedSegments - number of compressed segments to keep
+     */
+    public VendingMachineAuditDaoFileImpl(String auditFile,
+            long maxSegmentBytes, int retainedSegments) {
+        AUDIT_FILE = auditFile;
+        this.maxSegmentBytes = maxSegmentBytes;
+        this.retainedSegments = retainedSegments;
+    }
+
+
     /**
      * Writes a timestamped audit entry to the audit log text file.
-     * 
+     *
      * @param entry - String
-     * @throws PersistenceException 
+     * @throws PersistenceException
+     */
+    @Override
+    public synchronized void writeAuditEntry(String entry)
+            throws PersistenceException {
+        LocalDateTime timestamp = LocalDateTime.now();
+        write(timestamp.toString() + " : " + entry + System.lineSeparator(), 1);
+    }
+
+    /**
+     * Writes timestamped audit entries to the audit log text file with a
+     * single write.
+     *
+     * @param entries - List of String entries, in order
+     * @throws PersistenceException
      */
     @Override
-    public void writeAuditEntry(String entry) throws PersistenceException {
-        PrintWriter out;
-        
+    public synchronized void writeAuditEntries(List<String> entries)
+            throws PersistenceException {
+        writeAuditEntries(entries, 
+                Collections.nCopies(entries.size(), LocalDateTime.now()));
+    }
+
+    /**
+     * Writes audit entries to the audit log text file with a single write, 
+     * each stamped with the time it was made.
+     *
+     * @param entries - List of String entries, in order
+     * @param timestamps - time each entry was made, in the same order
+     * @throws PersistenceException
+     */
+    @Override
+    public synchronized void writeAuditEntries(List<String> entries,
+            List<LocalDateTime> timestamps) throws PersistenceException {
+        StringBuilder lines = new StringBuilder();
+        for(int i = 0; i < entries.size(); i++) {
+            lines.append(timestamps.get(i)).append(" : ")
+                    .append(entries.get(i)).append(System.lineSeparator());
+        }
+        write(lines.toString(), entries.size());
+    }
+
+    /**
+     * Writes any entries left from a failed write, closes the audit file and waits for
+     * pending segment compression.
+     *
+     * @throws PersistenceException
+     */
+    public void close() throws PersistenceException {
+        synchronized(this) {
+            closeChannel();
+        }
+        compressor.shutdown();
         try {
-            out = new PrintWriter(new FileWriter(AUDIT_FILE, true));
+            compressor.awaitTermination(1, TimeUnit.MINUTES);
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+
+    private void write(String text, int entryCount) 
+            throws PersistenceException {
+        AuditWriteEvent event = new AuditWriteEvent();
+        event.begin();
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        boolean rolled = false;
+        try {
+            if(channel == null) {
+                openChannel();
+            }
+            if(!LocalDate.now().equals(segmentDate)
+                    || (segmentSize > 0
+                        && segmentSize + bytes.length > maxSegmentBytes)) {
+                rollSegment();
+                rolled = true;
+            }
+            if(bytes.length > writeBuffer.remaining()) {
+                flushBuffer();
+            }
+            if(bytes.length > writeBuffer.remaining()) {
+                writeFully(ByteBuffer.wrap(bytes));
+            } else {
+                writeBuffer.put(bytes);
+                flushBuffer();
+            }
+            segmentSize += bytes.length;
+            
+            event.end();
+            if(event.shouldCommit()) {
+                event.setAuditFile(AUDIT_FILE);
+                event.setBytesWritten(bytes.length);
+                event.setEntryCount(entryCount);
+                event.setSegmentRolled(rolled);
+                event.commit();
+            }
         } catch(IOException e) {
             throw new PersistenceException(
                     "Unable to persist audit information.", e);
         }
-        
-        LocalDateTime timestamp = LocalDateTime.now();
-        out.println(timestamp.toString() + " : " + entry);
-        out.flush();
     }
-    
-    
+
+    /**
+     * Writes out the write buffer. Bytes a failed write did not get out are
+     * kept at the front of the buffer.
+     */
+    private void flushBuffer() throws IOException {
+        writeBuffer.flip();
+        try {
+            writeFully(writeBuffer);
+        } finally {
+            writeBuffer.compact();
+        }
+    }
+
+    private void writeFully(ByteBuffer buffer) throws IOException {
+        while(buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private void openChannel() throws IOException {
+        Path auditPath = Paths.get(AUDIT_FILE);
+        channel = FileChannel.open(auditPath, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        segmentSize = channel.size();
+        // an existing file belongs to the day it was last written
+        segmentDate = segmentSize == 0
+                ? LocalDate.now()
+                : LocalDate.ofInstant(Files.getLastModifiedTime(auditPath)
+                        .toInstant(), ZoneId.systemDefault());
+    }
+
+    private void closeChannel() throws PersistenceException {
+        if(channel == null) {
+            return;
+        }
+        try {
+            try {
+                flushBuffer();
+            } finally {
+                channel.close();
+            }
+        } catch(IOException e) {
+            throw new PersistenceException(
+                    "Unable to close audit file.", e);
+        } finally {
+            channel = null;
+        }
+    }
+
+    /**
+     * Renames the current audit file to a dated segment, starts a new audit
+     * file and hands the segment to the compressor.
+     */
+    private void rollSegment() throws IOException {
+        flushBuffer();
+        channel.close();
+        channel = null;
+
+        Path auditPath = Paths.get(AUDIT_FILE);
+        Path segmentPath;
+        int sequence = 1;
+        do {
+            segmentPath = auditPath.resolveSibling(
+                    segmentPrefix() + segmentDate + "." + sequence
+                            + segmentSuffix());
+            sequence++;
+        } while(Files.exists(segmentPath)
+                || Files.exists(Paths.get(segmentPath + ".gz")));
+        Files.move(auditPath, segmentPath);
+
+        if(compressor.isShutdown()) {
+            // written to after close(), compress on this thread instead
+            compressSegments();
+        } else {
+            compressor.execute(this::compressSegments);
+        }
+        openChannel();
+    }
+
+    /**
+     * Gzips every rolled segment not yet compressed, including ones an 
+     * earlier run failed on, then removes the oldest segments beyond the 
+     * retention count.
+     */
+    private void compressSegments() {
+        for(File segment : listSegments(false)) {
+            for(int attempt = 1; !compressSegment(segment.toPath()) 
+                    && attempt < MAX_COMPRESS_ATTEMPTS; attempt++) {
+                try {
+                    Thread.sleep(attempt * COMPRESS_RETRY_DELAY_MILLIS);
+                } catch(InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+        }
+        removeOldSegments();
+    }
+
+    /**
+     * Gzips a rolled segment and deletes the uncompressed copy. A failure 
+     * leaves the uncompressed segment in place.
+     *
+     * @return true if the segment was compressed
+     */
+    private boolean compressSegment(Path segmentPath) {
+        Path gzipPath = Paths.get(segmentPath + ".gz");
+        try (InputStream in = new FileInputStream(segmentPath.toFile());
+                OutputStream out = new GZIPOutputStream(
+                        new FileOutputStream(gzipPath.toFile()))) {
+            in.transferTo(out);
+        } catch(IOException e) {
+            gzipPath.toFile().delete();
+            return false;
+        }
+        segmentPath.toFile().delete();
+        return true;
+    }
+
+    /**
+     * @param compressed - true for gzipped segments, false for rolled
+     *                     segments not yet compressed
+     * @return the segment files, never the current audit file
+     */
+    private File[] listSegments(boolean compressed) {
+        Path auditPath = Paths.get(AUDIT_FILE).toAbsolutePath();
+        String auditName = auditPath.getFileName().toString();
+        String prefix = segmentPrefix();
+        String suffix = segmentSuffix() + (compressed ? ".gz" : "");
+        File[] segments = auditPath.getParent().toFile().listFiles((dir, name)
+                -> name.startsWith(prefix) && name.endsWith(suffix)
+                        && compressed == name.endsWith(".gz")
+                        && !name.equals(auditName));
+        return segments == null ? new File[0] : segments;
+    }
+
+    private void removeOldSegments() {
+        File[] compressed = listSegments(true);
+        File[] uncompressed = listSegments(false);
+        File[] segments = Arrays.copyOf(compressed,
+                compressed.length + uncompressed.length);
+        System.arraycopy(uncompressed, 0, segments, compressed.length,
+                uncompressed.length);
+        if(segments.length <= retainedSegments) {
+            return;
+        }
+        Arrays.sort(segments, Comparator.comparingLong(File::lastModified)
+                .thenComparing(File::getName));
+        for(int i = 0; i < segments.length - retainedSegments; i++) {
+            segments[i].delete();
+        }
+    }
+
+    // "audit.txt" rolls to "audit.<date>.<n>.txt"
+    private String segmentPrefix() {
+        String fileName = Paths.get(AUDIT_FILE).getFileName().toString();
+        int dot = fileName.lastIndexOf('.');
+        return (dot > 0 ? fileName.substring(0, dot) : fileName) + ".";
+    }
+
+    private String segmentSuffix() {
+        String fileName = Paths.get(AUDIT_FILE).getFileName().toString();
+        int dot = fileName.lastIndexOf('.');
+        return dot > 0 ? fileName.substring(dot) : "";
+    }
 }
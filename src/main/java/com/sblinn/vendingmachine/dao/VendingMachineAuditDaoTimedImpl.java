@@ -0,0 +1,65 @@
+package com.sblinn.vendingmachine.dao;
+
+import com.sblinn.vendingmachine.metrics.LatencyMetrics;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Records how long the wrapped audit DAO takes per write. Placed between the 
+ * asynchronous audit DAO and the file audit DAO, each timed call is one 
+ * batch going to the audit file in a single channel write, rolling the file 
+ * first when it is due.
+ *
+ * @author sarablinn
+ */
+public class VendingMachineAuditDaoTimedImpl implements VendingMachineAuditDao {
+
+    private final VendingMachineAuditDao auditDao;
+    private final LatencyMetrics writeMetrics;
+
+
+    /**
+     *
+     * @param auditDao - audit DAO being timed
+     * @param writeMetrics - durations of writeAuditEntry and writeAuditEntries
+     */
+    public VendingMachineAuditDaoTimedImpl(VendingMachineAuditDao auditDao,
+            LatencyMetrics writeMetrics) {
+        this.auditDao = auditDao;
+        this.writeMetrics = writeMetrics;
+    }
+
+
+    @Override
+    public void writeAuditEntry(String entry) throws PersistenceException {
+        long start = System.nanoTime();
+        try {
+            auditDao.writeAuditEntry(entry);
+        } finally {
+            writeMetrics.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public void writeAuditEntries(List<String> entries)
+            throws PersistenceException {
+        long start = System.nanoTime();
+        try {
+            auditDao.writeAuditEntries(entries);
+        } finally {
+            writeMetrics.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public void writeAuditEntries(List<String> entries,
+            List<LocalDateTime> timestamps) throws PersistenceException {
+        long start = System.nanoTime();
+        try {
+            auditDao.writeAuditEntries(entries, timestamps);
+        } finally {
+            writeMetrics.record(System.nanoTime() - start);
+        }
+    }
+
+}
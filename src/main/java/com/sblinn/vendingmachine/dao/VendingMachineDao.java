@@ -1,14 +1,20 @@
 
 package com.sblinn.vendingmachine.dao;
 
+import com.sblinn.vendingmachine.dto.InventorySnapshot;
 import com.sblinn.vendingmachine.dto.Item;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
 
 /**
  *
  * @author sarablinn
  */
 public interface VendingMachineDao {
+    
+    long NO_VERSION = -1;
+    
     // CRUD
     
     Item createItem(String locationID, Item item) throws PersistenceException;
@@ -17,7 +23,197 @@ public interface VendingMachineDao {
     
     List<Item> getAllItems() throws PersistenceException;
     
+    /**
+     * Returns the items whose location ID starts with rowPrefix, e.g. "B" 
+     * for one shelf, sorted by location ID.
+     * 
+     * @param rowPrefix - String, case insensitive
+     * @return List of Items in the row
+     * @throws PersistenceException 
+     */
+    default List<Item> getItemsByRow(String rowPrefix) 
+            throws PersistenceException {
+        String prefix = rowPrefix.toUpperCase();
+        return getAllItems().stream()
+                .filter((i) -> i.getLocationID().startsWith(prefix))
+                .collect(Collectors.toList());
+    }
+    
     Item updateItem(String locationID, Item updatedItem) throws PersistenceException;
     
     Item deleteItem(String locationID) throws PersistenceException;
+    
+    // optimistic
+    
+    /**
+     * Replaces the item at locationID with updatedItem, but only if the 
+     * stored item is still at expectedVersion, i.e. nothing has written the 
+     * slot since the caller read it. The check and the write are atomic in 
+     * DAOs that are shared between threads; this default is not, and is 
+     * only meant for DAOs used by one thread.
+     * 
+     * @param locationID - String
+     * @param expectedVersion - version of the item the caller read
+     * @param updatedItem - Item
+     * @return the stored Item with its new version, or null if there is no 
+     *         item at locationID or its version is not expectedVersion
+     * @throws PersistenceException 
+     */
+    default Item compareAndUpdateItem(String locationID, long expectedVersion, 
+            Item updatedItem) throws PersistenceException {
+        Item currentItem = getItem(locationID);
+        if(currentItem == null || currentItem.getVersion() != expectedVersion) {
+            return null;
+        }
+        return updateItem(locationID, 
+                updatedItem.withVersion(expectedVersion + 1));
+    }
+    
+    /**
+     * Deletes the item at locationID, but only if it is still at 
+     * expectedVersion. Atomic in the same DAOs as compareAndUpdateItem.
+     * 
+     * @param locationID - String
+     * @param expectedVersion - version of the item the caller read
+     * @return the deleted Item, or null if there is no item at locationID or 
+     *         its version is not expectedVersion
+     * @throws PersistenceException 
+     */
+    default Item compareAndDeleteItem(String locationID, long expectedVersion) 
+            throws PersistenceException {
+        Item currentItem = getItem(locationID);
+        if(currentItem == null || currentItem.getVersion() != expectedVersion) {
+            return null;
+        }
+        return deleteItem(locationID);
+    }
+
+    /**
+     * Takes one unit of the item at locationID out of stock for a sale, but
+     * only if the item is still at expectedVersion and has stock left. This
+     * is the whole commit of a sale: one lookup, the decrement and one
+     * write, atomic in the same DAOs as compareAndUpdateItem.
+     *
+     * @param locationID - String
+     * @param expectedVersion - version of the item the caller checked
+     * @return the sold Item, with one less and its new version, or null if
+     *         there is no item at locationID, its version is not
+     *         expectedVersion or it is out of stock
+     * @throws PersistenceException
+     */
+    default Item commitSale(String locationID, long expectedVersion)
+            throws PersistenceException {
+        Item currentItem = getItem(locationID);
+        if(currentItem == null || currentItem.getVersion() != expectedVersion
+                || currentItem.getNumAvailable() <= 0) {
+            return null;
+        }
+        return compareAndUpdateItem(locationID, expectedVersion,
+                currentItem.withNumAvailable(
+                        currentItem.getNumAvailable() - 1));
+    }
+
+    /**
+     * Returns the items with stock left, sorted by location ID.
+     * 
+     * @return List of in stock Items
+     * @throws PersistenceException 
+     */
+    default List<Item> getInStockItems() throws PersistenceException {
+        return getAllItems().stream()
+                .filter((i) -> i.getNumAvailable() != 0)
+                .collect(Collectors.toList());
+    }
+    
+    /**
+     * @return number of slots holding an item with no stock left
+     * @throws PersistenceException 
+     */
+    default int getEmptySlotCount() throws PersistenceException {
+        return (int) getAllItems().stream()
+                .filter((i) -> i.getNumAvailable() == 0)
+                .count();
+    }
+    
+    /**
+     * @return true if at least one item has stock left
+     * @throws PersistenceException 
+     */
+    default boolean hasInStockItems() throws PersistenceException {
+        return getAllItems().stream()
+                .anyMatch((i) -> i.getNumAvailable() != 0);
+    }
+    
+    /**
+     * Returns a number that changes whenever the inventory changes, so that 
+     * anything derived from the inventory, such as a rendered menu, can be 
+     * kept until it moves.
+     * 
+     * @return inventory version, or NO_VERSION if this DAO does not track 
+     *         one and callers must assume the inventory changed
+     * @throws PersistenceException 
+     */
+    default long getInventoryVersion() throws PersistenceException {
+        return NO_VERSION;
+    }
+    
+    /**
+     * Returns the whole inventory as one immutable snapshot, so a reader 
+     * that lists many items sees them all at the same version. DAOs that 
+     * keep their inventory as a snapshot hand out the current one without 
+     * locking or copying.
+     * 
+     * @return InventorySnapshot
+     * @throws PersistenceException 
+     */
+    default InventorySnapshot getInventorySnapshot() 
+            throws PersistenceException {
+        long version = getInventoryVersion();
+        return new InventorySnapshot(version, getAllItems());
+    }
+    
+    // batch
+    
+    /**
+     * Replaces each item at its own location ID. DAOs that rewrite their 
+     * whole store on every change override this to persist the batch once.
+     * 
+     * @param updatedItems - List of Items
+     * @throws PersistenceException 
+     */
+    default void updateItems(List<Item> updatedItems) 
+            throws PersistenceException {
+        for(Item updatedItem : updatedItems) {
+            updateItem(updatedItem.getLocationID(), updatedItem);
+        }
+    }
+    
+    /**
+     * Replaces each item at its own location ID like updateItems, but only 
+     * if every slot is still at the version the caller read. Either the 
+     * whole batch is written or none of it. Atomic in the same DAOs as 
+     * compareAndUpdateItem.
+     * 
+     * @param updatedItems - List of Items
+     * @param expectedVersions - version of the stored item the caller read, 
+     *                           by upper case location ID, or NO_VERSION 
+     *                           (or no entry) if the slot was empty
+     * @return true if the batch was written, false if any slot changed
+     * @throws PersistenceException 
+     */
+    default boolean compareAndUpdateItems(List<Item> updatedItems, 
+            Map<String, Long> expectedVersions) throws PersistenceException {
+        for(Item updatedItem : updatedItems) {
+            String locationID = updatedItem.getLocationID().toUpperCase();
+            Item currentItem = getItem(locationID);
+            long currentVersion = currentItem == null 
+                    ? NO_VERSION : currentItem.getVersion();
+            if(currentVersion 
+                    != expectedVersions.getOrDefault(locationID, NO_VERSION)) {
+                return false;
+            }
+        }
+        updateItems(updatedItems);
+        return true;
+    }
 }
@@ -1,34 +1,125 @@
 
 package com.sblinn.vendingmachine.dao;
 
+import com.sblinn.vendingmachine.dto.InventorySnapshot;
 import com.sblinn.vendingmachine.dto.Item;
-import java.io.BufferedReader;
-import java.io.FileNotFoundException;
-import java.io.FileReader;
+import com.sblinn.vendingmachine.dto.Money;
+import com.sblinn.vendingmachine.jfr.InventoryLoadEvent;
+import com.sblinn.vendingmachine.jfr.InventoryWriteEvent;
+import com.sblinn.vendingmachine.metrics.LatencyMetrics;
+import java.io.BufferedWriter;
+import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.PrintWriter;
-import java.math.BigDecimal;
-import java.util.ArrayList;
-import java.util.Comparator;
-import java.util.HashMap;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Scanner;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 /**
+ * File backed DAO. By default every call re-reads the inventory file. In 
+ * cached mode the inventory is loaded once and served from memory, mutations 
+ * are written through to the file, and the file is only re-read when its 
+ * modification time or size shows that it was edited outside of this DAO.
+ * 
+ * The inventory is held as an immutable InventorySnapshot. Mutations are 
+ * synchronized; each one derives the next snapshot from the current one, 
+ * sharing everything it does not change, writes the file (unless writes are 
+ * COALESCED) and only then publishes it, so a failed write leaves the 
+ * inventory as it was. Reads take the current snapshot without locking (in 
+ * the default mode they still lock, to re-read the file), so one instance 
+ * can be shared by concurrent sessions and menus and exports never wait on 
+ * a sale.
+ * 
+ * An item's version is the inventory version that stored it, so versions 
+ * only go up, even for a slot that is deleted and filled again, and it 
+ * starts from an InventoryVersions seed, so they keep going up when the 
+ * inventory is reopened by a new DAO. Versions are not kept in the file; 
+ * when the file is re-read an item that did not change keeps its version 
+ * and one that did gets the new inventory version, so compareAndUpdateItem 
+ * also catches edits made outside of this DAO.
+ * 
+ * The file is written to a temporary file that is then atomically moved 
+ * over the inventory file, so anything reading the file sees the old 
+ * inventory or the new one, never half of one. How often it is written is 
+ * the WriteMode: WRITE_THROUGH (the default) writes it on every mutation, 
+ * COALESCED writes a burst of mutations once, at the cost of losing the 
+ * last few if the process is killed before they are flushed. A flush that 
+ * fails is reported to the next mutation and tried again after another 
+ * flush interval, until it succeeds or the DAO is closed. A COALESCED DAO 
+ * registers a JVM shutdown hook that close() removes again.
  *
  * @author sarablinn
  */
 public class VendingMachineDaoFileImpl implements VendingMachineDao {
     
+    /**
+     * When mutations reach the inventory file: how many of them can be lost 
+     * if the process dies, against how much time they spend writing.
+     */
+    public enum WriteMode {
+        /**
+         * Every mutation writes the file before it returns, so nothing that 
+         * was acknowledged is ever lost. Each sale pays for a whole write.
+         */
+        WRITE_THROUGH,
+        /**
+         * Mutations only change the inventory in memory and mark it dirty. 
+         * The file is written at most once per flushIntervalMillis, sooner 
+         * once maxPendingWrites mutations are waiting, and on close() or JVM 
+         * shutdown. A burst of sales costs one write, but a death that skips 
+         * the shutdown hooks (kill -9, power loss) loses the mutations since 
+         * the last write. A failed write is reported by the next mutation 
+         * and retried. Needs cached mode.
+         */
+        COALESCED
+    }
+    
     private final String INVENTORY_FILE;
     public static final String DELIMITER = "::";
-    private Map<String, Item> items = new HashMap<>();
+    // replaced, never edited, by every load and write
+    private volatile InventorySnapshot inventory = InventorySnapshot.EMPTY;
+    
+    private final boolean cached;
+    // modification time and size of the inventory file as last loaded/written,
+    // read without the lock by getInventorySnapshot
+    private volatile FileTime loadedModifiedTime;
+    private volatile long loadedSize = -1;
+    
+    private final InventoryFileParser parser = new InventoryFileParser();
+    // bumped by every load and write
+    private long inventoryVersion = InventoryVersions.seed();
+    
+    private final WriteMode writeMode;
+    private final long flushIntervalMillis;
+    private final int maxPendingWrites;
+    // COALESCED only, mutations not yet in the file
+    private int pendingWrites = 0;
+    private boolean flushScheduled = false;
+    private volatile PersistenceException flushFailure;
+    private final ScheduledExecutorService flusher;
+    private final Thread shutdownHook;
+    
+    // durations of actual reads and writes of the inventory file
+    private LatencyMetrics fileLoadMetrics = new LatencyMetrics();
+    private LatencyMetrics fileWriteMetrics = new LatencyMetrics();
     
     
     public VendingMachineDaoFileImpl() {
-        INVENTORY_FILE = "inventory.txt";
+        this("inventory.txt");
     }
     
     /**
@@ -36,17 +127,78 @@ public class VendingMachineDaoFileImpl implements VendingMachineDao {
      * @param inventoryTextFile 
      */
     public VendingMachineDaoFileImpl(String inventoryTextFile) {
+        this(inventoryTextFile, false);
+    }
+    
+    /**
+     * 
+     * @param inventoryTextFile
+     * @param cached - true to serve reads from memory and only reload the 
+     *                 file when it changes on disk
+     */
+    public VendingMachineDaoFileImpl(String inventoryTextFile, boolean cached) {
+        this(inventoryTextFile, cached, WriteMode.WRITE_THROUGH, 0, 1);
+    }
+    
+    /**
+     * 
+     * @param inventoryTextFile
+     * @param cached - true to serve reads from memory and only reload the 
+     *                 file when it changes on disk
+     * @param writeMode - WRITE_THROUGH, or COALESCED to write bursts of 
+     *                    mutations once and risk losing the unwritten ones
+     * @param flushIntervalMillis - COALESCED: longest time a mutation waits 
+     *                              to be written
+     * @param maxPendingWrites - COALESCED: number of waiting mutations that 
+     *                           are written straight away
+     * @throws IllegalArgumentException if COALESCED is asked for without 
+     *         cached mode or without a positive interval and count
+     */
+    public VendingMachineDaoFileImpl(String inventoryTextFile, boolean cached, 
+            WriteMode writeMode, long flushIntervalMillis, 
+            int maxPendingWrites) {
+        if(writeMode == WriteMode.COALESCED) {
+            // an uncached DAO re-reads the file, dropping unwritten changes
+            if(!cached) {
+                throw new IllegalArgumentException(
+                        "COALESCED writes need cached mode.");
+            }
+            if(flushIntervalMillis < 1 || maxPendingWrites < 1) {
+                throw new IllegalArgumentException("flushIntervalMillis and "
+                        + "maxPendingWrites must be positive.");
+            }
+        }
         INVENTORY_FILE = inventoryTextFile;
+        this.cached = cached;
+        this.writeMode = writeMode;
+        this.flushIntervalMillis = flushIntervalMillis;
+        this.maxPendingWrites = maxPendingWrites;
+        
+        if(writeMode == WriteMode.COALESCED) {
+            flusher = Executors.newSingleThreadScheduledExecutor((r) -> {
+                Thread t = new Thread(r, "inventory-flusher");
+                t.setDaemon(true);
+                return t;
+            });
+            shutdownHook = new Thread(this::flushOnExit, 
+                    "inventory-flush-on-exit");
+            Runtime.getRuntime().addShutdownHook(shutdownHook);
+        } else {
+            flusher = null;
+            shutdownHook = null;
+        }
     }
 
     @Override
-    public Item createItem(String locationID, Item item) throws PersistenceException {
+    public synchronized Item createItem(String locationID, Item item) 
+            throws PersistenceException {
         loadInventory();
         // make locationID uppercase 
-        locationID = locationID.toUpperCase();
-        Item newItem = items.put(locationID, item);
-        writeInventory();
-        return newItem;
+        String key = locationID.toUpperCase();
+        Item previousItem = inventory.getItem(key);
+        writeInventory(inventory.withItem(nextInventoryVersion(), key, 
+                nextVersion(item)));
+        return previousItem;
     }
 
     /**
@@ -59,20 +211,86 @@ public class VendingMachineDaoFileImpl implements VendingMachineDao {
      */
     @Override
     public Item getItem(String locationID) throws PersistenceException {
-        loadInventory();
-        // make user input locationID uppercase
-        locationID = locationID.toUpperCase();
-        Item item = items.get(locationID);
-        return item;
+        return getInventorySnapshot().getItem(locationID);
     }
 
+    /**
+     * @return unmodifiable List of all Items sorted by locationID
+     * @throws PersistenceException 
+     */
     @Override
     public List<Item> getAllItems() throws PersistenceException {
-        loadInventory();
-        // Sort the list of items by their locationID, so they have order
-        List<Item> sortedItems = new ArrayList(items.values());
-        sortedItems.sort(Comparator.comparing((i) -> i.getLocationID()));
-        return sortedItems;
+        return getInventorySnapshot().getItems();
+    }
+
+    /**
+     * Returns the items whose location ID starts with rowPrefix, e.g. "B" 
+     * for the whole B shelf, in location ID order. The index is walked from 
+     * the first matching key, so no other row is visited.
+     * 
+     * @param rowPrefix - String, case insensitive
+     * @return List of Items in the row sorted by locationID
+     * @throws PersistenceException 
+     */
+    @Override
+    public List<Item> getItemsByRow(String rowPrefix) 
+            throws PersistenceException {
+        return getInventorySnapshot().getItemsByRow(rowPrefix);
+    }
+
+    /**
+     * Returns the items with stock left, kept apart in the snapshot so that 
+     * sold out slots are not visited.
+     * 
+     * @return unmodifiable List of in stock Items sorted by locationID
+     * @throws PersistenceException 
+     */
+    @Override
+    public List<Item> getInStockItems() throws PersistenceException {
+        return getInventorySnapshot().getInStockItems();
+    }
+
+    @Override
+    public int getEmptySlotCount() throws PersistenceException {
+        return getInventorySnapshot().getEmptySlotCount();
+    }
+
+    @Override
+    public boolean hasInStockItems() throws PersistenceException {
+        return getInventorySnapshot().hasInStockItems();
+    }
+
+    /**
+     * Returns the inventory version, which goes up with every change. In 
+     * cached mode this only checks the file for outside edits; in the 
+     * default mode every call re-reads the file, so the version moves on 
+     * every call.
+     * 
+     * @return inventory version
+     * @throws PersistenceException 
+     */
+    @Override
+    public long getInventoryVersion() throws PersistenceException {
+        return getInventorySnapshot().getVersion();
+    }
+
+    /**
+     * Returns the current snapshot. In cached mode this takes no lock unless 
+     * the file was edited outside of this DAO and must be re-read.
+     * 
+     * @return InventorySnapshot
+     * @throws PersistenceException 
+     */
+    @Override
+    public InventorySnapshot getInventorySnapshot() 
+            throws PersistenceException {
+        if(cached && !isInventoryFileChanged()) {
+            return inventory;
+        }
+        synchronized(this) {
+            loadInventory();
+            return inventory;
+        }
     }
 
     /**
@@ -81,31 +299,219 @@ public class VendingMachineDaoFileImpl implements VendingMachineDao {
      * 
      * @param locationID - String
      * @param updatedItem - Item
-     * @return updatedItem 
+     * @return updatedItem as stored, with its new version
      * @throws PersistenceException 
      */
     @Override
-    public Item updateItem(String locationID, Item updatedItem) 
+    public synchronized Item updateItem(String locationID, Item updatedItem) 
             throws PersistenceException {
         loadInventory();
-        // make user input locationID uppercase
-        locationID = locationID.toUpperCase();
-        items.remove(locationID);
-        items.put(updatedItem.getLocationID(), updatedItem);
-        writeInventory();
-        return updatedItem;
+        return storeUpdate(locationID, updatedItem);
+    }
+
+    @Override
+    public synchronized Item compareAndUpdateItem(String locationID, 
+            long expectedVersion, Item updatedItem) 
+            throws PersistenceException {
+        loadInventory();
+        Item currentItem = inventory.getItem(locationID);
+        if(currentItem == null || currentItem.getVersion() != expectedVersion) {
+            return null;
+        }
+        return storeUpdate(locationID, updatedItem);
+    }
+
+    /**
+     * Replaces each item at its own location ID and rewrites the inventory 
+     * file once for the whole batch.
+     * 
+     * @param updatedItems - List of Items
+     * @throws PersistenceException 
+     */
+    @Override
+    public synchronized void updateItems(List<Item> updatedItems) 
+            throws PersistenceException {
+        loadInventory();
+        Map<String, Item> newItems = new LinkedHashMap<>();
+        for(Item updatedItem : updatedItems) {
+            newItems.put(updatedItem.getLocationID(), 
+                    nextVersion(updatedItem));
+        }
+        writeInventory(inventory.withItems(nextInventoryVersion(), newItems));
+    }
+
+    @Override
+    public synchronized boolean compareAndUpdateItems(List<Item> updatedItems, 
+            Map<String, Long> expectedVersions) throws PersistenceException {
+        loadInventory();
+        for(Item updatedItem : updatedItems) {
+            String locationID = updatedItem.getLocationID().toUpperCase();
+            Item currentItem = inventory.getItem(locationID);
+            long currentVersion = currentItem == null 
+                    ? NO_VERSION : currentItem.getVersion();
+            if(currentVersion 
+                    != expectedVersions.getOrDefault(locationID, NO_VERSION)) {
+                return false;
+            }
+        }
+        updateItems(updatedItems);
+        return true;
+    }
+
+    @Override
+    public synchronized Item deleteItem(String locationID) 
+            throws PersistenceException {
+        loadInventory();
+        return storeDelete(locationID);
+    }
+
+    @Override
+    public synchronized Item compareAndDeleteItem(String locationID, 
+            long expectedVersion) throws PersistenceException {
+        loadInventory();
+        Item currentItem = inventory.getItem(locationID);
+        if(currentItem == null || currentItem.getVersion() != expectedVersion) {
+            return null;
+        }
+        return storeDelete(locationID);
     }
 
+    /**
+     * Puts the sold item straight over the current one, without the generic 
+     * update's check for a new location ID.
+     *
+     * @param locationID - String
+     * @param expectedVersion - version of the item the caller checked
+     * @return the sold Item, or null
+     * @throws PersistenceException
+     */
     @Override
-    public Item deleteItem(String locationID) throws PersistenceException {
+    public synchronized Item commitSale(String locationID,
+            long expectedVersion) throws PersistenceException {
         loadInventory();
+        Item currentItem = inventory.getItem(locationID);
+        if(currentItem == null || currentItem.getVersion() != expectedVersion
+                || currentItem.getNumAvailable() <= 0) {
+            return null;
+        }
+        Item soldItem = nextVersion(currentItem.withNumAvailable(
+                currentItem.getNumAvailable() - 1));
+        writeInventory(inventory.withItem(nextInventoryVersion(), 
+                locationID.toUpperCase(), soldItem));
+        return soldItem;
+    }
+    
+    /**
+     * Writes the mutations that are waiting in COALESCED mode. Does nothing 
+     * when none are.
+     * 
+     * @throws PersistenceException 
+     */
+    public synchronized void flush() throws PersistenceException {
+        if(pendingWrites == 0) {
+            return;
+        }
+        writeFile(inventory.getItems());
+        pendingWrites = 0;
+        // an earlier failure has been made good
+        flushFailure = null;
+    }
+    
+    /**
+     * Stops the background flusher and writes whatever is still waiting. 
+     * Only needed in COALESCED mode, where it must be called on shutdown 
+     * (the Spring context does this through destroy-method); the JVM 
+     * shutdown hook is only a fallback. Later mutations are written through.
+     * 
+     * @throws PersistenceException 
+     */
+    public void close() throws PersistenceException {
+        if(flusher == null) {
+            return;
+        }
+        flusher.shutdownNow();
+        try {
+            // false when close() already removed it
+            Runtime.getRuntime().removeShutdownHook(shutdownHook);
+        } catch(IllegalStateException e) {
+            // already shutting down, the hook flushes as well
+        }
+        flush();
+    }
+    
+    /**
+     * @return the JVM shutdown hook of a COALESCED DAO, else null
+     */
+    Thread getShutdownHook() {
+        return shutdownHook;
+    }
+    
+    /**
+     * @param fileLoadMetrics - durations of reads of the inventory file, 
+     *                          not of lookups served from memory
+     */
+    public void setFileLoadMetrics(LatencyMetrics fileLoadMetrics) {
+        this.fileLoadMetrics = fileLoadMetrics;
+    }
+    
+    /**
+     * @param fileWriteMetrics - durations of writes of the inventory file
+     */
+    public void setFileWriteMetrics(LatencyMetrics fileWriteMetrics) {
+        this.fileWriteMetrics = fileWriteMetrics;
+    }
+
+
+    /**
+     * Replaces the item at locationID and writes the inventory. Callers hold 
+     * the lock and have loaded the inventory.
+     * 
+     * @return updatedItem as stored, with its new version
+     */
+    private Item storeUpdate(String locationID, Item updatedItem) 
+            throws PersistenceException {
+        // make user input locationID uppercase
+        String key = locationID.toUpperCase();
+        Item storedItem = nextVersion(updatedItem);
+        InventorySnapshot updatedInventory = inventory;
+        if(!key.equals(storedItem.getLocationID())) {
+            // moved to another location ID
+            updatedInventory = updatedInventory.withoutItem(
+                    nextInventoryVersion(), key);
+        }
+        writeInventory(updatedInventory.withItem(nextInventoryVersion(), 
+                storedItem.getLocationID(), storedItem));
+        return storedItem;
+    }
+    
+    /**
+     * Removes the item at locationID and writes the inventory. Callers hold 
+     * the lock and have loaded the inventory.
+     * 
+     * @return the removed Item, or null
+     */
+    private Item storeDelete(String locationID) throws PersistenceException {
         // make user input locationID uppercase
-        locationID = locationID.toUpperCase();
-        Item deletedItem = items.remove(locationID);
-        writeInventory();
+        String key = locationID.toUpperCase();
+        Item deletedItem = inventory.getItem(key);
+        if(deletedItem != null) {
+            writeInventory(inventory.withoutItem(nextInventoryVersion(), key));
+        }
         return deletedItem;
     }
     
+    /**
+     * @return item stamped with the inventory version that the write or 
+     *         load in progress will publish
+     */
+    private Item nextVersion(Item item) {
+        return item.withVersion(nextInventoryVersion());
+    }
+    
+    private long nextInventoryVersion() {
+        return inventoryVersion + 1;
+    }
+    
     
     /**
      * Converts an Item object into a String line of text with delimiters
@@ -114,7 +520,7 @@ public class VendingMachineDaoFileImpl implements VendingMachineDao {
      * @param item Item 
      * @return itemAsText - String Item object as a line of text
      */
-    private String marshallItem(Item item) {
+    static String marshallItem(Item item) {
         String itemAsText = item.getLocationID() + DELIMITER;
         itemAsText += item.getName() + DELIMITER;
         itemAsText += item.getNumAvailable() + DELIMITER;
@@ -125,73 +531,273 @@ public class VendingMachineDaoFileImpl implements VendingMachineDao {
     
     /**
      * Reads a line of text from the inventory file and converts the delimited
-     * String into an Item object. 
+     * String into an Item object. Whole files are read with 
+     * InventoryFileParser instead.
      * 
      * @param itemAsText - delimited String representing the item
      * @return 
      */
-    private Item unmarshallItem(String itemAsText) {
-        String[] itemData = itemAsText.split(DELIMITER);
+    static Item unmarshallItem(String itemAsText) {
+        // indexOf rather than split, which compiles a regex for "::"
+        int nameStart = fieldStart(itemAsText, 0);
+        int countStart = fieldStart(itemAsText, nameStart);
+        int priceStart = fieldStart(itemAsText, countStart);
+        int priceEnd = itemAsText.indexOf(DELIMITER, priceStart);
         
-        String locationID = itemData[0];
-        Item itemFromFile = new Item(locationID);
-        itemFromFile.setName(itemData[1]);
-        itemFromFile.setNumAvailable(Integer.parseInt(itemData[2]));
-        itemFromFile.setPrice(new BigDecimal(itemData[3]));
-        
-        return itemFromFile;
+        String locationID = itemAsText.substring(0, 
+                nameStart - DELIMITER.length());
+        return new Item(locationID, 
+                itemAsText.substring(nameStart, 
+                        countStart - DELIMITER.length()), 
+                Integer.parseInt(itemAsText.substring(
+                        countStart, priceStart - DELIMITER.length())), 
+                Money.parse(priceEnd < 0 
+                        ? itemAsText.substring(priceStart) 
+                        : itemAsText.substring(priceStart, priceEnd)));
+    }
+    
+    /**
+     * @return index of the field after the next delimiter at or after from
+     * @throws IllegalArgumentException if there is no further delimiter
+     */
+    private static int fieldStart(String itemAsText, int from) {
+        int delimiter = itemAsText.indexOf(DELIMITER, from);
+        if(delimiter < 0) {
+            throw new IllegalArgumentException(
+                    "Missing field in item: " + itemAsText);
+        }
+        return delimiter + DELIMITER.length();
     }
     
     /**
-     * Reads the inventory file and loads the data into the HashMap.
+     * Reads the inventory file and loads the data into the index. In cached
+     * mode the file is only read when it has changed since it was last loaded
+     * or written.
      * 
      * @throws PersistenceException 
      */
-    private void loadInventory() throws PersistenceException {
-        Scanner scanner;
+    void loadInventory() throws PersistenceException {
+        // unwritten mutations win over the file, the next flush replaces it
+        if(cached && (pendingWrites > 0 || !isInventoryFileChanged())) {
+            return;
+        }
         
+        InventoryLoadEvent event = new InventoryLoadEvent();
+        event.begin();
+        long start = System.nanoTime();
+        
+        InventorySnapshot previousInventory = inventory;
+        NavigableMap<String, Item> loadedItems = new TreeMap<>();
+        int itemCount;
         try {
-            scanner = new Scanner(new BufferedReader(
-                new FileReader(INVENTORY_FILE)));    
-        } catch(FileNotFoundException e) {
-            throw new PersistenceException(
-                    "Unable to load item data into memory.");
+            itemCount = parser.parse(Paths.get(INVENTORY_FILE), (item) -> {
+                // an unchanged item is kept, version and all
+                Item previousItem = 
+                        previousInventory.getItem(item.getLocationID());
+                loadedItems.put(item.getLocationID(), 
+                        item.equals(previousItem) 
+                                ? previousItem : nextVersion(item));
+            });
+        } finally {
+            fileLoadMetrics.record(System.nanoTime() - start);
         }
+        // publish before recording the file state, so a reader that finds 
+        // the file unchanged also finds the new snapshot
+        inventory = new InventorySnapshot(++inventoryVersion, loadedItems);
         
-        String currentLine;
-        Item currentItem;
+        event.end();
+        if(event.shouldCommit()) {
+            event.setInventoryFile(INVENTORY_FILE);
+            event.setBytesRead(new File(INVENTORY_FILE).length());
+            event.setItemCount(itemCount);
+            event.commit();
+        }
         
-        while(scanner.hasNextLine()) {
-            currentLine = scanner.nextLine();
-            currentItem = unmarshallItem(currentLine);
-            items.put(currentItem.getLocationID(), currentItem);
+        if(cached) {
+            recordInventoryFileState();
+        }
+    }
+    
+    /**
+     * Rewrites the inventory file from the current snapshot.
+     * 
+     * @throws PersistenceException 
+     */
+    void writeInventory() throws PersistenceException {
+        writeInventory(inventory.withItems(nextInventoryVersion(), 
+                Collections.<String, Item>emptyMap()));
+    }
+    
+    /**
+     * Publishes the given snapshot, made at nextInventoryVersion(). 
+     * WRITE_THROUGH writes it into the inventory file first, so a failed 
+     * write leaves the inventory as it was; COALESCED marks it dirty and 
+     * leaves the write to a flush.
+     * 
+     * @param updatedInventory - the next InventorySnapshot
+     * @throws PersistenceException 
+     */
+    private void writeInventory(InventorySnapshot updatedInventory) 
+            throws PersistenceException {
+        if(writeMode == WriteMode.WRITE_THROUGH) {
+            writeFile(updatedInventory.getItems());
+            publish(updatedInventory);
+            return;
         }
         
-        scanner.close();
+        rethrowFlushFailure();
+        publish(updatedInventory);
+        pendingWrites++;
+        if(pendingWrites >= maxPendingWrites || flusher.isShutdown()) {
+            try {
+                flush();
+            } catch(PersistenceException e) {
+                // the mutation stands, it is written by a later flush
+                flushFailure = e;
+                scheduleFlush();
+            }
+        } else {
+            scheduleFlush();
+        }
+    }
+    
+    /**
+     * Schedules a flush one interval from now, unless one is already 
+     * scheduled or the flusher has been stopped. Callers hold the lock.
+     */
+    private void scheduleFlush() {
+        if(flushScheduled || flusher.isShutdown()) {
+            return;
+        }
+        flushScheduled = true;
+        flusher.schedule(this::scheduledFlush, flushIntervalMillis, 
+                TimeUnit.MILLISECONDS);
+    }
+    
+    private void publish(InventorySnapshot updatedInventory) {
+        inventoryVersion = updatedInventory.getVersion();
+        inventory = updatedInventory;
     }
     
     /**
-     * Writes all the Items in the HashMap into the inventory file.
+     * Writes the given Items into a temporary file, in order, and moves it 
+     * over the inventory file.
      * 
+     * @param items - every Item of the inventory, sorted by locationID
      * @throws PersistenceException 
      */
-    private void writeInventory() throws PersistenceException {
-        PrintWriter out;
+    private void writeFile(Collection<Item> items) 
+            throws PersistenceException {
+        InventoryWriteEvent event = new InventoryWriteEvent();
+        event.begin();
+        long start = System.nanoTime();
+        Path inventoryPath = Paths.get(INVENTORY_FILE);
+        Path tempPath = Paths.get(INVENTORY_FILE + ".tmp");
         
         try {
-            out = new PrintWriter(new FileWriter(INVENTORY_FILE));
+            try (PrintWriter out = new PrintWriter(new BufferedWriter(
+                    new FileWriter(tempPath.toFile())))) {
+                // write the item to the file
+                for(Item currentItem : items) {
+                    out.println(marshallItem(currentItem));
+                }
+                if(out.checkError()) {
+                    throw new IOException("Error writing " + tempPath);
+                }
+            }
+            Files.move(tempPath, inventoryPath, 
+                    StandardCopyOption.REPLACE_EXISTING, 
+                    StandardCopyOption.ATOMIC_MOVE);
         } catch(IOException e) {
             throw new PersistenceException("Unable to save data "
-                    + "to inventory file.");
+                    + "to inventory file.", e);
+        } finally {
+            fileWriteMetrics.record(System.nanoTime() - start);
+        }
+        
+        event.end();
+        if(event.shouldCommit()) {
+            event.setInventoryFile(INVENTORY_FILE);
+            event.setBytesWritten(new File(INVENTORY_FILE).length());
+            event.setItemCount(items.size());
+            event.commit();
+        }
+        
+        if(cached) {
+            // our own write must not look like an outside edit
+            recordInventoryFileState();
+        }
+    }
+    
+    private synchronized void scheduledFlush() {
+        flushScheduled = false;
+        try {
+            flush();
+        } catch(PersistenceException e) {
+            // the mutations are still pending, try again later
+            flushFailure = e;
+            scheduleFlush();
+        }
+    }
+    
+    private void flushOnExit() {
+        try {
+            flush();
+        } catch(PersistenceException e) {
+            System.err.println("Unable to save inventory on exit: " 
+                    + e.getMessage());
         }
-        // write the item to the file
-        String itemAsText;
-        List<Item> itemList = this.getAllItems();
-        for(Item currentItem : itemList) {
-            itemAsText = marshallItem(currentItem);
-            out.println(itemAsText);
-            out.flush();
+    }
+    
+    /**
+     * Reports a failed flush to the next mutation, once.
+     * 
+     * @throws PersistenceException 
+     */
+    private void rethrowFlushFailure() throws PersistenceException {
+        if(flushFailure != null) {
+            PersistenceException failure = flushFailure;
+            flushFailure = null;
+            throw failure;
+        }
+    }
+    
+    /**
+     * Checks whether the modification time or size of the inventory file 
+     * differs from when it was last loaded or written.
+     * 
+     * @return true if the file must be re-read
+     * @throws PersistenceException 
+     */
+    private boolean isInventoryFileChanged() throws PersistenceException {
+        if(loadedModifiedTime == null) {
+            return true;
+        }
+        try {
+            // one stat for both, this runs on every read
+            BasicFileAttributes attributes = Files.readAttributes(
+                    Paths.get(INVENTORY_FILE), BasicFileAttributes.class);
+            return !loadedModifiedTime.equals(attributes.lastModifiedTime())
+                    || loadedSize != attributes.size();
+        } catch(IOException e) {
+            throw new PersistenceException(
+                    "Unable to load item data into memory.", e);
+        }
+    }
+    
+    /**
+     * Remembers the current modification time and size of the inventory file.
+     * 
+     * @throws PersistenceException 
+     */
+    private void recordInventoryFileState() throws PersistenceException {
+        Path inventoryPath = Paths.get(INVENTORY_FILE);
+        try {
+            loadedModifiedTime = Files.getLastModifiedTime(inventoryPath);
+            loadedSize = Files.size(inventoryPath);
+        } catch(IOException e) {
+            throw new PersistenceException(
+                    "Unable to load item data into memory.", e);
         }
-        out.close();
     }
 }
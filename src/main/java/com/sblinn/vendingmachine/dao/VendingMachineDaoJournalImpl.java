@@ -0,0 +1,676 @@
+package com.sblinn.vendingmachine.dao;
+
+import com.sblinn.vendingmachine.dto.InventorySnapshot;
+import com.sblinn.vendingmachine.dto.Item;
+import com.sblinn.vendingmachine.dto.Money;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * Journaled DAO. The inventory is kept in memory and each mutation appends
+ * small CRC-checked records to a journal file instead of rewriting the whole
+ * inventory. The records are synced to disk before the change is applied in
+ * memory, so a change that was not journaled is never seen and one that was
+ * survives a crash. Once the journal passes a size threshold, a background
+ * thread compacts it into a fresh snapshot (in the same "::" delimited format
+ * as VendingMachineDaoFileImpl) and drops the records the snapshot holds. The
+ * snapshot is written outside the DAO's lock, so sales go on meanwhile.
+ *
+ * On startup the snapshot is loaded and the journal is replayed on top of it.
+ * A torn trailing record (from a crash mid-append) fails its length or CRC
+ * check, is skipped, and is cut off the end of the journal.
+ *
+ * Item versions are the inventory version of the change that stored them.
+ * They are not journaled; the items loaded at startup, from the snapshot and
+ * the replayed journal, all get the first version after an InventoryVersions
+ * seed, so versions keep going up across restarts.
+ *
+ * Journal record layout:
+ *   int payloadLength | int crc32(payload) | payload
+ * where payload is:
+ *   byte op | UTF locationID [| UTF name | int numAvailable | UTF price]
+ *
+ * @author sarablinn
+ */
+public class VendingMachineDaoJournalImpl implements VendingMachineDao {
+
+    public static final long DEFAULT_COMPACTION_THRESHOLD = 64 * 1024;
+
+    private static final byte OP_PUT = 1;
+    private static final byte OP_REMOVE = 2;
+    // guards replay against reading a garbage length from a torn record,
+    // and appendRecords refuses longer records so the two agree
+    private static final int MAX_RECORD_LENGTH = 64 * 1024;
+
+    private final String SNAPSHOT_FILE;
+    private final String JOURNAL_FILE;
+    private final long compactionThreshold;
+    // sorted by locationID, so listing the inventory is a plain traversal
+    private NavigableMap<String, Item> items = new ConcurrentSkipListMap<>();
+
+    private boolean loaded = false;
+    // bumped by every journaled change
+    private long inventoryVersion = 0;
+    private FileOutputStream journal;
+    private long journalSize = 0;
+    private boolean compactionPending = false;
+    private PersistenceException compactionFailure;
+    private final ExecutorService compactor =
+            Executors.newSingleThreadExecutor((r) -> {
+                Thread t = new Thread(r, "inventory-journal-compactor");
+                t.setDaemon(true);
+                return t;
+            });
+
+
+    public VendingMachineDaoJournalImpl() {
+        this("inventory.txt");
+    }
+
+    /**
+     *
+     * @param snapshotFile - inventory text file, the journal is kept next to
+     *                       it with a ".journal" suffix
+     */
+    public VendingMachineDaoJournalImpl(String snapshotFile) {
+        this(snapshotFile, snapshotFile + ".journal",
+                DEFAULT_COMPACTION_THRESHOLD);
+    }
+
+    /**
+     *
+     * @param snapshotFile - inventory text file
+     * @param journalFile - append-only journal file
+     * @param compactionThreshold - journal size in bytes that triggers a
+     *                              background compaction
+     */
+    public VendingMachineDaoJournalImpl(String snapshotFile, String journalFile,
+            long compactionThreshold) {
+        SNAPSHOT_FILE = snapshotFile;
+        JOURNAL_FILE = journalFile;
+        this.compactionThreshold = compactionThreshold;
+    }
+
+
+    @Override
+    public synchronized Item createItem(String locationID, Item item)
+            throws PersistenceException {
+        loadInventory();
+        // make locationID uppercase
+        locationID = locationID.toUpperCase();
+        Item storedItem = nextVersion(item);
+        appendRecords(putRecord(locationID, storedItem));
+        return items.put(locationID, storedItem);
+    }
+
+    /**
+     * Returns an Item from inventory, else returns null if the item does not
+     * exist.
+     *
+     * @param locationID - String
+     * @return Item or null if the item does not yet exist
+     * @throws PersistenceException
+     */
+    @Override
+    public synchronized Item getItem(String locationID)
+            throws PersistenceException {
+        loadInventory();
+        // make user input locationID uppercase
+        locationID = locationID.toUpperCase();
+        return items.get(locationID);
+    }
+
+    @Override
+    public synchronized List<Item> getAllItems() throws PersistenceException {
+        loadInventory();
+        return new ArrayList<>(items.values());
+    }
+
+    @Override
+    public synchronized List<Item> getItemsByRow(String rowPrefix)
+            throws PersistenceException {
+        loadInventory();
+        String prefix = rowPrefix.toUpperCase();
+        List<Item> rowItems = new ArrayList<>();
+        for(Item item : items.tailMap(prefix, true).values()) {
+            if(!item.getLocationID().startsWith(prefix)) {
+                break;
+            }
+            rowItems.add(item);
+        }
+        return rowItems;
+    }
+
+    @Override
+    public synchronized Item updateItem(String locationID, Item updatedItem)
+            throws PersistenceException {
+        loadInventory();
+        // make user input locationID uppercase
+        locationID = locationID.toUpperCase();
+        Item storedItem = nextVersion(updatedItem);
+        if(locationID.equals(storedItem.getLocationID())) {
+            appendRecords(putRecord(locationID, storedItem));
+        } else {
+            // moved, journal both halves as one change
+            appendRecords(removeRecord(locationID),
+                    putRecord(storedItem.getLocationID(), storedItem));
+        }
+        items.remove(locationID);
+        items.put(storedItem.getLocationID(), storedItem);
+        return storedItem;
+    }
+
+    @Override
+    public synchronized Item compareAndUpdateItem(String locationID,
+            long expectedVersion, Item updatedItem)
+            throws PersistenceException {
+        Item currentItem = getItem(locationID);
+        if(currentItem == null || currentItem.getVersion() != expectedVersion) {
+            return null;
+        }
+        return updateItem(locationID, updatedItem);
+    }
+
+    @Override
+    public synchronized Item compareAndDeleteItem(String locationID,
+            long expectedVersion) throws PersistenceException {
+        Item currentItem = getItem(locationID);
+        if(currentItem == null || currentItem.getVersion() != expectedVersion) {
+            return null;
+        }
+        return deleteItem(locationID);
+    }
+
+    /**
+     * Journals the whole batch as one change, with a single sync.
+     *
+     * @param updatedItems - List of Items
+     * @param expectedVersions - versions the caller read, by location ID
+     * @return true if the batch was written, false if any slot changed
+     * @throws PersistenceException
+     */
+    @Override
+    public synchronized boolean compareAndUpdateItems(List<Item> updatedItems,
+            Map<String, Long> expectedVersions) throws PersistenceException {
+        loadInventory();
+        byte[][] records = new byte[updatedItems.size()][];
+        List<Item> storedItems = new ArrayList<>(updatedItems.size());
+        for(Item updatedItem : updatedItems) {
+            String locationID = updatedItem.getLocationID().toUpperCase();
+            Item currentItem = items.get(locationID);
+            long currentVersion = currentItem == null
+                    ? NO_VERSION : currentItem.getVersion();
+            if(currentVersion
+                    != expectedVersions.getOrDefault(locationID, NO_VERSION)) {
+                return false;
+            }
+            Item storedItem = nextVersion(updatedItem);
+            records[storedItems.size()] = putRecord(locationID, storedItem);
+            storedItems.add(storedItem);
+        }
+        appendRecords(records);
+        for(Item storedItem : storedItems) {
+            items.put(storedItem.getLocationID().toUpperCase(), storedItem);
+        }
+        return true;
+    }
+
+    /**
+     * Journals the sale as one put record of the sold item.
+     *
+     * @param locationID - String
+     * @param expectedVersion - version of the item the caller checked
+     * @return the sold Item, or null
+     * @throws PersistenceException
+     */
+    @Override
+    public synchronized Item commitSale(String locationID,
+            long expectedVersion) throws PersistenceException {
+        Item currentItem = getItem(locationID);
+        if(currentItem == null || currentItem.getVersion() != expectedVersion
+                || currentItem.getNumAvailable() <= 0) {
+            return null;
+        }
+        Item soldItem = nextVersion(currentItem.withNumAvailable(
+                currentItem.getNumAvailable() - 1));
+        appendRecords(putRecord(soldItem.getLocationID(), soldItem));
+        items.put(soldItem.getLocationID(), soldItem);
+        return soldItem;
+    }
+
+    /**
+     * @return inventory version, which goes up with every change
+     * @throws PersistenceException
+     */
+    @Override
+    public synchronized long getInventoryVersion()
+            throws PersistenceException {
+        loadInventory();
+        return inventoryVersion;
+    }
+
+    /**
+     * Copies the items under the DAO's lock, so the snapshot and its version
+     * agree.
+     *
+     * @return InventorySnapshot
+     * @throws PersistenceException
+     */
+    @Override
+    public synchronized InventorySnapshot getInventorySnapshot()
+            throws PersistenceException {
+        loadInventory();
+        return new InventorySnapshot(inventoryVersion, items);
+    }
+
+    @Override
+    public synchronized Item deleteItem(String locationID)
+            throws PersistenceException {
+        loadInventory();
+        // make user input locationID uppercase
+        locationID = locationID.toUpperCase();
+        appendRecords(removeRecord(locationID));
+        return items.remove(locationID);
+    }
+
+    /**
+     * Waits for any running compaction and closes the journal.
+     *
+     * @throws PersistenceException
+     */
+    public void close() throws PersistenceException {
+        compactor.shutdown();
+        try {
+            compactor.awaitTermination(1, TimeUnit.MINUTES);
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized(this) {
+            closeJournal();
+            rethrowCompactionFailure();
+        }
+    }
+
+
+    /**
+     * Loads the snapshot and replays the journal the first time the inventory
+     * is used, then opens the journal for appending.
+     *
+     * @throws PersistenceException
+     */
+    private void loadInventory() throws PersistenceException {
+        rethrowCompactionFailure();
+        if(loaded) {
+            return;
+        }
+
+        inventoryVersion = InventoryVersions.seed();
+        items.clear();
+        loadSnapshot();
+        long validLength = replayJournal();
+        // the loaded items are at nextVersion, the inventory catches up
+        inventoryVersion++;
+
+        try {
+            // cut off a torn trailing record so new records follow good ones
+            if(Files.exists(Paths.get(JOURNAL_FILE))) {
+                try (RandomAccessFile file =
+                        new RandomAccessFile(JOURNAL_FILE, "rw")) {
+                    if(file.length() > validLength) {
+                        file.setLength(validLength);
+                    }
+                }
+            }
+            journal = new FileOutputStream(JOURNAL_FILE, true);
+        } catch(IOException e) {
+            throw new PersistenceException(
+                    "Unable to open inventory journal.", e);
+        }
+        journalSize = validLength;
+        loaded = true;
+    }
+
+    /**
+     * Reads the snapshot text file into the HashMap. A missing snapshot means
+     * an empty inventory.
+     *
+     * @throws PersistenceException
+     */
+    private void loadSnapshot() throws PersistenceException {
+        BufferedReader reader;
+        try {
+            reader = new BufferedReader(new FileReader(SNAPSHOT_FILE));
+        } catch(FileNotFoundException e) {
+            return;
+        }
+
+        try (reader) {
+            String currentLine;
+            while((currentLine = reader.readLine()) != null) {
+                Item currentItem =
+                        VendingMachineDaoFileImpl.unmarshallItem(currentLine);
+                items.put(currentItem.getLocationID(),
+                        nextVersion(currentItem));
+            }
+        } catch(IOException e) {
+            throw new PersistenceException(
+                    "Unable to load item data into memory.", e);
+        }
+    }
+
+    /**
+     * Applies every intact journal record to the HashMap.
+     *
+     * @return the byte length of the intact part of the journal
+     * @throws PersistenceException
+     */
+    private long replayJournal() throws PersistenceException {
+        DataInputStream in;
+        try {
+            in = new DataInputStream(new BufferedInputStream(
+                    new FileInputStream(JOURNAL_FILE)));
+        } catch(FileNotFoundException e) {
+            return 0;
+        }
+
+        long validLength = 0;
+        CRC32 crc = new CRC32();
+        try (in) {
+            while(true) {
+                int length;
+                int expectedCrc;
+                byte[] payload;
+                try {
+                    length = in.readInt();
+                    expectedCrc = in.readInt();
+                    if(length <= 0 || length > MAX_RECORD_LENGTH) {
+                        break; // torn or corrupt record
+                    }
+                    payload = new byte[length];
+                    in.readFully(payload);
+                } catch(EOFException e) {
+                    break; // end of journal, or a torn trailing record
+                }
+                crc.reset();
+                crc.update(payload);
+                if((int) crc.getValue() != expectedCrc) {
+                    break;
+                }
+                applyRecord(payload);
+                validLength += 8 + length;
+            }
+        } catch(IOException e) {
+            throw new PersistenceException(
+                    "Unable to load item data into memory.", e);
+        }
+        return validLength;
+    }
+
+    private void applyRecord(byte[] payload) throws IOException {
+        DataInputStream record = new DataInputStream(
+                new ByteArrayInputStream(payload));
+        byte op = record.readByte();
+        String locationID = record.readUTF();
+        if(op == OP_PUT) {
+            String name = record.readUTF();
+            int numAvailable = record.readInt();
+            Item item = new Item(locationID, name, numAvailable,
+                    Money.parse(record.readUTF()));
+            items.put(locationID, nextVersion(item));
+        } else if(op == OP_REMOVE) {
+            items.remove(locationID);
+        }
+    }
+
+    /**
+     * @return item stamped with the version its change will bring the
+     *         inventory to
+     */
+    private Item nextVersion(Item item) {
+        return item.withVersion(inventoryVersion + 1);
+    }
+
+    private byte[] putRecord(String locationID, Item item)
+            throws PersistenceException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        DataOutputStream payload = new DataOutputStream(bytes);
+        try {
+            payload.writeByte(OP_PUT);
+            payload.writeUTF(locationID);
+            payload.writeUTF(item.getName());
+            payload.writeInt(item.getNumAvailable());
+            payload.writeUTF(item.getPrice().toString());
+        } catch(IOException e) {
+            throw new PersistenceException("Unable to save data "
+                    + "to inventory journal.", e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private byte[] removeRecord(String locationID) throws PersistenceException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(16);
+        DataOutputStream payload = new DataOutputStream(bytes);
+        try {
+            payload.writeByte(OP_REMOVE);
+            payload.writeUTF(locationID);
+        } catch(IOException e) {
+            throw new PersistenceException("Unable to save data "
+                    + "to inventory journal.", e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Appends the framed records of one change to the journal in a single
+     * write and syncs it to disk, so the caller only applies the change once
+     * it is durable. A failed append is cut back off the journal. Schedules
+     * a compaction once the journal has grown past the threshold.
+     *
+     * @param payloads - encoded records
+     * @throws PersistenceException if a record is longer than replay accepts
+     *                              or the journal cannot be written
+     */
+    private void appendRecords(byte[]... payloads)
+            throws PersistenceException {
+        for(byte[] payload : payloads) {
+            // replay would take a longer record for a torn one and drop it
+            // along with everything after it
+            if(payload.length > MAX_RECORD_LENGTH) {
+                throw new PersistenceException("Unable to save data to "
+                        + "inventory journal. The record is longer than "
+                        + MAX_RECORD_LENGTH + " bytes.");
+            }
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+        DataOutputStream records = new DataOutputStream(bytes);
+        CRC32 crc = new CRC32();
+        try {
+            for(byte[] payload : payloads) {
+                crc.reset();
+                crc.update(payload);
+                records.writeInt(payload.length);
+                records.writeInt((int) crc.getValue());
+                records.write(payload);
+            }
+            journal.write(bytes.toByteArray());
+            journal.getFD().sync();
+        } catch(IOException e) {
+            try {
+                journal.getChannel().truncate(journalSize);
+            } catch(IOException truncateFailure) {
+                // replay drops the torn tail on the next load
+                e.addSuppressed(truncateFailure);
+            }
+            throw new PersistenceException("Unable to save data "
+                    + "to inventory journal.", e);
+        }
+        inventoryVersion++;
+        journalSize += bytes.size();
+
+        if(journalSize >= compactionThreshold && !compactionPending
+                && !compactor.isShutdown()) {
+            compactionPending = true;
+            compactor.execute(this::compactInBackground);
+        }
+    }
+
+    /**
+     * Copies the inventory under the DAO's lock, writes the snapshot without
+     * it, and takes the lock again only to swap the files.
+     */
+    private void compactInBackground() {
+        try {
+            List<Item> compactedItems;
+            long compactedLength;
+            synchronized(this) {
+                if(journal == null) {
+                    return; // closed
+                }
+                compactedItems = new ArrayList<>(items.values());
+                compactedLength = journalSize;
+            }
+            Path tempPath = writeSnapshot(compactedItems);
+            synchronized(this) {
+                replaceSnapshot(tempPath, compactedLength);
+            }
+        } catch(PersistenceException e) {
+            synchronized(this) {
+                compactionFailure = e;
+            }
+        } finally {
+            synchronized(this) {
+                compactionPending = false;
+            }
+        }
+    }
+
+    /**
+     * Writes the given items to a temporary snapshot and syncs it.
+     *
+     * @param compactedItems - the inventory at the compacted journal length
+     * @return Path of the temporary snapshot
+     * @throws PersistenceException
+     */
+    private Path writeSnapshot(Collection<Item> compactedItems)
+            throws PersistenceException {
+        Path tempPath = Paths.get(SNAPSHOT_FILE + ".tmp");
+        try (FileOutputStream file = new FileOutputStream(tempPath.toFile());
+                PrintWriter out = new PrintWriter(new OutputStreamWriter(
+                        new BufferedOutputStream(file)))) {
+            for(Item currentItem : compactedItems) {
+                out.println(VendingMachineDaoFileImpl.marshallItem(currentItem));
+            }
+            out.flush();
+            if(out.checkError()) {
+                throw new IOException("Error writing " + tempPath);
+            }
+            file.getFD().sync();
+        } catch(IOException e) {
+            throw new PersistenceException("Unable to save data "
+                    + "to inventory file.", e);
+        }
+        return tempPath;
+    }
+
+    /**
+     * Atomically moves the temporary snapshot over the old one and starts a
+     * new journal holding only the records appended after compactedLength,
+     * while the snapshot was being written. Replaying the old journal on top
+     * of the new snapshot is harmless, so a crash between the two moves loses
+     * nothing.
+     *
+     * @param tempPath - synced temporary snapshot
+     * @param compactedLength - journal length the snapshot includes
+     * @throws PersistenceException
+     */
+    private void replaceSnapshot(Path tempPath, long compactedLength)
+            throws PersistenceException {
+        if(journal == null) {
+            return; // closed
+        }
+        Path journalPath = Paths.get(JOURNAL_FILE);
+        Path tempJournalPath = Paths.get(JOURNAL_FILE + ".tmp");
+        try {
+            Files.move(tempPath, Paths.get(SNAPSHOT_FILE),
+                    StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+
+            byte[] tail = new byte[(int) (journalSize - compactedLength)];
+            try (RandomAccessFile oldJournal =
+                    new RandomAccessFile(JOURNAL_FILE, "r")) {
+                oldJournal.seek(compactedLength);
+                oldJournal.readFully(tail);
+            }
+            try (FileOutputStream newJournal =
+                    new FileOutputStream(tempJournalPath.toFile())) {
+                newJournal.write(tail);
+                newJournal.getFD().sync();
+            }
+            journal.close();
+            journal = null;
+            Files.move(tempJournalPath, journalPath,
+                    StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+            journal = new FileOutputStream(JOURNAL_FILE, true);
+            journalSize = tail.length;
+        } catch(IOException e) {
+            if(journal == null) {
+                // the journal could not be reopened, load again on next use
+                loaded = false;
+            }
+            throw new PersistenceException(
+                    "Unable to compact inventory journal.", e);
+        }
+    }
+
+    private void closeJournal() throws PersistenceException {
+        if(journal == null) {
+            return;
+        }
+        try {
+            journal.close();
+        } catch(IOException e) {
+            throw new PersistenceException(
+                    "Unable to close inventory journal.", e);
+        } finally {
+            journal = null;
+            loaded = false;
+        }
+    }
+
+    private void rethrowCompactionFailure() throws PersistenceException {
+        if(compactionFailure != null) {
+            PersistenceException failure = compactionFailure;
+            compactionFailure = null;
+            throw failure;
+        }
+    }
+}
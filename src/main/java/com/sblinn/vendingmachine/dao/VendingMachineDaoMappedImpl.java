@@ -0,0 +1,629 @@
+package com.sblinn.vendingmachine.dao;
+
+import com.sblinn.vendingmachine.dto.InventorySnapshot;
+import com.sblinn.vendingmachine.dto.Item;
+import com.sblinn.vendingmachine.dto.Money;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * DAO backed by a memory-mapped binary inventory file made of fixed-width slot
+ * records. Selling an item only rewrites the 4-byte numAvailable field of its
+ * slot in place; nothing is parsed or rewritten as a whole.
+ *
+ * File layout:
+ *   header (32 bytes)  : magic | format | slotCapacity | slotCount
+ *                        | heapCapacity | heapUsed
+ *   slots (24 bytes ea): locationID (8 bytes ASCII, zero padded)
+ *                        | nameOffset (int) | numAvailable (int)
+ *                        | price in cents (long)
+ *   name heap          : unsigned short length | UTF-8 name bytes
+ *
+ * A slot whose first locationID byte is zero is free. When the slots or the
+ * name heap run out of room the file is rebuilt with double the capacity,
+ * which also drops names that are no longer referenced.
+ *
+ * Every change is forced out to the storage device before the method that
+ * made it returns, so a change that returned survives a crash.
+ *
+ * Item versions are the inventory version that last wrote each slot. They
+ * are kept in memory only; every slot of a freshly opened file is at the
+ * first version after an InventoryVersions seed, so versions keep going up
+ * across reopens.
+ *
+ * Use InventoryFormatConverter to convert to and from inventory.txt.
+ *
+ * @author sarablinn
+ */
+public class VendingMachineDaoMappedImpl implements VendingMachineDao {
+
+    public static final int MAX_LOCATION_ID_LENGTH = 8;
+
+    private static final int MAGIC = 0x564D494E; // "VMIN"
+    private static final int FORMAT = 1;
+    private static final int HEADER_SIZE = 32;
+    private static final int SLOT_CAPACITY_POS = 8;
+    private static final int SLOT_COUNT_POS = 12;
+    private static final int HEAP_CAPACITY_POS = 16;
+    private static final int HEAP_USED_POS = 20;
+
+    private static final int RECORD_SIZE = 24;
+    private static final int NAME_OFFSET = 8;
+    private static final int COUNT_OFFSET = 12;
+    private static final int PRICE_OFFSET = 16;
+
+    private static final int DEFAULT_SLOT_CAPACITY = 64;
+    private static final int DEFAULT_HEAP_CAPACITY = 4096;
+
+    private final String INVENTORY_FILE;
+    // locationID -> slot index, sorted by locationID
+    private NavigableMap<String, Integer> slots = new ConcurrentSkipListMap<>();
+    // slot index -> item name, so reads do not decode the name heap
+    private List<String> slotNames = new ArrayList<>();
+    private Deque<Integer> freeSlots = new ArrayDeque<>();
+    // slot index -> item version, for slots written since the file was opened
+    private Map<Integer, Long> slotVersions = new HashMap<>();
+
+    private MappedByteBuffer buffer;
+    private int slotCapacity;
+    private int slotCount;
+    private int heapCapacity;
+    private int heapUsed;
+    // bumped by every slot write
+    private long inventoryVersion = 0;
+    // version of every slot not written since the file was opened
+    private long loadedVersion;
+
+
+    public VendingMachineDaoMappedImpl() {
+        this("inventory.dat");
+    }
+
+    /**
+     *
+     * @param inventoryDataFile - binary inventory file, created if missing
+     */
+    public VendingMachineDaoMappedImpl(String inventoryDataFile) {
+        INVENTORY_FILE = inventoryDataFile;
+    }
+
+
+    @Override
+    public synchronized Item createItem(String locationID, Item item)
+            throws PersistenceException {
+        loadInventory();
+        // make locationID uppercase
+        locationID = locationID.toUpperCase();
+        Integer slot = slots.get(locationID);
+        if(slot == null) {
+            writeNewSlot(locationID, item);
+            force();
+            return null;
+        }
+        Item previousItem = readItem(slot);
+        writeSlot(slot, item);
+        force();
+        return previousItem;
+    }
+
+    /**
+     * Returns an Item from inventory, else returns null if the item does not
+     * exist.
+     *
+     * @param locationID - String
+     * @return Item or null if the item does not yet exist
+     * @throws PersistenceException
+     */
+    @Override
+    public synchronized Item getItem(String locationID)
+            throws PersistenceException {
+        loadInventory();
+        // make user input locationID uppercase
+        Integer slot = slots.get(locationID.toUpperCase());
+        return slot == null ? null : readItem(slot);
+    }
+
+    @Override
+    public synchronized List<Item> getAllItems() throws PersistenceException {
+        loadInventory();
+        List<Item> sortedItems = new ArrayList<>(slots.size());
+        for(int slot : slots.values()) {
+            sortedItems.add(readItem(slot));
+        }
+        return sortedItems;
+    }
+
+    @Override
+    public synchronized List<Item> getItemsByRow(String rowPrefix)
+            throws PersistenceException {
+        loadInventory();
+        String prefix = rowPrefix.toUpperCase();
+        List<Item> rowItems = new ArrayList<>();
+        for(Map.Entry<String, Integer> slot
+                : slots.tailMap(prefix, true).entrySet()) {
+            if(!slot.getKey().startsWith(prefix)) {
+                break;
+            }
+            rowItems.add(readItem(slot.getValue()));
+        }
+        return rowItems;
+    }
+
+    /**
+     * Updates the item at the given location ID. When only the stock count
+     * changes (the sale path) just the count field of the slot is written.
+     *
+     * @param locationID - String
+     * @param updatedItem - Item
+     * @return updatedItem as stored, with its new version
+     * @throws PersistenceException
+     */
+    @Override
+    public synchronized Item updateItem(String locationID, Item updatedItem)
+            throws PersistenceException {
+        loadInventory();
+        // make user input locationID uppercase
+        locationID = locationID.toUpperCase();
+        String newLocationID = updatedItem.getLocationID().toUpperCase();
+        Integer slot = slots.get(locationID);
+
+        if(slot != null && locationID.equals(newLocationID)) {
+            writeSlot(slot, updatedItem);
+            force();
+            // the slot was just written, so it is at the inventory version
+            return updatedItem.withVersion(inventoryVersion);
+        }
+        // write the new slot before freeing the old one, so a location ID or
+        // name that does not fit leaves the item where it was
+        createItem(newLocationID, updatedItem);
+        if(slot != null) {
+            freeSlot(locationID, slot);
+            force();
+        }
+        return updatedItem.withVersion(
+                slotVersions.get(slots.get(newLocationID)));
+    }
+
+    /**
+     * @return inventory version, which goes up with every change
+     * @throws PersistenceException
+     */
+    @Override
+    public synchronized long getInventoryVersion()
+            throws PersistenceException {
+        loadInventory();
+        return inventoryVersion;
+    }
+
+    /**
+     * Copies the items under the DAO's lock, so the snapshot and its version
+     * agree.
+     *
+     * @return InventorySnapshot
+     * @throws PersistenceException
+     */
+    @Override
+    public synchronized InventorySnapshot getInventorySnapshot()
+            throws PersistenceException {
+        loadInventory();
+        return new InventorySnapshot(inventoryVersion,
+                getAllItems());
+    }
+
+    @Override
+    public synchronized Item compareAndUpdateItem(String locationID,
+            long expectedVersion, Item updatedItem)
+            throws PersistenceException {
+        Item currentItem = getItem(locationID);
+        if(currentItem == null || currentItem.getVersion() != expectedVersion) {
+            return null;
+        }
+        return updateItem(locationID, updatedItem);
+    }
+
+    @Override
+    public synchronized Item compareAndDeleteItem(String locationID,
+            long expectedVersion) throws PersistenceException {
+        Item currentItem = getItem(locationID);
+        if(currentItem == null || currentItem.getVersion() != expectedVersion) {
+            return null;
+        }
+        return deleteItem(locationID);
+    }
+
+    @Override
+    public synchronized boolean compareAndUpdateItems(List<Item> updatedItems,
+            Map<String, Long> expectedVersions) throws PersistenceException {
+        return VendingMachineDao.super.compareAndUpdateItems(updatedItems,
+                expectedVersions);
+    }
+
+    /**
+     * Checks the slot's version and count and rewrites only its count
+     * field; the name and price are neither compared nor read back.
+     *
+     * @param locationID - String
+     * @param expectedVersion - version of the item the caller checked
+     * @return the sold Item, or null
+     * @throws PersistenceException
+     */
+    @Override
+    public synchronized Item commitSale(String locationID,
+            long expectedVersion) throws PersistenceException {
+        loadInventory();
+        Integer slot = slots.get(locationID.toUpperCase());
+        if(slot == null
+                || slotVersions.getOrDefault(slot, loadedVersion)
+                        != expectedVersion) {
+            return null;
+        }
+        int position = slotPosition(slot);
+        int numAvailable = buffer.getInt(position + COUNT_OFFSET);
+        if(numAvailable <= 0) {
+            return null;
+        }
+        inventoryVersion++;
+        slotVersions.put(slot, inventoryVersion);
+        buffer.putInt(position + COUNT_OFFSET, numAvailable - 1);
+        force();
+        return readItem(slot);
+    }
+
+    @Override
+    public synchronized Item deleteItem(String locationID)
+            throws PersistenceException {
+        loadInventory();
+        // make user input locationID uppercase
+        locationID = locationID.toUpperCase();
+        Integer slot = slots.get(locationID);
+        if(slot == null) {
+            return null;
+        }
+        Item deletedItem = readItem(slot);
+        freeSlot(locationID, slot);
+        force();
+        return deletedItem;
+    }
+
+    /**
+     * Forces the mapped inventory out to the storage device.
+     *
+     * @throws PersistenceException
+     */
+    public synchronized void close() throws PersistenceException {
+        if(buffer != null) {
+            force();
+        }
+    }
+
+
+    /**
+     * Checks that a location ID fits the fixed-width locationID field of a
+     * slot.
+     *
+     * @param locationID - String, upper case
+     * @return the location ID as ASCII bytes
+     * @throws PersistenceException if it is empty or longer than
+     *                              MAX_LOCATION_ID_LENGTH
+     */
+    static byte[] locationIDBytes(String locationID)
+            throws PersistenceException {
+        byte[] idBytes = locationID.getBytes(StandardCharsets.US_ASCII);
+        if(idBytes.length == 0 || idBytes.length > MAX_LOCATION_ID_LENGTH) {
+            throw new PersistenceException("Unable to save location ID "
+                    + locationID + ". Location IDs are 1 to "
+                    + MAX_LOCATION_ID_LENGTH + " characters.");
+        }
+        return idBytes;
+    }
+
+
+    private void force() throws PersistenceException {
+        try {
+            buffer.force();
+        } catch(UncheckedIOException e) {
+            throw new PersistenceException("Unable to save data "
+                    + "to inventory file.", e.getCause());
+        }
+    }
+
+    private Item readItem(int slot) {
+        int position = slotPosition(slot);
+        byte[] idBytes = new byte[MAX_LOCATION_ID_LENGTH];
+        getBytes(position, idBytes);
+        int idLength = 0;
+        while(idLength < MAX_LOCATION_ID_LENGTH && idBytes[idLength] != 0) {
+            idLength++;
+        }
+
+        return new Item(
+                new String(idBytes, 0, idLength, StandardCharsets.US_ASCII),
+                slotNames.get(slot),
+                buffer.getInt(position + COUNT_OFFSET),
+                Money.ofCents(buffer.getLong(position + PRICE_OFFSET)),
+                slotVersions.getOrDefault(slot, loadedVersion));
+    }
+
+    /**
+     * Writes an Item into an existing slot, only touching the fields that
+     * changed.
+     */
+    private void writeSlot(int slot, Item item) throws PersistenceException {
+        inventoryVersion++;
+        slotVersions.put(slot, inventoryVersion);
+        int position = slotPosition(slot);
+        if(!item.getName().equals(slotNames.get(slot))) {
+            int nameOffset = appendName(item.getName());
+            buffer.putInt(position + NAME_OFFSET, nameOffset);
+            slotNames.set(slot, item.getName());
+        }
+        long priceInCents = item.getPrice().getCents();
+        if(buffer.getLong(position + PRICE_OFFSET) != priceInCents) {
+            buffer.putLong(position + PRICE_OFFSET, priceInCents);
+        }
+        buffer.putInt(position + COUNT_OFFSET, item.getNumAvailable());
+    }
+
+    private void writeNewSlot(String locationID, Item item)
+            throws PersistenceException {
+        byte[] idBytes = locationIDBytes(locationID);
+        inventoryVersion++;
+        long priceInCents = item.getPrice().getCents();
+
+        if(freeSlots.isEmpty() && slotCount == slotCapacity) {
+            rebuild(slotCapacity * 2, heapCapacity);
+        }
+        int nameOffset = appendName(item.getName());
+
+        int slot;
+        if(freeSlots.isEmpty()) {
+            slot = slotCount++;
+            buffer.putInt(SLOT_COUNT_POS, slotCount);
+            slotNames.add(item.getName());
+        } else {
+            slot = freeSlots.pop();
+            slotNames.set(slot, item.getName());
+        }
+
+        slotVersions.put(slot, inventoryVersion);
+        int position = slotPosition(slot);
+        byte[] paddedID = new byte[MAX_LOCATION_ID_LENGTH];
+        System.arraycopy(idBytes, 0, paddedID, 0, idBytes.length);
+        putBytes(position, paddedID);
+        buffer.putInt(position + NAME_OFFSET, nameOffset);
+        buffer.putInt(position + COUNT_OFFSET, item.getNumAvailable());
+        buffer.putLong(position + PRICE_OFFSET, priceInCents);
+        slots.put(locationID, slot);
+    }
+
+    private void freeSlot(String locationID, int slot) {
+        inventoryVersion++;
+        buffer.put(slotPosition(slot), (byte) 0);
+        slots.remove(locationID);
+        slotNames.set(slot, null);
+        slotVersions.remove(slot);
+        freeSlots.push(slot);
+    }
+
+    /**
+     * Appends a name to the name heap, growing the file if needed.
+     *
+     * @return offset of the name within the heap
+     */
+    private int appendName(String name) throws PersistenceException {
+        byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+        if(nameBytes.length > 0xFFFF) {
+            throw new PersistenceException("Unable to save item name, it is "
+                    + "longer than " + 0xFFFF + " bytes.");
+        }
+        int needed = 2 + nameBytes.length;
+        if(heapUsed + needed > heapCapacity) {
+            rebuild(slotCapacity, Math.max(heapCapacity * 2,
+                    heapUsed + needed * 2));
+        }
+
+        int nameOffset = heapUsed;
+        int position = heapStart() + nameOffset;
+        buffer.putShort(position, (short) nameBytes.length);
+        putBytes(position + 2, nameBytes);
+        heapUsed += needed;
+        buffer.putInt(HEAP_USED_POS, heapUsed);
+        return nameOffset;
+    }
+
+    private void getBytes(int position, byte[] dst) {
+        ByteBuffer view = buffer.duplicate();
+        view.position(position);
+        view.get(dst);
+    }
+
+    private void putBytes(int position, byte[] src) {
+        ByteBuffer view = buffer.duplicate();
+        view.position(position);
+        view.put(src);
+    }
+
+    private int slotPosition(int slot) {
+        return HEADER_SIZE + slot * RECORD_SIZE;
+    }
+
+    private int heapStart() {
+        return HEADER_SIZE + slotCapacity * RECORD_SIZE;
+    }
+
+    /**
+     * Maps the inventory file the first time it is used, creating an empty
+     * one if it does not exist yet.
+     *
+     * @throws PersistenceException
+     */
+    private void loadInventory() throws PersistenceException {
+        if(buffer != null) {
+            return;
+        }
+        Path inventoryPath = Paths.get(INVENTORY_FILE);
+        try {
+            if(!Files.exists(inventoryPath) || Files.size(inventoryPath) == 0) {
+                writeFile(inventoryPath, DEFAULT_SLOT_CAPACITY,
+                        DEFAULT_HEAP_CAPACITY, new ArrayList<>());
+            }
+        } catch(IOException e) {
+            throw new PersistenceException(
+                    "Unable to create inventory file.", e);
+        }
+        mapFile(inventoryPath);
+        loadedVersion = InventoryVersions.seed() + 1;
+        inventoryVersion = loadedVersion;
+    }
+
+    /**
+     * Maps the file and rebuilds the in-memory slot index from it.
+     */
+    private void mapFile(Path inventoryPath) throws PersistenceException {
+        try (FileChannel channel = FileChannel.open(inventoryPath,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0,
+                    channel.size());
+        } catch(IOException e) {
+            throw new PersistenceException(
+                    "Unable to load item data into memory.", e);
+        }
+
+        if(buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC
+                || buffer.getInt(4) != FORMAT) {
+            buffer = null;
+            throw new PersistenceException(INVENTORY_FILE
+                    + " is not a binary inventory file.");
+        }
+        slotCapacity = buffer.getInt(SLOT_CAPACITY_POS);
+        slotCount = buffer.getInt(SLOT_COUNT_POS);
+        heapCapacity = buffer.getInt(HEAP_CAPACITY_POS);
+        heapUsed = buffer.getInt(HEAP_USED_POS);
+
+        slots.clear();
+        slotNames.clear();
+        freeSlots.clear();
+        byte[] idBytes = new byte[MAX_LOCATION_ID_LENGTH];
+        for(int slot = 0; slot < slotCount; slot++) {
+            int position = slotPosition(slot);
+            getBytes(position, idBytes);
+            if(idBytes[0] == 0) {
+                slotNames.add(null);
+                freeSlots.push(slot);
+                continue;
+            }
+            int idLength = 0;
+            while(idLength < MAX_LOCATION_ID_LENGTH && idBytes[idLength] != 0) {
+                idLength++;
+            }
+            slots.put(new String(idBytes, 0, idLength,
+                    StandardCharsets.US_ASCII), slot);
+            slotNames.add(readName(buffer.getInt(position + NAME_OFFSET)));
+        }
+    }
+
+    private String readName(int nameOffset) {
+        int position = heapStart() + nameOffset;
+        int length = buffer.getShort(position) & 0xFFFF;
+        byte[] nameBytes = new byte[length];
+        getBytes(position + 2, nameBytes);
+        return new String(nameBytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Rewrites the file with new capacities and remaps it. Every item keeps
+     * its slot index; names that are no longer referenced are dropped.
+     */
+    private void rebuild(int newSlotCapacity, int newHeapCapacity)
+            throws PersistenceException {
+        List<Item> liveItems = new ArrayList<>(slotCount);
+        for(int slot = 0; slot < slotCount; slot++) {
+            liveItems.add(slotNames.get(slot) == null ? null : readItem(slot));
+        }
+        Path inventoryPath = Paths.get(INVENTORY_FILE);
+        Path tempPath = Paths.get(INVENTORY_FILE + ".tmp");
+        try {
+            writeFile(tempPath, newSlotCapacity, newHeapCapacity, liveItems);
+            Files.move(tempPath, inventoryPath,
+                    StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch(IOException e) {
+            throw new PersistenceException("Unable to save data "
+                    + "to inventory file.", e);
+        }
+        mapFile(inventoryPath);
+    }
+
+    /**
+     * Writes a complete binary inventory file holding the given items, one
+     * per slot. A null entry is written as a free slot.
+     *
+     * @throws PersistenceException if a location ID does not fit its slot
+     */
+    private static void writeFile(Path path, int slotCapacity,
+            int heapCapacity, List<Item> items)
+            throws IOException, PersistenceException {
+        ByteBuffer heap = ByteBuffer.allocate(heapCapacity);
+        ByteBuffer slotRecords = ByteBuffer.allocate(slotCapacity * RECORD_SIZE);
+        for(Item item : items) {
+            if(item == null) {
+                slotRecords.position(slotRecords.position() + RECORD_SIZE);
+                continue;
+            }
+            byte[] nameBytes = item.getName().getBytes(StandardCharsets.UTF_8);
+            byte[] paddedID = new byte[MAX_LOCATION_ID_LENGTH];
+            byte[] idBytes = locationIDBytes(item.getLocationID());
+            System.arraycopy(idBytes, 0, paddedID, 0, idBytes.length);
+
+            slotRecords.put(paddedID);
+            slotRecords.putInt(heap.position());
+            slotRecords.putInt(item.getNumAvailable());
+            slotRecords.putLong(item.getPrice().getCents());
+            heap.putShort((short) nameBytes.length);
+            heap.put(nameBytes);
+        }
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC);
+        header.putInt(FORMAT);
+        header.putInt(slotCapacity);
+        header.putInt(items.size());
+        header.putInt(heapCapacity);
+        header.putInt(heap.position());
+
+        header.rewind();
+        slotRecords.rewind();
+        heap.rewind();
+        try (FileChannel channel = FileChannel.open(path,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            while(header.hasRemaining()) {
+                channel.write(header);
+            }
+            while(slotRecords.hasRemaining()) {
+                channel.write(slotRecords);
+            }
+            while(heap.hasRemaining()) {
+                channel.write(heap);
+            }
+            channel.force(true);
+        }
+    }
+}
@@ -0,0 +1,213 @@
+package com.sblinn.vendingmachine.dao;
+
+import com.sblinn.vendingmachine.dto.InventorySnapshot;
+import com.sblinn.vendingmachine.dto.Item;
+import com.sblinn.vendingmachine.metrics.LatencyMetrics;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Records how long calls to the wrapped DAO take. getItem, getAllItems, 
+ * getItemsByRow, getInStockItems, getEmptySlotCount, hasInStockItems, 
+ * getInventoryVersion and getInventorySnapshot count as reads; createItem, 
+ * updateItem, updateItems, deleteItem, commitSale and the compareAnd 
+ * methods count as writes. Calls that throw are timed as well.
+ * 
+ * These are whole calls as a caller sees them. Against a cached DAO most 
+ * reads are lookups in memory; time spent reading and writing the 
+ * inventory file itself is recorded by the file DAO.
+ *
+ * @author sarablinn
+ */
+public class VendingMachineDaoTimedImpl implements VendingMachineDao {
+
+    private final VendingMachineDao dao;
+    private final LatencyMetrics readMetrics;
+    private final LatencyMetrics writeMetrics;
+
+
+    /**
+     *
+     * @param dao - DAO being timed
+     * @param readMetrics - durations of the read calls
+     * @param writeMetrics - durations of the write calls
+     */
+    public VendingMachineDaoTimedImpl(VendingMachineDao dao,
+            LatencyMetrics readMetrics, LatencyMetrics writeMetrics) {
+        this.dao = dao;
+        this.readMetrics = readMetrics;
+        this.writeMetrics = writeMetrics;
+    }
+
+
+    @Override
+    public Item createItem(String locationID, Item item)
+            throws PersistenceException {
+        long start = System.nanoTime();
+        try {
+            return dao.createItem(locationID, item);
+        } finally {
+            writeMetrics.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public Item getItem(String locationID) throws PersistenceException {
+        long start = System.nanoTime();
+        try {
+            return dao.getItem(locationID);
+        } finally {
+            readMetrics.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public List<Item> getAllItems() throws PersistenceException {
+        long start = System.nanoTime();
+        try {
+            return dao.getAllItems();
+        } finally {
+            readMetrics.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public List<Item> getItemsByRow(String rowPrefix)
+            throws PersistenceException {
+        long start = System.nanoTime();
+        try {
+            return dao.getItemsByRow(rowPrefix);
+        } finally {
+            readMetrics.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public List<Item> getInStockItems() throws PersistenceException {
+        long start = System.nanoTime();
+        try {
+            return dao.getInStockItems();
+        } finally {
+            readMetrics.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public int getEmptySlotCount() throws PersistenceException {
+        long start = System.nanoTime();
+        try {
+            return dao.getEmptySlotCount();
+        } finally {
+            readMetrics.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public boolean hasInStockItems() throws PersistenceException {
+        long start = System.nanoTime();
+        try {
+            return dao.hasInStockItems();
+        } finally {
+            readMetrics.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public long getInventoryVersion() throws PersistenceException {
+        long start = System.nanoTime();
+        try {
+            return dao.getInventoryVersion();
+        } finally {
+            readMetrics.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public InventorySnapshot getInventorySnapshot()
+            throws PersistenceException {
+        long start = System.nanoTime();
+        try {
+            return dao.getInventorySnapshot();
+        } finally {
+            readMetrics.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public Item updateItem(String locationID, Item updatedItem)
+            throws PersistenceException {
+        long start = System.nanoTime();
+        try {
+            return dao.updateItem(locationID, updatedItem);
+        } finally {
+            writeMetrics.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public void updateItems(List<Item> updatedItems)
+            throws PersistenceException {
+        long start = System.nanoTime();
+        try {
+            dao.updateItems(updatedItems);
+        } finally {
+            writeMetrics.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public boolean compareAndUpdateItems(List<Item> updatedItems,
+            Map<String, Long> expectedVersions) throws PersistenceException {
+        long start = System.nanoTime();
+        try {
+            return dao.compareAndUpdateItems(updatedItems, expectedVersions);
+        } finally {
+            writeMetrics.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public Item compareAndUpdateItem(String locationID, long expectedVersion,
+            Item updatedItem) throws PersistenceException {
+        long start = System.nanoTime();
+        try {
+            return dao.compareAndUpdateItem(locationID, expectedVersion,
+                    updatedItem);
+        } finally {
+            writeMetrics.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public Item commitSale(String locationID, long expectedVersion)
+            throws PersistenceException {
+        long start = System.nanoTime();
+        try {
+            return dao.commitSale(locationID, expectedVersion);
+        } finally {
+            writeMetrics.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public Item compareAndDeleteItem(String locationID, long expectedVersion)
+            throws PersistenceException {
+        long start = System.nanoTime();
+        try {
+            return dao.compareAndDeleteItem(locationID, expectedVersion);
+        } finally {
+            writeMetrics.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public Item deleteItem(String locationID) throws PersistenceException {
+        long start = System.nanoTime();
+        try {
+            return dao.deleteItem(locationID);
+        } finally {
+            writeMetrics.record(System.nanoTime() - start);
+        }
+    }
+
+}
@@ -0,0 +1,269 @@
+
+package com.sblinn.vendingmachine.dao;
+
+import com.sblinn.vendingmachine.dto.InventorySnapshot;
+import com.sblinn.vendingmachine.dto.Item;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.regex.Pattern;
+
+/**
+ * Serves the inventories of a fleet of machines from one process. Each
+ * machine has its own inventory file, MACHINEID.txt in the inventory
+ * directory, read by its own cached VendingMachineDaoFileImpl.
+ *
+ * At most maxLoadedInventories are held in memory; loading one more evicts
+ * the least recently used. Every DAO writes through to its file, so an
+ * evicted inventory has nothing to flush and is simply reloaded on its next
+ * use. Calls for one machine are serialized by that machine's lock, which
+ * outlives eviction, so an inventory is never loaded twice at once. Calls
+ * for different machines run in parallel.
+ *
+ * @author sarablinn
+ */
+public class VendingMachineFleetDao {
+
+    private static final Pattern MACHINE_ID = Pattern.compile("[A-Z0-9_-]+");
+
+    private final Path inventoryDirectory;
+    private final int maxLoadedInventories;
+    // access ordered, so iteration starts at the least recently used
+    private final LinkedHashMap<String, VendingMachineDao> loadedInventories;
+    private final Map<String, ReentrantLock> machineLocks =
+            new ConcurrentHashMap<>();
+
+
+    /**
+     *
+     * @param inventoryDirectory - directory holding one MACHINEID.txt
+     *                             inventory file per machine
+     * @param maxLoadedInventories - most inventories held in memory at once
+     */
+    public VendingMachineFleetDao(String inventoryDirectory,
+            int maxLoadedInventories) {
+        if(maxLoadedInventories < 1) {
+            throw new IllegalArgumentException(
+                    "maxLoadedInventories must be at least 1.");
+        }
+        this.inventoryDirectory = Paths.get(inventoryDirectory);
+        this.maxLoadedInventories = maxLoadedInventories;
+        this.loadedInventories = new LinkedHashMap<String, VendingMachineDao>(
+                16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(
+                    Map.Entry<String, VendingMachineDao> eldest) {
+                return size() > VendingMachineFleetDao.this
+                        .maxLoadedInventories;
+            }
+        };
+    }
+
+
+    /**
+     * Returns a DAO for one machine's inventory. The DAO is a light handle
+     * that can be kept; each call routes to the machine's inventory, loading
+     * it if it was evicted.
+     *
+     * @param machineID - letters, digits, '_' and '-', case insensitive
+     * @return VendingMachineDao for the machine
+     * @throws IllegalArgumentException if the machine ID is not valid
+     */
+    public VendingMachineDao forMachine(String machineID) {
+        String id = machineID == null ? "" : machineID.toUpperCase();
+        if(!MACHINE_ID.matcher(id).matches()) {
+            throw new IllegalArgumentException(
+                    "Invalid machine ID: " + machineID);
+        }
+        return new MachineDao(id);
+    }
+
+    /**
+     * @return number of inventories currently held in memory
+     */
+    public int getLoadedCount() {
+        synchronized(loadedInventories) {
+            return loadedInventories.size();
+        }
+    }
+
+    /**
+     * Creates the DAO for a machine's inventory file. Override to serve the
+     * fleet from another store.
+     *
+     * @param inventoryFile - Path of the machine's inventory file
+     * @return VendingMachineDao
+     */
+    protected VendingMachineDao createDao(Path inventoryFile) {
+        return new VendingMachineDaoFileImpl(inventoryFile.toString(), true);
+    }
+
+
+    /**
+     * Runs one DAO call under the machine's lock.
+     */
+    private <T> T withMachine(String machineID, DaoCall<T> call)
+            throws PersistenceException {
+        ReentrantLock machineLock = machineLocks.computeIfAbsent(
+                machineID, (id) -> new ReentrantLock());
+        machineLock.lock();
+        try {
+            return call.apply(loadedDao(machineID));
+        } finally {
+            machineLock.unlock();
+        }
+    }
+
+    /**
+     * Returns the machine's DAO, creating it, and evicting the least
+     * recently used one, if it is not loaded. Callers hold the machine's
+     * lock.
+     */
+    private VendingMachineDao loadedDao(String machineID)
+            throws PersistenceException {
+        synchronized(loadedInventories) {
+            VendingMachineDao dao = loadedInventories.get(machineID);
+            if(dao != null) {
+                return dao;
+            }
+        }
+
+        Path inventoryFile = inventoryDirectory.resolve(machineID + ".txt");
+        if(!Files.isRegularFile(inventoryFile)) {
+            throw new PersistenceException(
+                    "No inventory for machine " + machineID + ".");
+        }
+        VendingMachineDao dao = createDao(inventoryFile);
+        synchronized(loadedInventories) {
+            loadedInventories.put(machineID, dao);
+        }
+        return dao;
+    }
+
+
+    @FunctionalInterface
+    private interface DaoCall<T> {
+        T apply(VendingMachineDao dao) throws PersistenceException;
+    }
+
+    /**
+     * Routes every call to one machine's inventory.
+     */
+    private class MachineDao implements VendingMachineDao {
+
+        private final String machineID;
+
+
+        MachineDao(String machineID) {
+            this.machineID = machineID;
+        }
+
+        @Override
+        public Item createItem(String locationID, Item item)
+                throws PersistenceException {
+            return withMachine(machineID,
+                    (dao) -> dao.createItem(locationID, item));
+        }
+
+        @Override
+        public Item getItem(String locationID) throws PersistenceException {
+            return withMachine(machineID, (dao) -> dao.getItem(locationID));
+        }
+
+        @Override
+        public List<Item> getAllItems() throws PersistenceException {
+            return withMachine(machineID, (dao) -> dao.getAllItems());
+        }
+
+        @Override
+        public List<Item> getItemsByRow(String rowPrefix)
+                throws PersistenceException {
+            return withMachine(machineID,
+                    (dao) -> dao.getItemsByRow(rowPrefix));
+        }
+
+        @Override
+        public List<Item> getInStockItems() throws PersistenceException {
+            return withMachine(machineID, (dao) -> dao.getInStockItems());
+        }
+
+        @Override
+        public int getEmptySlotCount() throws PersistenceException {
+            return withMachine(machineID, (dao) -> dao.getEmptySlotCount());
+        }
+
+        @Override
+        public boolean hasInStockItems() throws PersistenceException {
+            return withMachine(machineID, (dao) -> dao.hasInStockItems());
+        }
+
+        @Override
+        public long getInventoryVersion() throws PersistenceException {
+            return withMachine(machineID, (dao) -> dao.getInventoryVersion());
+        }
+
+        @Override
+        public InventorySnapshot getInventorySnapshot()
+                throws PersistenceException {
+            return withMachine(machineID,
+                    (dao) -> dao.getInventorySnapshot());
+        }
+
+        @Override
+        public Item updateItem(String locationID, Item updatedItem)
+                throws PersistenceException {
+            return withMachine(machineID,
+                    (dao) -> dao.updateItem(locationID, updatedItem));
+        }
+
+        @Override
+        public void updateItems(List<Item> updatedItems)
+                throws PersistenceException {
+            withMachine(machineID, (dao) -> {
+                dao.updateItems(updatedItems);
+                return null;
+            });
+        }
+
+        @Override
+        public boolean compareAndUpdateItems(List<Item> updatedItems,
+                Map<String, Long> expectedVersions)
+                throws PersistenceException {
+            return withMachine(machineID, (dao) -> dao.compareAndUpdateItems(
+                    updatedItems, expectedVersions));
+        }
+
+        @Override
+        public Item compareAndUpdateItem(String locationID,
+                long expectedVersion, Item updatedItem)
+                throws PersistenceException {
+            return withMachine(machineID, (dao) -> dao.compareAndUpdateItem(
+                    locationID, expectedVersion, updatedItem));
+        }
+
+        @Override
+        public Item compareAndDeleteItem(String locationID,
+                long expectedVersion) throws PersistenceException {
+            return withMachine(machineID, (dao) -> dao.compareAndDeleteItem(
+                    locationID, expectedVersion));
+        }
+
+        @Override
+        public Item commitSale(String locationID, long expectedVersion)
+                throws PersistenceException {
+            return withMachine(machineID,
+                    (dao) -> dao.commitSale(locationID, expectedVersion));
+        }
+
+        @Override
+        public Item deleteItem(String locationID) throws PersistenceException {
+            return withMachine(machineID, (dao) -> dao.deleteItem(locationID));
+        }
+    }
+
+}
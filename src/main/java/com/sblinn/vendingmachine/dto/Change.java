@@ -1,13 +1,15 @@
 
 package com.sblinn.vendingmachine.dto;
 
+import com.sblinn.vendingmachine.jfr.ChangeCalculationEvent;
 import java.math.BigDecimal;
 
 
 /**
  * A Change object stores the number of quarters, dimes, nickels, and pennies 
- * in change. When created using an integer or a BigDecimal value, the change is
- * calculated using the fewest number of coins necessary.
+ * in change. When created using an integer, Money or a BigDecimal value, the 
+ * change is calculated using the fewest number of coins necessary, see 
+ * ChangeCalculator.
  * 
  * @author sarablinn
  */
@@ -20,10 +22,12 @@ public class Change {
         calculateChange(changeInPennies);
     }
     
+    public Change(Money change) {
+        calculateChange(change.getCents());
+    }
+    
     public Change(BigDecimal change) {
-        String changeStr = change.toString().replace(".", "");
-        int changeInPennies = Integer.parseInt(changeStr);
-        calculateChange(changeInPennies);
+        this(Money.of(change));
     }
     
     public Change(int numQuarters, int numDimes, int numNickels, int numPennies) {
@@ -32,51 +36,43 @@ public class Change {
         this.numNickels = numNickels;
         this.numPennies = numPennies;
     }
-           
     
-    private void calculateChange(int changeInPennies) {
-        int remChange = changeInPennies;
-        
-        while(remChange != 0) {
-            while(remChange - 25 >= 0) {
-                this.numQuarters++;
-                remChange -= 25;
-            }
-            while(remChange - 10 >= 0) {
-                this.numDimes++;
-                remChange -= 10;
-            }
-            while(remChange - 5 >= 0) {
-                this.numNickels++;
-                remChange -= 5; 
-            }
-            while(remChange - 1 >= 0) {
-                this.numPennies++;
-                remChange -= 1;
-            }
-        }   
+    
+    private void calculateChange(long changeInPennies) {
+        ChangeCalculationEvent event = new ChangeCalculationEvent();
+        event.begin();
+        ChangeCalculator.ALL_COINS.calculate(changeInPennies, this);
+        event.end();
+        if(event.shouldCommit()) {
+            event.setAmountCents(changeInPennies);
+            event.setCoinCount(numQuarters + numDimes + numNickels + numPennies);
+            event.commit();
+        }
     }
     
     
     /**
-     * Calculates and returns the BigDecimal sum value of the change.
+     * Calculates and returns the Money value of the change.
+     * 
+     * @return sum - Money
+     */
+    public Money getChangeValue() {
+        long sumInCents = (long) this.numQuarters * Coin.QUARTER.getCents()
+                + (long) this.numDimes * Coin.DIME.getCents()
+                + (long) this.numNickels * Coin.NICKEL.getCents()
+                + (long) this.numPennies * Coin.PENNY.getCents();
+        
+        return Money.ofCents(sumInCents);
+    }
+    
+    /**
+     * Calculates and returns the BigDecimal sum value of the change, for 
+     * display.
      * 
      * @return sum - BigDecimal 
      */
     public BigDecimal getChangeSum() {
-        BigDecimal quarters = new BigDecimal(this.numQuarters);
-        BigDecimal dimes = new BigDecimal(this.numDimes);
-        BigDecimal nickels = new BigDecimal(this.numNickels);
-        BigDecimal pennies = new BigDecimal(this.numPennies);
-        
-        quarters = quarters.multiply(Coin.QUARTER.getValue()).setScale(2);
-        dimes = dimes.multiply(Coin.DIME.getValue()).setScale(2);
-        nickels = nickels.multiply(Coin.NICKEL.getValue()).setScale(2);
-        pennies = pennies.multiply(Coin.PENNY.getValue()).setScale(2);
-        
-        BigDecimal sum = quarters.add(dimes).add(nickels).add(pennies);
-        
-        return sum;
+        return getChangeValue().toBigDecimal();
     }
     
     /**
@@ -95,6 +91,53 @@ public class Change {
     }
     
 
+    /**
+     * @param coin - Coin
+     * @return the number of that coin in the change
+     */
+    public int getNumCoins(Coin coin) {
+        switch(coin) {
+            case QUARTER:
+                return numQuarters;
+            case DIME:
+                return numDimes;
+            case NICKEL:
+                return numNickels;
+            default:
+                return numPennies;
+        }
+    }
+    
+    /**
+     * @param coin - Coin
+     * @param numCoins - number of that coin in the change
+     */
+    public void setNumCoins(Coin coin, int numCoins) {
+        switch(coin) {
+            case QUARTER:
+                this.numQuarters = numCoins;
+                break;
+            case DIME:
+                this.numDimes = numCoins;
+                break;
+            case NICKEL:
+                this.numNickels = numCoins;
+                break;
+            default:
+                this.numPennies = numCoins;
+        }
+    }
+    
+    /**
+     * Empties the change so it can be reused.
+     */
+    public void clear() {
+        this.numQuarters = 0;
+        this.numDimes = 0;
+        this.numNickels = 0;
+        this.numPennies = 0;
+    }
+
     public int getNumQuarters() {
         return numQuarters;
     }
@@ -0,0 +1,190 @@
+package com.sblinn.vendingmachine.dto;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Makes change for a cent amount with the fewest coins from a set of Coin 
+ * denominations. The time does not grow with the amount, and the coin 
+ * counts are written into a Change the caller passes in, so a calculator 
+ * and a reused Change allocate nothing.
+ * 
+ * Largest-coin-first is the fewest coins for the US set and many of its 
+ * subsets, and then each denomination costs one division. It is not for 
+ * every set: from quarters and dimes it cannot make 30 cents at all, three 
+ * dimes do. Such sets are found when the calculator is built and are served 
+ * from a table of the fewest coins for every amount below the largest coin 
+ * squared, made without the largest coin. Fewer than largest-coin-many 
+ * smaller coins are ever needed (any more hold a group adding up to a 
+ * multiple of the largest coin, which fewer largest coins replace), so the 
+ * best change is one of those amounts topped up with largest coins. 
+ * Amounts a set cannot make exactly are rejected.
+ * 
+ * @author sarablinn
+ */
+public class ChangeCalculator {
+    
+    public static final ChangeCalculator ALL_COINS = 
+            new ChangeCalculator(Coin.values());
+    
+    private static final int UNREACHABLE = Integer.MAX_VALUE;
+    
+    // largest coin first
+    private final Coin[] coins;
+    private final int[] values;
+    // true when largest-coin-first always gives the fewest coins
+    private final boolean greedy;
+    // by amount below the largest coin squared, made without the largest 
+    // coin: the fewest coins, and the index of one coin of that change
+    private final int[] fewestCoins;
+    private final int[] lastCoin;
+    
+    
+    /**
+     * 
+     * @param denominations - coins change may be given in
+     * @throws IllegalArgumentException if no denomination is given
+     */
+    public ChangeCalculator(Coin... denominations) {
+        if(denominations.length == 0) {
+            throw new IllegalArgumentException(
+                    "Change needs at least one denomination.");
+        }
+        this.coins = Arrays.stream(denominations)
+                .distinct()
+                .sorted(Comparator.comparingInt(Coin::getCents).reversed())
+                .toArray(Coin[]::new);
+        this.values = new int[coins.length];
+        for(int i = 0; i < coins.length; i++) {
+            values[i] = coins[i].getCents();
+        }
+        
+        int largest = values[0];
+        fewestCoins = new int[largest * largest];
+        lastCoin = new int[fewestCoins.length];
+        Arrays.fill(fewestCoins, UNREACHABLE);
+        Arrays.fill(lastCoin, -1);
+        fewestCoins[0] = 0;
+        for(int amount = 1; amount < fewestCoins.length; amount++) {
+            for(int i = 1; i < values.length; i++) {
+                if(values[i] <= amount 
+                        && fewestCoins[amount - values[i]] != UNREACHABLE
+                        && fewestCoins[amount - values[i]] + 1 
+                                < fewestCoins[amount]) {
+                    fewestCoins[amount] = fewestCoins[amount - values[i]] + 1;
+                    lastCoin[amount] = i;
+                }
+            }
+        }
+        
+        // greedy matching the table below largest squared matches it for 
+        // every amount, larger ones only add largest coins to both
+        boolean greedyIsBest = true;
+        for(int amount = 0; amount < fewestCoins.length; amount++) {
+            if(greedyCount(amount) != exactCount(amount)) {
+                greedyIsBest = false;
+                break;
+            }
+        }
+        this.greedy = greedyIsBest;
+    }
+    
+    
+    /**
+     * Writes the coins making up changeInPennies into holder, replacing what 
+     * it held. Coins outside this calculator's denominations are set to 0.
+     * 
+     * @param changeInPennies - amount in cents, not negative
+     * @param holder - Change to fill
+     * @return holder
+     * @throws IllegalArgumentException if the amount is negative or cannot be
+     *         made exactly from the denominations
+     */
+    public Change calculate(long changeInPennies, Change holder) {
+        if(changeInPennies < 0) {
+            throw new IllegalArgumentException(
+                    "Change cannot be negative: " + changeInPennies);
+        }
+        holder.clear();
+        if(greedy) {
+            long remChange = changeInPennies;
+            for(int i = 0; i < coins.length; i++) {
+                long numCoins = remChange / values[i];
+                remChange -= numCoins * values[i];
+                holder.setNumCoins(coins[i], Math.toIntExact(numCoins));
+            }
+            if(remChange != 0) {
+                throw unableToMake(changeInPennies);
+            }
+            return holder;
+        }
+        
+        // the part made of smaller coins is below largest squared and 
+        // leaves a multiple of the largest coin
+        int largest = values[0];
+        int bestSmallPart = -1;
+        long bestCount = Long.MAX_VALUE;
+        for(long smallPart = changeInPennies % largest; 
+                smallPart < fewestCoins.length && smallPart <= changeInPennies;
+                smallPart += largest) {
+            int smallCoins = fewestCoins[(int) smallPart];
+            if(smallCoins == UNREACHABLE) {
+                continue;
+            }
+            long count = smallCoins + (changeInPennies - smallPart) / largest;
+            if(count < bestCount) {
+                bestCount = count;
+                bestSmallPart = (int) smallPart;
+            }
+        }
+        if(bestSmallPart < 0) {
+            throw unableToMake(changeInPennies);
+        }
+        
+        holder.setNumCoins(coins[0], Math.toIntExact(
+                (changeInPennies - bestSmallPart) / largest));
+        for(int amount = bestSmallPart; amount > 0; 
+                amount -= values[lastCoin[amount]]) {
+            Coin coin = coins[lastCoin[amount]];
+            holder.setNumCoins(coin, holder.getNumCoins(coin) + 1);
+        }
+        return holder;
+    }
+    
+    
+    /**
+     * @return number of coins largest-coin-first gives for amount, or -1 if 
+     *         it cannot make it exactly
+     */
+    private int greedyCount(int amount) {
+        int count = 0;
+        for(int value : values) {
+            count += amount / value;
+            amount %= value;
+        }
+        return amount == 0 ? count : -1;
+    }
+    
+    /**
+     * @return fewest coins making amount, below largest squared, or -1 if 
+     *         it cannot be made
+     */
+    private int exactCount(int amount) {
+        int best = -1;
+        for(int largestCoins = 0; largestCoins * values[0] <= amount; 
+                largestCoins++) {
+            int smallCoins = fewestCoins[amount - largestCoins * values[0]];
+            if(smallCoins != UNREACHABLE 
+                    && (best < 0 || smallCoins + largestCoins < best)) {
+                best = smallCoins + largestCoins;
+            }
+        }
+        return best;
+    }
+    
+    private IllegalArgumentException unableToMake(long changeInPennies) {
+        return new IllegalArgumentException("Unable to make " 
+                + changeInPennies + " cents from " + Arrays.toString(coins));
+    }
+    
+}
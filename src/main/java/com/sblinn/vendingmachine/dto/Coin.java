@@ -1,28 +1,32 @@
 
 package com.sblinn.vendingmachine.dto;
 
-import java.math.BigDecimal;
-
 /**
  *
  * @author sarablinn
  */
 public enum Coin {
     
-    PENNY(new BigDecimal("0.01")), 
-    NICKEL(new BigDecimal("0.05")), 
-    DIME(new BigDecimal("0.10")), 
-    QUARTER(new BigDecimal("0.25"));
+    PENNY(1), 
+    NICKEL(5), 
+    DIME(10), 
+    QUARTER(25);
     
     
-    private final BigDecimal value;
+    private final int cents;
+    private final Money value;
     
-    private Coin(BigDecimal value) {
-        this.value = value;
+    private Coin(int cents) {
+        this.cents = cents;
+        this.value = Money.ofCents(cents);
     }
     
-    public BigDecimal getValue() {
+    public Money getValue() {
         return value;
     }
     
+    public int getCents() {
+        return cents;
+    }
+    
 }
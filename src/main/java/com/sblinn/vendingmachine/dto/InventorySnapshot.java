@@ -0,0 +1,269 @@
+package com.sblinn.vendingmachine.dto;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * The whole inventory as it was at one version. A snapshot never changes
+ * once built, and neither do its Items, so it can be read by any number of
+ * threads without locks while sales go on; a change to the inventory
+ * publishes a new snapshot instead of editing this one.
+ *
+ * The menu, reports and exports read one snapshot so that every line they
+ * show comes from the same version of the inventory.
+ *
+ * Snapshots share their structure. The sorted location IDs are kept in one
+ * array and the Items in chunks of CHUNK_SIZE; withItem copies only the
+ * chunk array and the one chunk it changes, and keeps the in-stock count up
+ * to date from the old and new Item, so a sale costs a small fraction of
+ * the catalog rather than a copy of it. Adding or removing a location ID
+ * rebuilds the snapshot. The lists of Items are built from the chunks the
+ * first time a snapshot is asked for them.
+ *
+ * @author sarablinn
+ */
+public final class InventorySnapshot {
+
+    private static final int CHUNK_SIZE = 64;
+
+    public static final InventorySnapshot EMPTY =
+            new InventorySnapshot(0, Collections.<Item>emptyList());
+
+    private final long version;
+    // sorted, shared by every snapshot with the same location IDs
+    private final String[] locationIDs;
+    // Item of locationIDs[i] at chunks[i / CHUNK_SIZE][i % CHUNK_SIZE],
+    // unchanged chunks are shared with the snapshot this one was made from
+    private final Item[][] chunks;
+    private final int inStockCount;
+    // built on first use
+    private volatile List<Item> items;
+    private volatile List<Item> inStockItems;
+
+
+    /**
+     *
+     * @param version - inventory version the items belong to
+     * @param items - Items in any order, keyed by their own location IDs
+     */
+    public InventorySnapshot(long version, Collection<Item> items) {
+        this(version, byLocation(items));
+    }
+
+    /**
+     *
+     * @param version - inventory version the items belong to
+     * @param itemsByLocation - Items by location ID, copied
+     */
+    public InventorySnapshot(long version,
+            SortedMap<String, Item> itemsByLocation) {
+        this.version = version;
+        this.locationIDs = new String[itemsByLocation.size()];
+        this.chunks = new Item[chunkCount(locationIDs.length)][];
+        int inStock = 0;
+        int i = 0;
+        for(Map.Entry<String, Item> entry : itemsByLocation.entrySet()) {
+            if(i % CHUNK_SIZE == 0) {
+                chunks[i / CHUNK_SIZE] = new Item[
+                        Math.min(CHUNK_SIZE, locationIDs.length - i)];
+            }
+            locationIDs[i] = entry.getKey();
+            chunks[i / CHUNK_SIZE][i % CHUNK_SIZE] = entry.getValue();
+            if(entry.getValue().getNumAvailable() != 0) {
+                inStock++;
+            }
+            i++;
+        }
+        this.inStockCount = inStock;
+    }
+
+    private InventorySnapshot(long version, String[] locationIDs,
+            Item[][] chunks, int inStockCount) {
+        this.version = version;
+        this.locationIDs = locationIDs;
+        this.chunks = chunks;
+        this.inStockCount = inStockCount;
+    }
+
+
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * @param locationID - String, case insensitive
+     * @return the Item at locationID, or null
+     */
+    public Item getItem(String locationID) {
+        int index = Arrays.binarySearch(locationIDs,
+                locationID.toUpperCase());
+        return index < 0 ? null : itemAt(index);
+    }
+
+    /**
+     * @return every Item, sold out ones included, sorted by locationID
+     */
+    public List<Item> getItems() {
+        List<Item> all = items;
+        if(all == null) {
+            all = new ArrayList<>(locationIDs.length);
+            for(Item[] chunk : chunks) {
+                all.addAll(Arrays.asList(chunk));
+            }
+            all = Collections.unmodifiableList(all);
+            items = all;
+        }
+        return all;
+    }
+
+    /**
+     * @return the Items with stock left, sorted by locationID
+     */
+    public List<Item> getInStockItems() {
+        List<Item> inStock = inStockItems;
+        if(inStock == null) {
+            inStock = new ArrayList<>(inStockCount);
+            for(Item[] chunk : chunks) {
+                for(Item item : chunk) {
+                    if(item.getNumAvailable() != 0) {
+                        inStock.add(item);
+                    }
+                }
+            }
+            inStock = Collections.unmodifiableList(inStock);
+            inStockItems = inStock;
+        }
+        return inStock;
+    }
+
+    /**
+     * @param rowPrefix - String, case insensitive
+     * @return the Items whose location ID starts with rowPrefix, sorted by
+     *         locationID
+     */
+    public List<Item> getItemsByRow(String rowPrefix) {
+        String prefix = rowPrefix.toUpperCase();
+        int index = Arrays.binarySearch(locationIDs, prefix);
+        List<Item> rowItems = new ArrayList<>();
+        for(int i = index < 0 ? -index - 1 : index;
+                i < locationIDs.length && locationIDs[i].startsWith(prefix);
+                i++) {
+            rowItems.add(itemAt(i));
+        }
+        return rowItems;
+    }
+
+    public int getItemCount() {
+        return locationIDs.length;
+    }
+
+    /**
+     * @return number of slots holding an item with no stock left
+     */
+    public int getEmptySlotCount() {
+        return locationIDs.length - inStockCount;
+    }
+
+    public boolean hasInStockItems() {
+        return inStockCount > 0;
+    }
+
+    /**
+     * Returns the snapshot at version with item stored at locationID. An
+     * existing location ID only copies the chunk holding it; a new one
+     * rebuilds the snapshot.
+     *
+     * @param version - inventory version of the new snapshot
+     * @param locationID - key to store item under, as given
+     * @param item - Item
+     * @return InventorySnapshot
+     */
+    public InventorySnapshot withItem(long version, String locationID,
+            Item item) {
+        return withItems(version, Collections.singletonMap(locationID, item));
+    }
+
+    /**
+     * Returns the snapshot at version with every Item of updatedItems stored
+     * at its location ID, copying each changed chunk once.
+     *
+     * @param version - inventory version of the new snapshot
+     * @param updatedItems - Items by location ID, as given
+     * @return InventorySnapshot
+     */
+    public InventorySnapshot withItems(long version,
+            Map<String, Item> updatedItems) {
+        Item[][] newChunks = chunks.clone();
+        int newInStockCount = inStockCount;
+        for(Map.Entry<String, Item> update : updatedItems.entrySet()) {
+            int index = Arrays.binarySearch(locationIDs, update.getKey());
+            if(index < 0) {
+                NavigableMap<String, Item> rebuilt = copyItems();
+                rebuilt.putAll(updatedItems);
+                return new InventorySnapshot(version, rebuilt);
+            }
+            int chunk = index / CHUNK_SIZE;
+            if(newChunks[chunk] == chunks[chunk]) {
+                newChunks[chunk] = chunks[chunk].clone();
+            }
+            Item oldItem = newChunks[chunk][index % CHUNK_SIZE];
+            Item newItem = update.getValue();
+            newInStockCount += (newItem.getNumAvailable() != 0 ? 1 : 0)
+                    - (oldItem.getNumAvailable() != 0 ? 1 : 0);
+            newChunks[chunk][index % CHUNK_SIZE] = newItem;
+        }
+        return new InventorySnapshot(version, locationIDs, newChunks,
+                newInStockCount);
+    }
+
+    /**
+     * Returns the snapshot at version without the Item at locationID. This
+     * rebuilds the snapshot.
+     *
+     * @param version - inventory version of the new snapshot
+     * @param locationID - key to remove, as given
+     * @return InventorySnapshot
+     */
+    public InventorySnapshot withoutItem(long version, String locationID) {
+        NavigableMap<String, Item> rebuilt = copyItems();
+        rebuilt.remove(locationID);
+        return new InventorySnapshot(version, rebuilt);
+    }
+
+    /**
+     * Returns a modifiable copy of the items by location ID.
+     *
+     * @return NavigableMap of Items by locationID
+     */
+    public NavigableMap<String, Item> copyItems() {
+        NavigableMap<String, Item> copy = new TreeMap<>();
+        for(int i = 0; i < locationIDs.length; i++) {
+            copy.put(locationIDs[i], itemAt(i));
+        }
+        return copy;
+    }
+
+
+    private Item itemAt(int index) {
+        return chunks[index / CHUNK_SIZE][index % CHUNK_SIZE];
+    }
+
+    private static int chunkCount(int itemCount) {
+        return (itemCount + CHUNK_SIZE - 1) / CHUNK_SIZE;
+    }
+
+    private static SortedMap<String, Item> byLocation(Collection<Item> items) {
+        SortedMap<String, Item> itemsByLocation = new TreeMap<>();
+        for(Item item : items) {
+            itemsByLocation.put(item.getLocationID(), item);
+        }
+        return itemsByLocation;
+    }
+}
@@ -1,4 +1,3 @@
-
 package com.sblinn.vendingmachine.dto;
 
 import java.math.BigDecimal;
@@ -6,24 +5,48 @@ import java.math.BigDecimal;
 import java.util.Objects;
 
 /**
+ * An item in one slot of the machine. Items are immutable, so the DAO can 
+ * hand the same Item to any number of readers while sales go on; a change 
+ * is made by building a new Item with one of the with methods and saving it.
+ * 
+ * The version is set by the DAO, which stores each new state of a slot with 
+ * a higher version, so a writer can tell whether the item it read is still 
+ * the current one. Items built by hand are UNVERSIONED. The with methods 
+ * keep the version, and equals and hashCode ignore it.
  *
  * @author sarablinn
  */
-public class Item {
+public final class Item {
+    
+    public static final long UNVERSIONED = 0;
     
-    private String name;
-    private BigDecimal price; 
-    private int numAvailable;
-    private String locationID;
+    private final String name;
+    private final Money price; 
+    private final int numAvailable;
+    private final String locationID;
+    private final long version;
     
     
     public Item(String locationID) {
-        this.locationID = locationID;
+        this(locationID, null);
     }
     
     public Item(String locationID, String name) {
+        this(locationID, name, 0, null);
+    }
+    
+    public Item(String locationID, String name, int numAvailable, 
+            Money price) {
+        this(locationID, name, numAvailable, price, UNVERSIONED);
+    }
+    
+    public Item(String locationID, String name, int numAvailable, 
+            Money price, long version) {
         this.locationID = locationID;
         this.name = name;
+        this.numAvailable = numAvailable;
+        this.price = price;
+        this.version = version;
     }
 
     
@@ -31,32 +54,46 @@ public class Item {
         return name;
     }
 
-    public void setName(String name) {
-        this.name = name;
+    public Item withName(String name) {
+        return new Item(locationID, name, numAvailable, price, version);
     }
 
-    public BigDecimal getPrice() {
+    public Money getPrice() {
         return price;
     }
 
-    public void setPrice(BigDecimal price) {
-        this.price = price;
+    public Item withPrice(Money price) {
+        return new Item(locationID, name, numAvailable, price, version);
+    }
+    
+    /**
+     * Returns a copy of this item priced at a dollar amount, e.g. 2.50.
+     * 
+     * @param price - BigDecimal dollars
+     * @return Item
+     */
+    public Item withPrice(BigDecimal price) {
+        return withPrice(Money.of(price));
     }
 
     public int getNumAvailable() {
         return numAvailable;
     }
 
-    public void setNumAvailable(int numAvailable) {
-        this.numAvailable = numAvailable;
+    public Item withNumAvailable(int numAvailable) {
+        return new Item(locationID, name, numAvailable, price, version);
     }
 
     public String getLocationID() {
         return locationID;
     }
 
-    public void setLocationID(String locationID) {
-        this.locationID = locationID;
+    public long getVersion() {
+        return version;
+    }
+
+    public Item withVersion(long version) {
+        return new Item(locationID, name, numAvailable, price, version);
     }
 
     @Override
@@ -0,0 +1,115 @@
+package com.sblinn.vendingmachine.dto;
+
+import java.math.BigDecimal;
+
+/**
+ * An immutable amount of money held as a whole number of cents. Prices,
+ * balances and change are Money everywhere inside the machine; BigDecimal is
+ * only used when reading amounts in (of, parse) or handing them out for
+ * display (toBigDecimal, toString).
+ *
+ * @author sarablinn
+ */
+public final class Money implements Comparable<Money> {
+
+    public static final Money ZERO = new Money(0);
+
+    private final long cents;
+
+
+    private Money(long cents) {
+        this.cents = cents;
+    }
+
+    /**
+     * @param cents - amount in cents
+     * @return Money
+     */
+    public static Money ofCents(long cents) {
+        return cents == 0 ? ZERO : new Money(cents);
+    }
+
+    /**
+     * Converts a dollar amount, e.g. 2.50, into Money.
+     *
+     * @param amount - BigDecimal dollars
+     * @return Money
+     * @throws ArithmeticException if the amount has fractions of a cent
+     */
+    public static Money of(BigDecimal amount) {
+        return ofCents(amount.movePointRight(2).longValueExact());
+    }
+
+    /**
+     * Parses a dollar amount such as "2.50", "2.5" or "3".
+     *
+     * @param amount - String dollars
+     * @return Money
+     * @throws NumberFormatException if the text is not a number
+     * @throws ArithmeticException if the amount has fractions of a cent
+     */
+    public static Money parse(String amount) {
+        return of(new BigDecimal(amount));
+    }
+
+
+    public long getCents() {
+        return cents;
+    }
+
+    public Money plus(Money other) {
+        return ofCents(Math.addExact(cents, other.cents));
+    }
+
+    public Money minus(Money other) {
+        return ofCents(Math.subtractExact(cents, other.cents));
+    }
+
+    public Money times(int multiplier) {
+        return ofCents(Math.multiplyExact(cents, multiplier));
+    }
+
+    public boolean isLessThan(Money other) {
+        return cents < other.cents;
+    }
+
+    /**
+     * @return the amount in dollars with a scale of 2, e.g. 2.50
+     */
+    public BigDecimal toBigDecimal() {
+        return BigDecimal.valueOf(cents, 2);
+    }
+
+    @Override
+    public int compareTo(Money other) {
+        return Long.compare(cents, other.cents);
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(cents);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (obj == null || getClass() != obj.getClass()) {
+            return false;
+        }
+        return this.cents == ((Money) obj).cents;
+    }
+
+    /**
+     * @return the amount in dollars with two decimals, e.g. "2.50"
+     */
+    @Override
+    public String toString() {
+        long dollars = Math.abs(cents / 100);
+        long remCents = Math.abs(cents % 100);
+        return (cents < 0 ? "-" : "") + dollars
+                + (remCents < 10 ? ".0" : ".") + remCents;
+    }
+
+}
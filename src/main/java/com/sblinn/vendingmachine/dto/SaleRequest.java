@@ -0,0 +1,35 @@
+package com.sblinn.vendingmachine.dto;
+
+/**
+ * One order in a batch of sales: the slot to sell from and the money the 
+ * buyer paid for it.
+ * 
+ * @author sarablinn
+ */
+public class SaleRequest {
+    
+    private final String locationID;
+    private final Money payment;
+    
+    
+    public SaleRequest(String locationID, Money payment) {
+        this.locationID = locationID;
+        this.payment = payment;
+    }
+
+    
+    public String getLocationID() {
+        return locationID;
+    }
+
+    public Money getPayment() {
+        return payment;
+    }
+
+    @Override
+    public String toString() {
+        return "SaleRequest{" + "locationID=" + locationID 
+                + ", payment=" + payment + '}';
+    }
+    
+}
@@ -0,0 +1,62 @@
+package com.sblinn.vendingmachine.dto;
+
+/**
+ * Outcome of one order in a batch of sales: the change returned, or the 
+ * exception that refused the order.
+ * 
+ * @author sarablinn
+ */
+public class SaleResult {
+    
+    private final SaleRequest saleRequest;
+    private final Change change;
+    private final Exception failure;
+    
+    
+    private SaleResult(SaleRequest saleRequest, Change change, 
+            Exception failure) {
+        this.saleRequest = saleRequest;
+        this.change = change;
+        this.failure = failure;
+    }
+    
+    public static SaleResult success(SaleRequest saleRequest, Change change) {
+        return new SaleResult(saleRequest, change, null);
+    }
+    
+    public static SaleResult failure(SaleRequest saleRequest, 
+            Exception failure) {
+        return new SaleResult(saleRequest, null, failure);
+    }
+
+    
+    public SaleRequest getSaleRequest() {
+        return saleRequest;
+    }
+
+    public boolean isSuccessful() {
+        return failure == null;
+    }
+    
+    /**
+     * @return Change for a successful order, else null
+     */
+    public Change getChange() {
+        return change;
+    }
+
+    /**
+     * @return the exception that refused the order, else null
+     */
+    public Exception getFailure() {
+        return failure;
+    }
+    
+    /**
+     * @return the failure's message, else null
+     */
+    public String getFailureReason() {
+        return failure == null ? null : failure.getMessage();
+    }
+    
+}
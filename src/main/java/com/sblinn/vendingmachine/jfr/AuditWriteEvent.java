@@ -0,0 +1,52 @@
+package com.sblinn.vendingmachine.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight Recorder event for one write to the audit file.
+ * 
+ * @author sarablinn
+ */
+@Name("com.sblinn.vendingmachine.AuditWrite")
+@Label("Audit Write")
+@Category({"Vending Machine", "Persistence"})
+@Description("Audit entries appended to the audit file")
+public class AuditWriteEvent extends Event {
+    
+    @Label("Audit File")
+    private String auditFile;
+    
+    @Label("Bytes Written")
+    @DataAmount
+    private long bytesWritten;
+    
+    @Label("Entry Count")
+    private int entryCount;
+    
+    @Label("Segment Rolled")
+    @Description("The write started a new audit file")
+    private boolean segmentRolled;
+    
+    
+    public void setAuditFile(String auditFile) {
+        this.auditFile = auditFile;
+    }
+
+    public void setBytesWritten(long bytesWritten) {
+        this.bytesWritten = bytesWritten;
+    }
+
+    public void setEntryCount(int entryCount) {
+        this.entryCount = entryCount;
+    }
+
+    public void setSegmentRolled(boolean segmentRolled) {
+        this.segmentRolled = segmentRolled;
+    }
+    
+}
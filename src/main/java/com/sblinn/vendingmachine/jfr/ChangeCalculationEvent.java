@@ -0,0 +1,35 @@
+package com.sblinn.vendingmachine.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight Recorder event for making change for an amount.
+ * 
+ * @author sarablinn
+ */
+@Name("com.sblinn.vendingmachine.ChangeCalculation")
+@Label("Change Calculation")
+@Category("Vending Machine")
+@Description("Coins worked out for an amount of change")
+public class ChangeCalculationEvent extends Event {
+    
+    @Label("Amount Cents")
+    private long amountCents;
+    
+    @Label("Coin Count")
+    private int coinCount;
+    
+    
+    public void setAmountCents(long amountCents) {
+        this.amountCents = amountCents;
+    }
+
+    public void setCoinCount(int coinCount) {
+        this.coinCount = coinCount;
+    }
+    
+}
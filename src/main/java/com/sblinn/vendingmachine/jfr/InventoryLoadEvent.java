@@ -0,0 +1,44 @@
+package com.sblinn.vendingmachine.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight Recorder event for one read of the inventory file.
+ * 
+ * @author sarablinn
+ */
+@Name("com.sblinn.vendingmachine.InventoryLoad")
+@Label("Inventory Load")
+@Category({"Vending Machine", "Persistence"})
+@Description("Inventory file read into memory")
+public class InventoryLoadEvent extends Event {
+    
+    @Label("Inventory File")
+    private String inventoryFile;
+    
+    @Label("Bytes Read")
+    @DataAmount
+    private long bytesRead;
+    
+    @Label("Item Count")
+    private int itemCount;
+    
+    
+    public void setInventoryFile(String inventoryFile) {
+        this.inventoryFile = inventoryFile;
+    }
+
+    public void setBytesRead(long bytesRead) {
+        this.bytesRead = bytesRead;
+    }
+
+    public void setItemCount(int itemCount) {
+        this.itemCount = itemCount;
+    }
+    
+}
@@ -0,0 +1,44 @@
+package com.sblinn.vendingmachine.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight Recorder event for one rewrite of the inventory file.
+ * 
+ * @author sarablinn
+ */
+@Name("com.sblinn.vendingmachine.InventoryWrite")
+@Label("Inventory Write")
+@Category({"Vending Machine", "Persistence"})
+@Description("Inventory written from memory to the inventory file")
+public class InventoryWriteEvent extends Event {
+    
+    @Label("Inventory File")
+    private String inventoryFile;
+    
+    @Label("Bytes Written")
+    @DataAmount
+    private long bytesWritten;
+    
+    @Label("Item Count")
+    private int itemCount;
+    
+    
+    public void setInventoryFile(String inventoryFile) {
+        this.inventoryFile = inventoryFile;
+    }
+
+    public void setBytesWritten(long bytesWritten) {
+        this.bytesWritten = bytesWritten;
+    }
+
+    public void setItemCount(int itemCount) {
+        this.itemCount = itemCount;
+    }
+    
+}
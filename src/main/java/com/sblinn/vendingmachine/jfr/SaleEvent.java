@@ -0,0 +1,53 @@
+package com.sblinn.vendingmachine.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight Recorder event for one sellItem() call, from the start of the checks
+ * until the change is returned or the sale is refused. Persistence and change
+ * events recorded on the same thread during a sale show where its time went.
+ * 
+ * @author sarablinn
+ */
+@Name("com.sblinn.vendingmachine.Sale")
+@Label("Sale")
+@Category("Vending Machine")
+@Description("Service layer sale of one item")
+public class SaleEvent extends Event {
+    
+    @Label("Location ID")
+    private String locationID;
+    
+    @Label("Inserted Cents")
+    private long insertedCents;
+    
+    @Label("Change Cents")
+    private long changeCents;
+    
+    @Label("Outcome")
+    @Description("SUCCESS, or the simple name of the exception that refused "
+            + "the sale")
+    private String outcome;
+    
+    
+    public void setLocationID(String locationID) {
+        this.locationID = locationID;
+    }
+
+    public void setInsertedCents(long insertedCents) {
+        this.insertedCents = insertedCents;
+    }
+
+    public void setChangeCents(long changeCents) {
+        this.changeCents = changeCents;
+    }
+
+    public void setOutcome(String outcome) {
+        this.outcome = outcome;
+    }
+    
+}
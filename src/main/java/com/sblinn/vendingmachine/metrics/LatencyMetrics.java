@@ -0,0 +1,56 @@
+package com.sblinn.vendingmachine.metrics;
+
+/**
+ * Durations of one kind of call, published over JMX as a standard MBean. 
+ * Recording is a LatencyHistogram update, so it is cheap enough to leave on.
+ * 
+ * @author sarablinn
+ */
+public class LatencyMetrics implements LatencyMetricsMBean {
+    
+    private final LatencyHistogram histogram = new LatencyHistogram();
+    
+    
+    /**
+     * @param nanos - duration of one call
+     */
+    public void record(long nanos) {
+        histogram.record(nanos);
+    }
+    
+    @Override
+    public long getCount() {
+        return histogram.getCount();
+    }
+
+    @Override
+    public double getMeanMicros() {
+        return histogram.getMeanNanos() / 1000;
+    }
+
+    @Override
+    public double getP50Micros() {
+        return histogram.getPercentileNanos(50) / 1000.0;
+    }
+
+    @Override
+    public double getP99Micros() {
+        return histogram.getPercentileNanos(99) / 1000.0;
+    }
+
+    @Override
+    public double getP999Micros() {
+        return histogram.getPercentileNanos(99.9) / 1000.0;
+    }
+
+    @Override
+    public double getMaxMicros() {
+        return histogram.getMaxNanos() / 1000.0;
+    }
+
+    @Override
+    public void reset() {
+        histogram.reset();
+    }
+    
+}
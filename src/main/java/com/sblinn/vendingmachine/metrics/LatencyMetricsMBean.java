@@ -0,0 +1,23 @@
+package com.sblinn.vendingmachine.metrics;
+
+/**
+ * JMX view of a LatencyMetrics. Durations are reported in microseconds.
+ * 
+ * @author sarablinn
+ */
+public interface LatencyMetricsMBean {
+    
+    long getCount();
+    
+    double getMeanMicros();
+    
+    double getP50Micros();
+    
+    double getP99Micros();
+    
+    double getP999Micros();
+    
+    double getMaxMicros();
+    
+    void reset();
+}
@@ -0,0 +1,161 @@
+package com.sblinn.vendingmachine.server;
+
+import com.sblinn.vendingmachine.controller.VendingMachineController;
+import com.sblinn.vendingmachine.service.VendingMachineServiceLayer;
+import com.sblinn.vendingmachine.ui.SessionClosedException;
+import com.sblinn.vendingmachine.ui.UserIOSocketImpl;
+import com.sblinn.vendingmachine.ui.VendingMachineView;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serves many kiosks from one process. Every accepted connection gets its own
+ * UserIOSocketImpl, VendingMachineView and VendingMachineController (and so
+ * its own session balance), and runs on a fixed pool of session threads. All
+ * sessions share the one service layer and DAO they were given.
+ *
+ * The server only listens on the loopback address.
+ *
+ * @author sarablinn
+ */
+public class VendingMachineServer {
+
+    private final VendingMachineServiceLayer service;
+    private final int port;
+    private final ExecutorService sessions;
+    private final Set<Socket> openSockets = ConcurrentHashMap.newKeySet();
+
+    private ServerSocket serverSocket;
+    private Thread acceptor;
+
+
+    /**
+     *
+     * @param service - service layer shared by every session
+     * @param port - TCP port to listen on, 0 picks a free port
+     * @param maxSessions - number of kiosks served at the same time, further
+     *                      connections wait for a free session thread
+     */
+    public VendingMachineServer(VendingMachineServiceLayer service, int port,
+            int maxSessions) {
+        this.service = service;
+        this.port = port;
+        this.sessions = Executors.newFixedThreadPool(maxSessions, (r) -> {
+            Thread t = new Thread(r, "kiosk-session");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+
+    /**
+     * Binds the server socket and starts accepting kiosks on a background
+     * thread.
+     *
+     * @throws IOException if the port cannot be bound
+     */
+    public synchronized void start() throws IOException {
+        serverSocket = new ServerSocket(port, 50,
+                InetAddress.getLoopbackAddress());
+        acceptor = new Thread(this::acceptKiosks, "kiosk-acceptor");
+        acceptor.start();
+    }
+
+    /**
+     * Starts the server and blocks until it is closed.
+     *
+     * @throws IOException if the port cannot be bound
+     * @throws InterruptedException
+     */
+    public void run() throws IOException, InterruptedException {
+        start();
+        acceptor.join();
+    }
+
+    /**
+     * @return the port being listened on, useful when constructed with 0
+     */
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * Stops accepting kiosks and disconnects the open sessions.
+     */
+    public synchronized void close() {
+        if(serverSocket == null) {
+            return;
+        }
+        try {
+            serverSocket.close();
+        } catch(IOException e) {
+            // closing anyway
+        }
+        for(Socket socket : openSockets) {
+            closeQuietly(socket);
+        }
+        sessions.shutdown();
+        try {
+            sessions.awaitTermination(5, TimeUnit.SECONDS);
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+
+    private void acceptKiosks() {
+        while(!serverSocket.isClosed()) {
+            try {
+                Socket socket = serverSocket.accept();
+                openSockets.add(socket);
+                sessions.execute(() -> runSession(socket));
+            } catch(SocketException e) {
+                // server socket closed
+            } catch(IOException e) {
+                System.err.println("Unable to accept kiosk: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Runs one kiosk's controller until the kiosk exits or disconnects.
+     */
+    private void runSession(Socket socket) {
+        try {
+            BufferedReader in = new BufferedReader(new InputStreamReader(
+                    socket.getInputStream(), StandardCharsets.UTF_8));
+            PrintWriter out = new PrintWriter(new OutputStreamWriter(
+                    socket.getOutputStream(), StandardCharsets.UTF_8));
+
+            VendingMachineView view = new VendingMachineView(
+                    new UserIOSocketImpl(in, out));
+            new VendingMachineController(view, service).run();
+        } catch(IOException | SessionClosedException e) {
+            // kiosk went away, nothing to clean up but the socket
+        } finally {
+            openSockets.remove(socket);
+            closeQuietly(socket);
+        }
+    }
+
+    private void closeQuietly(Socket socket) {
+        try {
+            socket.close();
+        } catch(IOException e) {
+            // already closed
+        }
+    }
+}
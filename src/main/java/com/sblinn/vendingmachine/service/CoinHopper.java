@@ -0,0 +1,256 @@
+package com.sblinn.vendingmachine.service;
+
+import com.sblinn.vendingmachine.dto.Change;
+import com.sblinn.vendingmachine.dto.Coin;
+import com.sblinn.vendingmachine.dto.Money;
+import com.sblinn.vendingmachine.jfr.ChangeCalculationEvent;
+import java.util.Arrays;
+
+/**
+ * The coins held by the machine. Inserted coins are deposited into the 
+ * hopper and change is dispensed from it, so change can only be made from 
+ * coins the machine actually has.
+ * 
+ * Change is planned greedily (largest coin first, as many as the hopper 
+ * holds). When that leaves a remainder, e.g. 30 cents with one quarter, three 
+ * dimes and no nickels or pennies, the plan falls back to a bounded 
+ * coin-change table giving the fewest coins for every amount up to the one 
+ * asked for. The table is built in O(coins x amount). A table up to limit 
+ * can use at most limit / value coins of a denomination, so it is keyed on 
+ * the counts capped there and reused as long as those stay the same, e.g. 
+ * while sales take and give quarters from a full tube but the dimes, 
+ * nickels and pennies it was short of are untouched.
+ * 
+ * @author sarablinn
+ */
+public class CoinHopper {
+    
+    // largest coin first
+    private static final Coin[] COINS = 
+            {Coin.QUARTER, Coin.DIME, Coin.NICKEL, Coin.PENNY};
+    private static final int UNREACHABLE = Integer.MAX_VALUE;
+    
+    private final int[] counts = new int[COINS.length];
+    
+    // fallback table, valid while the capped counts equal tableCounts
+    private final int[] tableCounts = new int[COINS.length];
+    private int tableLimit = -1;
+    private int[] fewestCoins;
+    private int[][] coinsTaken;
+    
+    
+    public CoinHopper() {
+    }
+    
+    /**
+     * 
+     * @param quarters - starting number of quarters
+     * @param dimes - starting number of dimes
+     * @param nickels - starting number of nickels
+     * @param pennies - starting number of pennies
+     */
+    public CoinHopper(int quarters, int dimes, int nickels, int pennies) {
+        deposit(new Change(quarters, dimes, nickels, pennies));
+    }
+    
+    
+    /**
+     * Adds coins to the hopper.
+     * 
+     * @param coins - Change
+     * @throws IllegalArgumentException if any coin count is negative
+     */
+    public synchronized void deposit(Change coins) {
+        checkCounts(coins);
+        counts[0] += coins.getNumQuarters();
+        counts[1] += coins.getNumDimes();
+        counts[2] += coins.getNumNickels();
+        counts[3] += coins.getNumPennies();
+    }
+    
+    /**
+     * @param amount - Money
+     * @return true if the hopper holds coins adding up to exactly amount
+     */
+    public synchronized boolean canMakeChange(Money amount) {
+        return planChange(amount.getCents()) != null;
+    }
+    
+    /**
+     * Takes coins adding up to exactly amount out of the hopper, using the 
+     * fewest coins the greedy plan or the fallback table can find.
+     * 
+     * @param amount - Money
+     * @return Change - the coins taken out
+     * @throws ExactChangeUnavailableException if the hopper cannot make amount
+     */
+    public synchronized Change dispense(Money amount) throws 
+            ExactChangeUnavailableException {
+        
+        ChangeCalculationEvent event = new ChangeCalculationEvent();
+        event.begin();
+        int[] plan = planChange(amount.getCents());
+        event.end();
+        if(event.shouldCommit()) {
+            event.setAmountCents(amount.getCents());
+            event.setCoinCount(plan == null 
+                    ? 0 : plan[0] + plan[1] + plan[2] + plan[3]);
+            event.commit();
+        }
+        if(plan == null) {
+            throw new ExactChangeUnavailableException(
+                    "ERROR: EXACT CHANGE UNAVAILABLE. Unable to return $" 
+                    + amount + " in change.");
+        }
+        for(int i = 0; i < COINS.length; i++) {
+            counts[i] -= plan[i];
+        }
+        return new Change(plan[0], plan[1], plan[2], plan[3]);
+    }
+    
+    /**
+     * @return Change - a copy of the coins currently in the hopper
+     */
+    public synchronized Change getCoins() {
+        return new Change(counts[0], counts[1], counts[2], counts[3]);
+    }
+    
+    
+    /**
+     * @return coins to take of each COINS denomination, or null if amount 
+     *         cannot be made
+     */
+    private int[] planChange(long amount) {
+        if(amount < 0 || amount > totalCents()) {
+            return null;
+        }
+        int[] plan = new int[COINS.length];
+        long remaining = amount;
+        for(int i = 0; i < COINS.length && remaining > 0; i++) {
+            int value = COINS[i].getCents();
+            plan[i] = (int) Math.min(counts[i], remaining / value);
+            remaining -= (long) plan[i] * value;
+        }
+        if(remaining == 0) {
+            return plan;
+        }
+        
+        // amount <= totalCents(), which is what the hopper can hold
+        int target = Math.toIntExact(amount);
+        if(!isTableValid(target)) {
+            buildTable(target);
+        }
+        if(fewestCoins[target] == UNREACHABLE) {
+            return null;
+        }
+        int rest = target;
+        for(int i = COINS.length - 1; i >= 0; i--) {
+            plan[i] = coinsTaken[i][rest];
+            rest -= plan[i] * COINS[i].getCents();
+        }
+        return plan;
+    }
+    
+    /**
+     * Bounded coin change: adding one denomination at a time, the fewest coins 
+     * for amount a is min over k <= count of previous[a - k*value] + k. For 
+     * each residue of a modulo value that minimum is a sliding window over 
+     * the amounts below a, kept in a monotonic queue, so every layer is 
+     * linear in limit.
+     */
+    private void buildTable(int limit) {
+        int[] previous = new int[limit + 1];
+        int[] current = new int[limit + 1];
+        int[][] taken = new int[COINS.length][limit + 1];
+        Arrays.fill(previous, UNREACHABLE);
+        previous[0] = 0;
+        
+        for(int i = 0; i < COINS.length; i++) {
+            int value = COINS[i].getCents();
+            int count = counts[i];
+            int[] window = new int[limit / value + 1];
+            
+            for(int residue = 0; residue < value && residue <= limit; residue++) {
+                int head = 0;
+                int tail = 0;
+                for(int j = 0, a = residue; a <= limit; j++, a += value) {
+                    if(previous[a] != UNREACHABLE) {
+                        int key = previous[a] - j;
+                        while(tail > head && previous[residue 
+                                + window[tail - 1] * value] 
+                                - window[tail - 1] >= key) {
+                            tail--;
+                        }
+                        window[tail++] = j;
+                    }
+                    while(tail > head && window[head] < j - count) {
+                        head++;
+                    }
+                    if(tail > head) {
+                        int best = window[head];
+                        current[a] = previous[residue + best * value] 
+                                + (j - best);
+                        taken[i][a] = j - best;
+                    } else {
+                        current[a] = UNREACHABLE;
+                    }
+                }
+            }
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        
+        fewestCoins = previous;
+        coinsTaken = taken;
+        tableLimit = limit;
+        for(int i = 0; i < COINS.length; i++) {
+            tableCounts[i] = usableCount(i, limit);
+        }
+    }
+    
+    /**
+     * @param coins - Change
+     * @throws IllegalArgumentException if any coin count is negative
+     */
+    static void checkCounts(Change coins) {
+        if(coins.getNumQuarters() < 0 || coins.getNumDimes() < 0 
+                || coins.getNumNickels() < 0 || coins.getNumPennies() < 0) {
+            throw new IllegalArgumentException(
+                    "Coin counts cannot be negative.");
+        }
+    }
+    
+    /**
+     * @return true if the table reaches target and was built from the same 
+     *         usable counts as the hopper holds now
+     */
+    private boolean isTableValid(int target) {
+        if(tableLimit < target) {
+            return false;
+        }
+        for(int i = 0; i < COINS.length; i++) {
+            if(usableCount(i, tableLimit) != tableCounts[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * @return the number of coins of COINS[i] that can go into an amount up 
+     *         to limit
+     */
+    private int usableCount(int i, int limit) {
+        return Math.min(counts[i], limit / COINS[i].getCents());
+    }
+    
+    private long totalCents() {
+        long total = 0;
+        for(int i = 0; i < COINS.length; i++) {
+            total += (long) counts[i] * COINS[i].getCents();
+        }
+        return total;
+    }
+    
+}
@@ -0,0 +1,20 @@
+package com.sblinn.vendingmachine.service;
+
+/**
+ * Exception thrown when the user tries to purchase an item but the coins left 
+ * in the machine's hopper cannot make the change due. It is a kind of 
+ * NoItemInventoryException because, like an empty slot, the machine is unable 
+ * to vend and the sale is refused before any stock is taken.
+ * 
+ * @author sarablinn
+ */
+public class ExactChangeUnavailableException extends NoItemInventoryException {
+    
+    public ExactChangeUnavailableException(String message) {
+        super(message);
+    }
+
+    public ExactChangeUnavailableException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,128 @@
+
+package com.sblinn.vendingmachine.service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Outcome of a bulk inventory import: how many rows were read, imported and
+ * rejected, and how fast. Only the first MAX_REPORTED duplicate location IDs
+ * and rejection reasons are kept, so the report stays small however many
+ * rows are bad.
+ *
+ * @author sarablinn
+ */
+public class ImportReport {
+
+    public static final int MAX_REPORTED = 100;
+
+    private long rowsRead;
+    private long importedCount;
+    private long replacedCount;
+    private long invalidCount;
+    private long duplicateCount;
+    private long elapsedNanos;
+    private final List<String> duplicateLocationIDs = new ArrayList<>();
+    private final List<String> rejections = new ArrayList<>();
+
+
+    void rowRead() {
+        rowsRead++;
+    }
+
+    void imported(boolean replacedExisting) {
+        importedCount++;
+        if(replacedExisting) {
+            replacedCount++;
+        }
+    }
+
+    void invalid(long lineNumber, String reason) {
+        invalidCount++;
+        if(rejections.size() < MAX_REPORTED) {
+            rejections.add("line " + lineNumber + ": " + reason);
+        }
+    }
+
+    void duplicate(long lineNumber, String locationID) {
+        duplicateCount++;
+        if(duplicateLocationIDs.size() < MAX_REPORTED) {
+            duplicateLocationIDs.add(locationID);
+            rejections.add("line " + lineNumber + ": duplicate location ID "
+                    + locationID + ".");
+        }
+    }
+
+    void setElapsedNanos(long elapsedNanos) {
+        this.elapsedNanos = elapsedNanos;
+    }
+
+
+    public long getRowsRead() {
+        return rowsRead;
+    }
+
+    /**
+     * @return number of items written to the inventory
+     */
+    public long getImportedCount() {
+        return importedCount;
+    }
+
+    /**
+     * @return number of imported items that replaced an item already in
+     *         the inventory
+     */
+    public long getReplacedCount() {
+        return replacedCount;
+    }
+
+    /**
+     * @return number of rows that were malformed or failed validation
+     */
+    public long getInvalidCount() {
+        return invalidCount;
+    }
+
+    /**
+     * @return number of rows whose location ID was already used by an
+     *         earlier row of the same import
+     */
+    public long getDuplicateCount() {
+        return duplicateCount;
+    }
+
+    public List<String> getDuplicateLocationIDs() {
+        return Collections.unmodifiableList(duplicateLocationIDs);
+    }
+
+    /**
+     * @return "line N: reason" for the first rejected rows
+     */
+    public List<String> getRejections() {
+        return Collections.unmodifiableList(rejections);
+    }
+
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    public double getRowsPerSecond() {
+        return elapsedNanos == 0
+                ? 0 : rowsRead * (double) TimeUnit.SECONDS.toNanos(1)
+                        / elapsedNanos;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Read %d rows, imported %d (%d replaced), "
+                + "rejected %d invalid and %d duplicate in %d ms "
+                + "(%.0f rows/s).",
+                rowsRead, importedCount, replacedCount, invalidCount,
+                duplicateCount, TimeUnit.NANOSECONDS.toMillis(elapsedNanos),
+                getRowsPerSecond());
+    }
+
+}
@@ -0,0 +1,103 @@
+package com.sblinn.vendingmachine.service;
+
+import com.sblinn.vendingmachine.dao.PersistenceException;
+import com.sblinn.vendingmachine.metrics.LatencyMetrics;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Durations and outcome counts of one service layer operation. Every call is
+ * counted once, as a success or under the exception it threw. 
+ * ExactChangeUnavailableException is counted on its own, not as 
+ * NoItemInventoryException.
+ * 
+ * @author sarablinn
+ */
+public class OperationMetrics extends LatencyMetrics 
+        implements OperationMetricsMBean {
+    
+    private final LongAdder successCount = new LongAdder();
+    private final LongAdder insufficientFundsCount = new LongAdder();
+    private final LongAdder noItemInventoryCount = new LongAdder();
+    private final LongAdder exactChangeUnavailableCount = new LongAdder();
+    private final LongAdder invalidDataCount = new LongAdder();
+    private final LongAdder duplicateLocationIDCount = new LongAdder();
+    private final LongAdder persistenceErrorCount = new LongAdder();
+    
+    
+    /**
+     * @param startNanos - System.nanoTime() when the call started
+     */
+    public void recordSuccess(long startNanos) {
+        record(System.nanoTime() - startNanos);
+        successCount.increment();
+    }
+    
+    /**
+     * @param startNanos - System.nanoTime() when the call started
+     * @param failure - exception the call threw
+     */
+    public void recordFailure(long startNanos, Exception failure) {
+        record(System.nanoTime() - startNanos);
+        if(failure instanceof InsufficientFundsException) {
+            insufficientFundsCount.increment();
+        } else if(failure instanceof ExactChangeUnavailableException) {
+            exactChangeUnavailableCount.increment();
+        } else if(failure instanceof NoItemInventoryException) {
+            noItemInventoryCount.increment();
+        } else if(failure instanceof InvalidDataException) {
+            invalidDataCount.increment();
+        } else if(failure instanceof DuplicateLocationIDException) {
+            duplicateLocationIDCount.increment();
+        } else if(failure instanceof PersistenceException) {
+            persistenceErrorCount.increment();
+        }
+    }
+    
+    @Override
+    public long getSuccessCount() {
+        return successCount.sum();
+    }
+
+    @Override
+    public long getInsufficientFundsCount() {
+        return insufficientFundsCount.sum();
+    }
+
+    @Override
+    public long getNoItemInventoryCount() {
+        return noItemInventoryCount.sum();
+    }
+
+    @Override
+    public long getExactChangeUnavailableCount() {
+        return exactChangeUnavailableCount.sum();
+    }
+
+    @Override
+    public long getInvalidDataCount() {
+        return invalidDataCount.sum();
+    }
+
+    @Override
+    public long getDuplicateLocationIDCount() {
+        return duplicateLocationIDCount.sum();
+    }
+
+    @Override
+    public long getPersistenceErrorCount() {
+        return persistenceErrorCount.sum();
+    }
+
+    @Override
+    public void reset() {
+        super.reset();
+        successCount.reset();
+        insufficientFundsCount.reset();
+        noItemInventoryCount.reset();
+        exactChangeUnavailableCount.reset();
+        invalidDataCount.reset();
+        duplicateLocationIDCount.reset();
+        persistenceErrorCount.reset();
+    }
+    
+}
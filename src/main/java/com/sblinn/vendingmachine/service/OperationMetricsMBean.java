@@ -0,0 +1,25 @@
+package com.sblinn.vendingmachine.service;
+
+import com.sblinn.vendingmachine.metrics.LatencyMetricsMBean;
+
+/**
+ * JMX view of an OperationMetrics: durations plus how the calls ended.
+ * 
+ * @author sarablinn
+ */
+public interface OperationMetricsMBean extends LatencyMetricsMBean {
+    
+    long getSuccessCount();
+    
+    long getInsufficientFundsCount();
+    
+    long getNoItemInventoryCount();
+    
+    long getExactChangeUnavailableCount();
+    
+    long getInvalidDataCount();
+    
+    long getDuplicateLocationIDCount();
+    
+    long getPersistenceErrorCount();
+}
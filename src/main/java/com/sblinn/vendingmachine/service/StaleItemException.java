@@ -0,0 +1,21 @@
+package com.sblinn.vendingmachine.service;
+
+/**
+ * Exception thrown when an item is updated or deleted but the slot was 
+ * changed after the item was read, e.g. by a sale or another admin. It is a 
+ * kind of InvalidDataException because the edit was made against data that 
+ * is no longer current; reading the item again and redoing the edit will 
+ * work.
+ * 
+ * @author sarablinn
+ */
+public class StaleItemException extends InvalidDataException {
+    
+    public StaleItemException(String message) {
+        super(message);
+    }
+
+    public StaleItemException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
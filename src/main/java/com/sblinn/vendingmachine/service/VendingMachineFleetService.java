@@ -0,0 +1,94 @@
+
+package com.sblinn.vendingmachine.service;
+
+import com.sblinn.vendingmachine.dao.PersistenceException;
+import com.sblinn.vendingmachine.dao.VendingMachineAuditDao;
+import com.sblinn.vendingmachine.dao.VendingMachineFleetDao;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Routes service calls for a fleet of machines. forMachine returns the one
+ * VendingMachineServiceLayer of a machine, working on that machine's
+ * inventory in the VendingMachineFleetDao, so its slot locks guard every
+ * sale made on the machine. All machines share one audit log; each entry is
+ * prefixed with its machine ID.
+ *
+ * A machine's service is small (a few slot locks) and is kept for the life
+ * of the fleet; it is the inventories that are loaded and evicted by the
+ * fleet DAO. Fleet machines have no coin hopper, change is worked out from
+ * the amount due.
+ *
+ * @author sarablinn
+ */
+public class VendingMachineFleetService {
+
+    private static final int MACHINE_LOCK_STRIPES = 8;
+
+    private final VendingMachineFleetDao fleetDao;
+    private final VendingMachineAuditDao auditDao;
+    private final Map<String, VendingMachineServiceLayer> machineServices =
+            new ConcurrentHashMap<>();
+
+
+    public VendingMachineFleetService(VendingMachineFleetDao fleetDao,
+            VendingMachineAuditDao auditDao) {
+        this.fleetDao = fleetDao;
+        this.auditDao = auditDao;
+    }
+
+
+    /**
+     * @param machineID - letters, digits, '_' and '-', case insensitive
+     * @return the machine's VendingMachineServiceLayer
+     * @throws IllegalArgumentException if the machine ID is not valid
+     */
+    public VendingMachineServiceLayer forMachine(String machineID) {
+        if(machineID == null) {
+            throw new IllegalArgumentException("Invalid machine ID: null");
+        }
+        // only valid IDs are cached, so a hit needs no further checks
+        String id = machineID.toUpperCase();
+        VendingMachineServiceLayer service = machineServices.get(id);
+        if(service != null) {
+            return service;
+        }
+        // validate before caching, so bad IDs don't fill the map
+        fleetDao.forMachine(machineID);
+        return machineServices.computeIfAbsent(id,
+                (key) -> new VendingMachineServiceLayerImpl(
+                        fleetDao.forMachine(key),
+                        new MachineAuditDao(key),
+                        MACHINE_LOCK_STRIPES));
+    }
+
+
+    /**
+     * Prefixes a machine's audit entries with its machine ID.
+     */
+    private class MachineAuditDao implements VendingMachineAuditDao {
+
+        private final String prefix;
+
+
+        MachineAuditDao(String machineID) {
+            this.prefix = "[" + machineID + "] ";
+        }
+
+        @Override
+        public void writeAuditEntry(String entry) throws PersistenceException {
+            auditDao.writeAuditEntry(prefix + entry);
+        }
+
+        @Override
+        public void writeAuditEntries(List<String> entries)
+                throws PersistenceException {
+            auditDao.writeAuditEntries(entries.stream()
+                    .map((entry) -> prefix + entry)
+                    .collect(Collectors.toList()));
+        }
+    }
+
+}
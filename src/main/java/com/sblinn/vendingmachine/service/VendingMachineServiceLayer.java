@@ -1,11 +1,19 @@
 
 package com.sblinn.vendingmachine.service;
 
+import com.sblinn.vendingmachine.dao.InventoryRowFormat;
 import com.sblinn.vendingmachine.dao.PersistenceException;
+import com.sblinn.vendingmachine.dao.VendingMachineDao;
 import com.sblinn.vendingmachine.dto.Change;
+import com.sblinn.vendingmachine.dto.InventorySnapshot;
 import com.sblinn.vendingmachine.dto.Item;
+import com.sblinn.vendingmachine.dto.Money;
+import com.sblinn.vendingmachine.dto.SaleRequest;
+import com.sblinn.vendingmachine.dto.SaleResult;
 import java.math.BigDecimal;
 import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 /**
  *
@@ -13,6 +21,9 @@ import java.util.List;
  */
 public interface VendingMachineServiceLayer {
     
+    // returned by getInventoryVersion when the inventory is not versioned
+    long NO_VERSION = VendingMachineDao.NO_VERSION;
+    
     void createItem(Item item) throws 
             PersistenceException, 
             InvalidDataException, 
@@ -24,6 +35,16 @@ public interface VendingMachineServiceLayer {
     
     List<Item> getAllItems() throws PersistenceException;
     
+    int getEmptySlotCount() throws PersistenceException;
+    
+    boolean hasItemsForSale() throws PersistenceException;
+    
+    List<Item> getItemsByRow(String rowPrefix) throws PersistenceException;
+    
+    long getInventoryVersion() throws PersistenceException;
+    
+    InventorySnapshot getInventorySnapshot() throws PersistenceException;
+    
     Item updateItem(String locationID, Item updatedItem) throws 
             PersistenceException,
             InvalidDataException;
@@ -32,10 +53,27 @@ public interface VendingMachineServiceLayer {
             PersistenceException,
             InvalidDataException;
     
+    void insertMoney(Change coins);
+    
+    Change sellItem(String locationID, Money remBalance) throws
+            PersistenceException,
+            NoItemInventoryException,
+            InsufficientFundsException,
+            InvalidDataException;
+    
     Change sellItem(String locationID, BigDecimal remBalance) throws
             PersistenceException,
             NoItemInventoryException,
             InsufficientFundsException,
             InvalidDataException;
     
+    List<SaleResult> sellItems(List<SaleRequest> saleRequests) throws
+            PersistenceException;
+    
+    ImportReport importItems(Stream<String> rows, InventoryRowFormat format) 
+            throws PersistenceException;
+    
+    long exportItems(InventoryRowFormat format, Consumer<String> rows) 
+            throws PersistenceException;
+    
 }
@@ -1,30 +1,140 @@
 
 package com.sblinn.vendingmachine.service;
 
+import com.sblinn.vendingmachine.dao.InventoryRowFormat;
 import com.sblinn.vendingmachine.dao.PersistenceException;
 import com.sblinn.vendingmachine.dao.VendingMachineAuditDao;
 import com.sblinn.vendingmachine.dao.VendingMachineDao;
+import com.sblinn.vendingmachine.dao.VendingMachineDaoFileImpl;
 import com.sblinn.vendingmachine.dto.Change;
+import com.sblinn.vendingmachine.dto.InventorySnapshot;
 import com.sblinn.vendingmachine.dto.Item;
+import com.sblinn.vendingmachine.dto.Money;
+import com.sblinn.vendingmachine.dto.SaleRequest;
+import com.sblinn.vendingmachine.dto.SaleResult;
+import com.sblinn.vendingmachine.jfr.SaleEvent;
 import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
+ * Service layer shared by every session of the machine. Changes to a slot 
+ * (create, update, delete and sale) hold that slot's lock stripe, so two 
+ * buyers can never both get the last unit, while changes to slots on 
+ * different stripes never wait for each other.
+ * 
+ * The slot locks only order this service's own changes. Updates, deletes and 
+ * sales are also written with the DAO's compareAnd methods against the 
+ * version of the item they read, so a change made behind the service's back 
+ * (another process editing the inventory file, an import) is never silently 
+ * overwritten: a sale reads the item again and retries, and an edit fails 
+ * with a StaleItemException.
+ * 
+ * When given a CoinHopper, inserted coins are deposited into it and change is 
+ * dispensed from it, and a sale is refused if the hopper cannot make the 
+ * change. Without one, change is made as if coins never run out.
+ * 
+ * Every create, update, delete and sale is timed and its outcome counted in 
+ * an OperationMetrics, which the Spring context publishes over JMX.
  *
  * @author sarablinn
  */
 public class VendingMachineServiceLayerImpl implements VendingMachineServiceLayer {
 
+    public static final int DEFAULT_LOCK_STRIPES = 64;
+    // sales of a slot that keeps changing under them give up after this many
+    private static final int MAX_COMMIT_ATTEMPTS = 3;
+    
     private VendingMachineDao dao;
     private VendingMachineAuditDao auditDao;
+    private final ReentrantLock[] slotLocks;
+    private final CoinHopper coinHopper;
+    
+    private OperationMetrics createItemMetrics = new OperationMetrics();
+    private OperationMetrics updateItemMetrics = new OperationMetrics();
+    private OperationMetrics deleteItemMetrics = new OperationMetrics();
+    private OperationMetrics sellItemMetrics = new OperationMetrics();
     
     
     public VendingMachineServiceLayerImpl(VendingMachineDao dao, 
             VendingMachineAuditDao auditDao) {
         
+        this(dao, auditDao, DEFAULT_LOCK_STRIPES, null);
+    }
+    
+    /**
+     * 
+     * @param dao - VendingMachineDao
+     * @param auditDao - VendingMachineAuditDao
+     * @param lockStripes - number of slot locks, rounded up to a power of two
+     */
+    public VendingMachineServiceLayerImpl(VendingMachineDao dao, 
+            VendingMachineAuditDao auditDao, int lockStripes) {
+        
+        this(dao, auditDao, lockStripes, null);
+    }
+    
+    /**
+     * 
+     * @param dao - VendingMachineDao
+     * @param auditDao - VendingMachineAuditDao
+     * @param coinHopper - coins the machine makes change from
+     */
+    public VendingMachineServiceLayerImpl(VendingMachineDao dao, 
+            VendingMachineAuditDao auditDao, CoinHopper coinHopper) {
+        
+        this(dao, auditDao, DEFAULT_LOCK_STRIPES, coinHopper);
+    }
+    
+    /**
+     * 
+     * @param dao - VendingMachineDao
+     * @param auditDao - VendingMachineAuditDao
+     * @param lockStripes - number of slot locks, rounded up to a power of two
+     * @param coinHopper - coins the machine makes change from, or null for 
+     *                     unlimited coins
+     */
+    public VendingMachineServiceLayerImpl(VendingMachineDao dao, 
+            VendingMachineAuditDao auditDao, int lockStripes, 
+            CoinHopper coinHopper) {
+        
         this.dao = dao;
         this.auditDao = auditDao;
+        this.coinHopper = coinHopper;
+        
+        int stripes = 1;
+        while(stripes < lockStripes) {
+            stripes <<= 1;
+        }
+        this.slotLocks = new ReentrantLock[stripes];
+        for(int i = 0; i < stripes; i++) {
+            slotLocks[i] = new ReentrantLock();
+        }
+    }
+    
+    
+    public void setCreateItemMetrics(OperationMetrics createItemMetrics) {
+        this.createItemMetrics = createItemMetrics;
+    }
+
+    public void setUpdateItemMetrics(OperationMetrics updateItemMetrics) {
+        this.updateItemMetrics = updateItemMetrics;
+    }
+
+    public void setDeleteItemMetrics(OperationMetrics deleteItemMetrics) {
+        this.deleteItemMetrics = deleteItemMetrics;
+    }
+
+    public void setSellItemMetrics(OperationMetrics sellItemMetrics) {
+        this.sellItemMetrics = sellItemMetrics;
     }
     
     
@@ -34,19 +144,16 @@ public class VendingMachineServiceLayerImpl implements VendingMachineServiceLaye
             InvalidDataException, 
             DuplicateLocationIDException {
         
-        // dao will return null if the that locationID hasn't been used yet
-        if(dao.getItem(item.getLocationID()) != null) {
-            throw new DuplicateLocationIDException(
-                "ERROR: Duplicate location ID: " + item.getLocationID() +
-                        ". Unable to create item in that location.");
+        long start = System.nanoTime();
+        try {
+            doCreateItem(item);
+            createItemMetrics.recordSuccess(start);
+        } catch(Exception e) {
+            createItemMetrics.recordFailure(start, e);
+            throw e;
         }
-        // validate the item's data, method will throw InvalidDataException
-        validateRequiredItemData(item);
-        dao.createItem(item.getLocationID(), item);
-        auditDao.writeAuditEntry("Item " + item.getLocationID() + " : " +
-                item.getName() + " CREATED.");     
     }
-
+    
     @Override
     public Item getItem(String locationID) throws 
             PersistenceException,
@@ -66,70 +173,158 @@ public class VendingMachineServiceLayerImpl implements VendingMachineServiceLaye
 
     @Override
     public List<Item> getAllItems() throws PersistenceException {
-        // add filter stream for out of stock items.
-        List<Item> itemList = dao.getAllItems();
-        List<Item> filteredItemList = itemList.stream()
+        // out of stock items are left out by the DAO's in-stock index
+        return dao.getInStockItems();
+    }
+    
+    /**
+     * @return number of slots whose item is sold out
+     * @throws PersistenceException 
+     */
+    @Override
+    public int getEmptySlotCount() throws PersistenceException {
+        return dao.getEmptySlotCount();
+    }
+    
+    /**
+     * @return true if anything is left to sell
+     * @throws PersistenceException 
+     */
+    @Override
+    public boolean hasItemsForSale() throws PersistenceException {
+        return dao.hasInStockItems();
+    }
+    
+    /**
+     * @return the DAO's inventory version, see 
+     *         VendingMachineDao.getInventoryVersion
+     * @throws PersistenceException 
+     */
+    @Override
+    public long getInventoryVersion() throws PersistenceException {
+        return dao.getInventoryVersion();
+    }
+    
+    /**
+     * Returns the whole inventory, sold out items included, as it was at one 
+     * version. Taking it does not hold up sales, and sales made afterwards 
+     * do not change it.
+     * 
+     * @return InventorySnapshot
+     * @throws PersistenceException 
+     */
+    @Override
+    public InventorySnapshot getInventorySnapshot() 
+            throws PersistenceException {
+        return dao.getInventorySnapshot();
+    }
+    
+    /**
+     * Returns the in stock items of one shelf, e.g. "B" for B1, B2, ..., 
+     * sorted by location ID.
+     * 
+     * @param rowPrefix - String, case insensitive
+     * @return List of Items
+     * @throws PersistenceException 
+     */
+    @Override
+    public List<Item> getItemsByRow(String rowPrefix) 
+            throws PersistenceException {
+        return dao.getItemsByRow(rowPrefix).stream()
                 .filter((i) -> i.getNumAvailable() != 0)
                 .collect(Collectors.toList());
-        return filteredItemList;
     }
-
+    
     @Override
     public Item updateItem(String locationID, Item updatedItem) throws 
             PersistenceException,
             InvalidDataException {
         
-        // check if an item at that locationID exists
-        if(dao.getItem(locationID) == null) {
-            throw new InvalidDataException (
-                "ERROR: Invalid location ID: " + locationID 
-                + ". No existing item to update at " + locationID + ".");
+        long start = System.nanoTime();
+        try {
+            Item item = doUpdateItem(locationID, updatedItem);
+            updateItemMetrics.recordSuccess(start);
+            return item;
+        } catch(Exception e) {
+            updateItemMetrics.recordFailure(start, e);
+            throw e;
         }
-        
-        Item oldItem = dao.getItem(locationID);
-        // check if the updatedItem's data is valid
-        validateRequiredItemData(updatedItem);
-        dao.updateItem(locationID, updatedItem);
-        
-        String oldItemInfo = String.format("[%s (%s in stock) : $%s]",
-                    oldItem.getName(),
-                    oldItem.getNumAvailable(),
-                    oldItem.getPrice() );
-        String updatedItemInfo = String.format("[%s (%s in stock) : $%s]",
-                    updatedItem.getName(),
-                    updatedItem.getNumAvailable(),
-                    updatedItem.getPrice() );
-        auditDao.writeAuditEntry("Item at " + locationID + ": " + oldItemInfo
-                + " UPDATED to: " + updatedItemInfo); 
-        
-        return updatedItem;
     }
-
+    
     @Override
     public Item deleteItem(String locationID) throws 
             PersistenceException,
             InvalidDataException {
-        // check if an item at that locationID exists
-        if(dao.getItem(locationID) == null) {
-            throw new InvalidDataException (
-                "ERROR: Invalid location ID: " + locationID 
-                + ". No existing item to update at " + locationID + ".");
+        
+        long start = System.nanoTime();
+        try {
+            Item item = doDeleteItem(locationID);
+            deleteItemMetrics.recordSuccess(start);
+            return item;
+        } catch(Exception e) {
+            deleteItemMetrics.recordFailure(start, e);
+            throw e;
+        }
+    }
+    
+    /**
+     * Deposits the buyer's inserted coins into the coin hopper.
+     * 
+     * @param coins - Change inserted by the buyer
+     * @throws IllegalArgumentException if any coin count is negative
+     */
+    @Override
+    public void insertMoney(Change coins) {
+        CoinHopper.checkCounts(coins);
+        if(coinHopper != null) {
+            coinHopper.deposit(coins);
         }
-        Item deletedItem = dao.deleteItem(locationID);
-        auditDao.writeAuditEntry("Item " + deletedItem.getLocationID() + " : " +
-                deletedItem.getName() + " DELETED.");
-        return deletedItem;
     }
     
-   
     /**
-     * Checks that item is available and that buyer has paid enough, then
-     * updates the Item quantity available and returns a Change object.
+     * Checks that item is available, that buyer has paid enough and that the
+     * change can be made, then updates the Item quantity available and 
+     * returns a Change object. 
      * 
      * @param locationID - String
-     * @param remMoney - BigDecimal representing monetary value
+     * @param remMoney - Money the buyer has inserted
      * @return Change 
      * @throws PersistenceException
+     * @throws NoItemInventoryException - ExactChangeUnavailableException if 
+     *                                    the coin hopper cannot make change
+     * @throws InsufficientFundsException
+     * @throws InvalidDataException 
+     */
+    @Override
+    public Change sellItem(String locationID, Money remMoney) throws 
+            PersistenceException,
+            NoItemInventoryException,
+            InsufficientFundsException,
+            InvalidDataException {
+        
+        SaleEvent event = new SaleEvent();
+        event.begin();
+        long start = System.nanoTime();
+        try {
+            Change change = doSellItem(locationID, remMoney);
+            sellItemMetrics.recordSuccess(start);
+            commitSaleEvent(event, locationID, remMoney, change, "SUCCESS");
+            return change;
+        } catch(Exception e) {
+            sellItemMetrics.recordFailure(start, e);
+            commitSaleEvent(event, locationID, remMoney, null, 
+                    e.getClass().getSimpleName());
+            throw e;
+        }
+    }
+    
+    /**
+     * Sells an item for a dollar amount, e.g. 3.25. 
+     * 
+     * @param locationID - String
+     * @param remMoney - BigDecimal representing monetary value
+     * @return Change
+     * @throws PersistenceException
      * @throws NoItemInventoryException
      * @throws InsufficientFundsException
      * @throws InvalidDataException 
@@ -141,44 +336,563 @@ public class VendingMachineServiceLayerImpl implements VendingMachineServiceLaye
             InsufficientFundsException,
             InvalidDataException {
         
+        return sellItem(locationID, Money.of(remMoney));
+    }
+    
+    /**
+     * Sells a batch of orders, e.g. sales a kiosk queued while offline. 
+     * Orders are checked and applied in order against the stock left by the 
+     * orders before them. A refused order gets a failed SaleResult and the 
+     * rest of the batch carries on. The sold items are persisted with one 
+     * DAO call and the sales are audited with one batch write.
+     * 
+     * The slots in the batch are locked for the whole batch, in stripe order, 
+     * so batches and single sales never deadlock. The batch is committed with 
+     * the DAO's compareAndUpdateItems, so it is only saved if every slot is 
+     * still at the version that was checked; if one changed, the coins go 
+     * back and the batch starts over from fresh reads. Sales are counted in 
+     * the metrics once the batch is saved.
+     * 
+     * @param saleRequests - List of SaleRequests
+     * @return List of SaleResults, one per request in the same order
+     * @throws PersistenceException if the sold items could not be saved, in 
+     *         which case no order in the batch is sold
+     */
+    @Override
+    public List<SaleResult> sellItems(List<SaleRequest> saleRequests) throws 
+            PersistenceException {
+        
+        List<SaleResult> results = null;
+        List<String> auditEntries = null;
+        long[] starts = new long[saleRequests.size()];
+        
+        List<ReentrantLock> batchLocks = batchLocks(saleRequests);
+        batchLocks.forEach(ReentrantLock::lock);
+        try {
+            boolean committed = false;
+            for(int attempt = 1; !committed; attempt++) {
+                results = new ArrayList<>(saleRequests.size());
+                auditEntries = new ArrayList<>();
+                committed = trySellBatch(saleRequests, starts, results, 
+                        auditEntries);
+                if(!committed) {
+                    refundBatch(results);
+                    if(attempt == MAX_COMMIT_ATTEMPTS) {
+                        PersistenceException e = new PersistenceException(
+                                "Unable to sell the batch, its items kept "
+                                + "changing during the sale.");
+                        recordBatchFailure(starts, e);
+                        throw e;
+                    }
+                }
+            }
+        } finally {
+            for(int i = batchLocks.size() - 1; i >= 0; i--) {
+                batchLocks.get(i).unlock();
+            }
+        }
+        
+        for(int i = 0; i < results.size(); i++) {
+            SaleResult result = results.get(i);
+            if(result.isSuccessful()) {
+                sellItemMetrics.recordSuccess(starts[i]);
+            } else {
+                sellItemMetrics.recordFailure(starts[i], result.getFailure());
+            }
+        }
+        if(!auditEntries.isEmpty()) {
+            auditDao.writeAuditEntries(auditEntries);
+        }
+        return results;
+    }
+    
+    /**
+     * Checks and applies every order of a batch against fresh reads, then 
+     * commits the sold items if their slots are still at the versions read. 
+     * Callers hold the batch's locks.
+     * 
+     * @param saleRequests - List of SaleRequests
+     * @param starts - receives the start time of each order
+     * @param results - receives one SaleResult per order
+     * @param auditEntries - receives one entry per sale
+     * @return true if the batch was saved, false if a slot changed, in 
+     *         which case the coins of the successful results are still out
+     * @throws PersistenceException if the sold items could not be saved, 
+     *         the coins have then been put back
+     */
+    private boolean trySellBatch(List<SaleRequest> saleRequests, long[] starts,
+            List<SaleResult> results, List<String> auditEntries) 
+            throws PersistenceException {
+        
+        // the batch's own copies of the items it sold, saved at the end
+        Map<String, Item> soldItems = new LinkedHashMap<>();
+        // version each sold slot was read at
+        Map<String, Long> expectedVersions = new HashMap<>();
+        Arrays.fill(starts, System.nanoTime());
+        
+        try {
+            for(int i = 0; i < saleRequests.size(); i++) {
+                SaleRequest request = saleRequests.get(i);
+                starts[i] = System.nanoTime();
+                try {
+                    // a slot sold earlier in the batch is read from the 
+                    // batch, the DAO does not have the sale yet
+                    Item soldEarlier = request.getLocationID() == null 
+                            ? null : soldItems.get(
+                                    request.getLocationID().toUpperCase());
+                    Item itemForSale = soldEarlier == null
+                            ? checkSale(request.getLocationID(), 
+                                    request.getPayment())
+                            : checkSale(request.getLocationID(), soldEarlier,
+                                    request.getPayment());
+                    Change change = takeChange(request.getPayment()
+                            .minus(itemForSale.getPrice()));
+                    
+                    String locationID = 
+                            itemForSale.getLocationID().toUpperCase();
+                    expectedVersions.putIfAbsent(locationID, 
+                            itemForSale.getVersion());
+                    Item soldItem = itemForSale.withNumAvailable(
+                            itemForSale.getNumAvailable() - 1);
+                    soldItems.put(locationID, soldItem);
+                    auditEntries.add(saleEntry(soldItem));
+                    
+                    results.add(SaleResult.success(request, change));
+                } catch(InvalidDataException 
+                        | NoItemInventoryException
+                        | InsufficientFundsException e) {
+                    results.add(SaleResult.failure(request, e));
+                }
+            }
+            
+            return soldItems.isEmpty() || dao.compareAndUpdateItems(
+                    new ArrayList<>(soldItems.values()), expectedVersions);
+        } catch(PersistenceException e) {
+            // nothing was sold, the DAO kept its items, put the coins back
+            refundBatch(results);
+            recordBatchFailure(starts, e);
+            throw e;
+        }
+    }
+    
+    private void refundBatch(List<SaleResult> results) {
+        results.stream()
+                .filter(SaleResult::isSuccessful)
+                .forEach((r) -> insertMoney(r.getChange()));
+    }
+    
+    private void recordBatchFailure(long[] starts, Exception failure) {
+        for(long start : starts) {
+            sellItemMetrics.recordFailure(start, failure);
+        }
+    }
+    
+    /**
+     * Imports a stream of inventory rows, e.g. a new planogram. Each row is 
+     * parsed and checked with the same rules as createItem; malformed and 
+     * invalid rows, and rows repeating a location ID already seen in the 
+     * stream, are rejected and reported. Items already in the inventory are 
+     * replaced. The accepted items are persisted with one DAO call and 
+     * audited with one entry.
+     * 
+     * Rows are read one at a time, so only the accepted items (which the 
+     * inventory has to hold anyway) and a bounded sample of rejections are 
+     * kept in memory.
+     * 
+     * @param rows - lines of the file, e.g. from Files.lines
+     * @param format - InventoryRowFormat of the lines
+     * @return ImportReport
+     * @throws PersistenceException if the items could not be saved, in 
+     *         which case nothing is imported
+     */
+    @Override
+    public ImportReport importItems(Stream<String> rows, 
+            InventoryRowFormat format) throws PersistenceException {
+        
+        long start = System.nanoTime();
+        ImportReport report = new ImportReport();
+        Map<String, Item> importedItems = new LinkedHashMap<>();
+        long[] lineNumber = {0};
+        
+        rows.forEachOrdered((row) -> {
+            lineNumber[0]++;
+            if(row.trim().isEmpty() 
+                    || (lineNumber[0] == 1 && format.isHeader(row))) {
+                return;
+            }
+            report.rowRead();
+            try {
+                Item item = format.parseRow(row);
+                validateRequiredItemData(item);
+                if(importedItems.putIfAbsent(item.getLocationID(), item) 
+                        != null) {
+                    report.duplicate(lineNumber[0], item.getLocationID());
+                }
+            } catch(IllegalArgumentException | InvalidDataException e) {
+                report.invalid(lineNumber[0], e.getMessage());
+            }
+        });
+        
+        if(!importedItems.isEmpty()) {
+            // the import may touch any slot, so hold every stripe
+            for(ReentrantLock slotLock : slotLocks) {
+                slotLock.lock();
+            }
+            try {
+                // replace the items as they were read, or read them again
+                Map<String, Long> existingVersions = new HashMap<>();
+                for(int attempt = 1; ; attempt++) {
+                    existingVersions.clear();
+                    for(Item item : dao.getInventorySnapshot().getItems()) {
+                        existingVersions.put(
+                                item.getLocationID().toUpperCase(), 
+                                item.getVersion());
+                    }
+                    if(dao.compareAndUpdateItems(
+                            new ArrayList<>(importedItems.values()), 
+                            existingVersions)) {
+                        break;
+                    }
+                    if(attempt == MAX_COMMIT_ATTEMPTS) {
+                        throw new PersistenceException("Unable to import "
+                                + "items, the inventory kept changing "
+                                + "during the import.");
+                    }
+                }
+                for(String locationID : importedItems.keySet()) {
+                    report.imported(existingVersions.containsKey(
+                            locationID.toUpperCase()));
+                }
+            } finally {
+                for(int i = slotLocks.length - 1; i >= 0; i--) {
+                    slotLocks[i].unlock();
+                }
+            }
+            auditDao.writeAuditEntry(report.getImportedCount() 
+                    + " items IMPORTED (" + report.getReplacedCount() 
+                    + " replaced).");
+        }
+        
+        report.setElapsedNanos(System.nanoTime() - start);
+        return report;
+    }
+    
+    /**
+     * Hands every item in the inventory, sold out ones included, to rows as 
+     * one formatted line each, after the format's header if it has one.
+     * 
+     * @param format - InventoryRowFormat of the lines
+     * @param rows - receives each line, without a line separator
+     * @return number of items exported
+     * @throws PersistenceException 
+     */
+    @Override
+    public long exportItems(InventoryRowFormat format, Consumer<String> rows) 
+            throws PersistenceException {
+        if(format.header() != null) {
+            rows.accept(format.header());
+        }
+        long itemCount = 0;
+        // one snapshot, so the export is consistent while sales go on
+        for(Item item : dao.getInventorySnapshot().getItems()) {
+            rows.accept(format.formatRow(item));
+            itemCount++;
+        }
+        return itemCount;
+    }
+    
+    
+    private void doCreateItem(Item item) throws 
+            PersistenceException, 
+            InvalidDataException, 
+            DuplicateLocationIDException {
+        
+        ReentrantLock slotLock = slotLock(item.getLocationID());
+        slotLock.lock();
+        try {
+            // dao will return null if the that locationID hasn't been used yet
+            if(dao.getItem(item.getLocationID()) != null) {
+                throw new DuplicateLocationIDException(
+                    "ERROR: Duplicate location ID: " + item.getLocationID() +
+                            ". Unable to create item in that location.");
+            }
+            // validate the item's data, method will throw InvalidDataException
+            validateRequiredItemData(item);
+            dao.createItem(item.getLocationID(), item);
+        } finally {
+            slotLock.unlock();
+        }
+        auditDao.writeAuditEntry("Item " + item.getLocationID() + " : " +
+                item.getName() + " CREATED.");     
+    }
+    
+    private Item doUpdateItem(String locationID, Item updatedItem) throws 
+            PersistenceException,
+            InvalidDataException {
+        
+        Item oldItem;
+        Item storedItem;
+        ReentrantLock slotLock = slotLock(locationID);
+        slotLock.lock();
+        try {
+            // check if an item at that locationID exists
+            oldItem = dao.getItem(locationID);
+            if(oldItem == null) {
+                throw new InvalidDataException (
+                    "ERROR: Invalid location ID: " + locationID 
+                    + ". No existing item to update at " + locationID + ".");
+            }
+
+            // check if the updatedItem's data is valid
+            validateRequiredItemData(updatedItem);
+            // an item that was read from the inventory must still be current, 
+            // one built from scratch replaces the item read above
+            long expectedVersion = 
+                    updatedItem.getVersion() == Item.UNVERSIONED
+                    ? oldItem.getVersion() : updatedItem.getVersion();
+            storedItem = dao.compareAndUpdateItem(locationID, expectedVersion, 
+                    updatedItem);
+            if(storedItem == null) {
+                throw staleItem(locationID);
+            }
+        } finally {
+            slotLock.unlock();
+        }
+        
+        auditDao.writeAuditEntry("Item at " + locationID + ": " 
+                + itemInfo(oldItem) + " UPDATED to: " + itemInfo(storedItem)); 
+        
+        return storedItem;
+    }
+    
+    private Item doDeleteItem(String locationID) throws 
+            PersistenceException,
+            InvalidDataException {
+        Item deletedItem;
+        ReentrantLock slotLock = slotLock(locationID);
+        slotLock.lock();
+        try {
+            // check if an item at that locationID exists
+            Item currentItem = dao.getItem(locationID);
+            if(currentItem == null) {
+                throw new InvalidDataException (
+                    "ERROR: Invalid location ID: " + locationID 
+                    + ". No existing item to update at " + locationID + ".");
+            }
+            deletedItem = dao.compareAndDeleteItem(locationID, 
+                    currentItem.getVersion());
+            if(deletedItem == null) {
+                throw staleItem(locationID);
+            }
+        } finally {
+            slotLock.unlock();
+        }
+        auditDao.writeAuditEntry("Item " + deletedItem.getLocationID() + " : " +
+                deletedItem.getName() + " DELETED.");
+        return deletedItem;
+    }
+    
+    /**
+     * The sale behind sellItem(). The checks and the update happen under the 
+     * slot's lock, so concurrent sales of the same slot cannot oversell it. 
+     * The sale is committed with the DAO's commitSale, which takes one unit 
+     * off only if the slot is still at the version that was checked; if it 
+     * changed, the coins go back and the sale starts over from a fresh read. 
+     * Each sale is audited with one short SOLD entry.
+     */
+    private Change doSellItem(String locationID, Money remMoney) throws 
+            PersistenceException,
+            NoItemInventoryException,
+            InsufficientFundsException,
+            InvalidDataException {
+        
         Item itemForSale;
-        BigDecimal itemPrice;
+        Item soldItem = null;
+        Change change = null;
         
-        // Check if Item at locationID exists ( != null)
+        ReentrantLock slotLock = slotLock(locationID);
+        slotLock.lock();
+        try {
+            for(int attempt = 1; soldItem == null; attempt++) {
+                itemForSale = checkSale(locationID, remMoney);
+                change = takeChange(remMoney.minus(itemForSale.getPrice()));
+                
+                // the DAO's item is left as it was if the save fails
+                try {
+                    soldItem = dao.commitSale(locationID, 
+                            itemForSale.getVersion());
+                } catch(PersistenceException e) {
+                    insertMoney(change);
+                    throw e;
+                }
+                if(soldItem == null) {
+                    insertMoney(change);
+                    if(attempt == MAX_COMMIT_ATTEMPTS) {
+                        throw new PersistenceException("Unable to sell item "
+                                + "at " + locationID + ", it kept changing "
+                                + "during the sale.");
+                    }
+                    continue;
+                }
+                auditDao.writeAuditEntry(saleEntry(soldItem));
+            }
+        } finally {
+            slotLock.unlock();
+        }
+        
+        return change;
+    }
+    
+    /**
+     * Checks that the item at locationID exists, is in stock and that 
+     * remMoney pays for it. Callers hold the slot's lock.
+     * 
+     * @return Item for sale
+     */
+    private Item checkSale(String locationID, Money remMoney) throws 
+            PersistenceException,
+            NoItemInventoryException,
+            InsufficientFundsException,
+            InvalidDataException {
+        
+        Item itemForSale;
         try {
             itemForSale = dao.getItem(locationID);
-            itemPrice = itemForSale.getPrice();
         } catch (NullPointerException e) {
+            itemForSale = null;
+        }
+        return checkSale(locationID, itemForSale, remMoney);
+    }
+    
+    /**
+     * Checks that itemForSale, the item at locationID, exists, is in stock 
+     * and that remMoney pays for it.
+     * 
+     * @return itemForSale
+     */
+    private Item checkSale(String locationID, Item itemForSale, 
+            Money remMoney) throws 
+            NoItemInventoryException,
+            InsufficientFundsException,
+            InvalidDataException {
+        
+        // Check if Item at locationID exists ( != null)
+        if(itemForSale == null) {
             throw new InvalidDataException (
                     "ERROR: Invalid location ID: " + locationID 
                         + ". No item exists at that location.");
         }
-              
+        Money itemPrice = itemForSale.getPrice();
+
         // Check if Item at locationID has quantity available
         if(itemForSale.getNumAvailable() == 0) {
             throw new NoItemInventoryException("ERROR: Item OUT OF STOCK.");
         }
-        
+
         // Check if remMoney < item.getPrice()
-        if(remMoney.compareTo(itemPrice) < 0 ) {
+        if(remMoney.isLessThan(itemPrice)) {
             throw new InsufficientFundsException("ERROR: Insufficient Funds. "
                     + "Insert more money to purchase " 
                     + itemForSale.getName() + ".");
-        }  
-        
-        // update the item quantity
-        itemForSale.setNumAvailable(itemForSale.getNumAvailable() - 1);
-        updateItem(locationID, itemForSale);
+        }
         
-        // Create a Change object to calculate change and return it
-        Change change = new Change(remMoney.subtract(itemPrice));
+        return itemForSale;
+    }
+    
+    /**
+     * Takes the change out of the coin hopper, or works it out when there is 
+     * no hopper. Done before any stock is taken, so a sale the hopper cannot 
+     * make change for is refused.
+     */
+    private Change takeChange(Money changeDue) throws 
+            ExactChangeUnavailableException {
         
-        return change;
+        if(coinHopper == null) {
+            return new Change(changeDue);
+        }
+        return coinHopper.dispense(changeDue);
     }
     
+    private void commitSaleEvent(SaleEvent event, String locationID, 
+            Money remMoney, Change change, String outcome) {
+        event.end();
+        if(event.shouldCommit()) {
+            event.setLocationID(locationID);
+            event.setInsertedCents(remMoney.getCents());
+            event.setChangeCents(
+                    change == null ? 0 : change.getChangeValue().getCents());
+            event.setOutcome(outcome);
+            event.commit();
+        }
+    }
+    
+    private StaleItemException staleItem(String locationID) {
+        return new StaleItemException("ERROR: The item at " + locationID 
+                + " was changed by someone else. Read it again and retry.");
+    }
     
     /**
-     * Checks that all required Item data fields have been gathered. 
+     * Returns the lock stripe guarding a slot. Location IDs are matched 
+     * case-insensitively, like the DAO does.
+     * 
+     * @param locationID - String
+     * @return ReentrantLock for the slot
+     */
+    private ReentrantLock slotLock(String locationID) {
+        return slotLocks[stripeIndex(locationID)];
+    }
+    
+    private int stripeIndex(String locationID) {
+        int hash = locationID == null ? 0 : locationID.toUpperCase().hashCode();
+        // spread the high bits so similar IDs land on different stripes
+        hash ^= (hash >>> 16);
+        return hash & (slotLocks.length - 1);
+    }
+    
+    /**
+     * Returns the distinct lock stripes guarding a batch's slots, in stripe 
+     * order, which is the order they must be locked in.
+     * 
+     * @param saleRequests - List of SaleRequests
+     * @return List of ReentrantLocks
+     */
+    private List<ReentrantLock> batchLocks(List<SaleRequest> saleRequests) {
+        return saleRequests.stream()
+                .map((r) -> stripeIndex(r.getLocationID()))
+                .distinct()
+                .sorted()
+                .map((i) -> slotLocks[i])
+                .collect(Collectors.toList());
+    }
+    
+    /**
+     * Describes an item for the audit log.
+     * 
+     * @param item - Item
+     * @return String, e.g. [Twinkle Pies (5 in stock) : $2.50]
+     */
+    private String itemInfo(Item item) {
+        return String.format("[%s (%s in stock) : $%s]",
+                item.getName(),
+                item.getNumAvailable(),
+                item.getPrice());
+    }
+    
+    /**
+     * @return the audit entry of one sale, e.g. "Item A1 SOLD for $1.75, 
+     *         4 left."
+     */
+    private static String saleEntry(Item soldItem) {
+        return "Item " + soldItem.getLocationID() + " SOLD for $" 
+                + soldItem.getPrice() + ", " + soldItem.getNumAvailable() 
+                + " left.";
+    }
+    
+    /**
+     * Checks that all required Item data fields have been gathered, and that 
+     * the location ID and name can be stored: the inventory file is "::" 
+     * delimited and one item per line, and NDJSON rows can decode to line 
+     * breaks and tabs. 
      * 
      * @param item - Item
      * @throws InvalidDataException 
@@ -190,7 +904,27 @@ public class VendingMachineServiceLayerImpl implements VendingMachineServiceLaye
             
             throw new InvalidDataException(
                     "ERROR: Missing required Item fields [Name, Price].");
-        }     
+        }
+        if(!isStorable(item.getLocationID()) || !isStorable(item.getName())) {
+            throw new InvalidDataException("ERROR: Location ID and Name may "
+                    + "not contain \"" + VendingMachineDaoFileImpl.DELIMITER 
+                    + "\" or control characters.");
+        }
+    }
+    
+    private boolean isStorable(String field) {
+        if(field == null) {
+            return true;
+        }
+        if(field.contains(VendingMachineDaoFileImpl.DELIMITER)) {
+            return false;
+        }
+        for(int i = 0; i < field.length(); i++) {
+            if(Character.isISOControl(field.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
     }
     
 }
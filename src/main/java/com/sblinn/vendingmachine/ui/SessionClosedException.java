@@ -0,0 +1,19 @@
+package com.sblinn.vendingmachine.ui;
+
+/**
+ * Unchecked exception thrown by a UserIO when the user on the other end has
+ * gone away (e.g. a kiosk closed its connection), ending the session.
+ * 
+ * @author sarablinn
+ */
+public class SessionClosedException extends RuntimeException {
+    
+    public SessionClosedException(String message) {
+        super(message);
+    }
+    
+    public SessionClosedException(String message, Throwable cause) {
+        super(message, cause);
+    }
+    
+}
@@ -0,0 +1,117 @@
+package com.sblinn.vendingmachine.ui;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+
+
+/**
+ * UserIO for one networked kiosk session, speaking a simple line protocol.
+ * 
+ * Server to kiosk, one line each:
+ *     MSG text      - something to display
+ *     ASK prompt    - display the prompt and answer with one line
+ * Kiosk to server: one line of input after every ASK.
+ * 
+ * When the kiosk closes its side of the connection the next read throws 
+ * SessionClosedException, which ends the session's controller.
+ * 
+ * @author sarablinn
+ */
+public class UserIOSocketImpl implements UserIO {
+    
+    public static final String MESSAGE = "MSG ";
+    public static final String PROMPT = "ASK ";
+    
+    private final BufferedReader in;
+    private final PrintWriter out;
+    
+    
+    /**
+     * 
+     * @param in - lines from the kiosk
+     * @param out - lines to the kiosk
+     */
+    public UserIOSocketImpl(BufferedReader in, PrintWriter out) {
+        this.in = in;
+        this.out = out;
+    }
+    
+    
+    /**
+     * Sends a message to the kiosk, one MSG line per line of text.
+     *
+     * @param msg - String of information to display to the user.
+     */
+    @Override
+    public void print(String msg) {
+        for(String line : msg.split("\\R", -1)) {
+            out.print(MESSAGE);
+            out.print(line);
+            out.print('\n');
+        }
+        out.flush();
+    }
+
+    /**
+     * Sends a prompt to the kiosk and waits for its one line answer.
+     *
+     * @param msgPrompt - String explaining what information you want from the user.
+     * @return the answer to the message as string
+     */
+    @Override
+    public String readString(String msgPrompt) {
+        out.print(PROMPT);
+        out.print(msgPrompt);
+        out.print('\n');
+        out.flush();
+        
+        String answer;
+        try {
+            answer = in.readLine();
+        } catch(IOException e) {
+            throw new SessionClosedException("Kiosk connection failed.", e);
+        }
+        if(answer == null) {
+            throw new SessionClosedException("Kiosk closed the connection.");
+        }
+        return answer;
+    }
+
+    /**
+     * Re-prompts the kiosk until it answers with an integer.
+     *
+     * @param msgPrompt - String explaining what information you want from the user.
+     * @return the answer to the message as integer
+     */
+    @Override
+    public int readInt(String msgPrompt) {
+        while(true) {
+            try {
+                return Integer.parseInt(this.readString(msgPrompt).trim());
+            } catch(NumberFormatException e) {
+                this.print("Invalid input. Please try again.");
+            }
+        }
+    }
+
+    /**
+     * Re-prompts the kiosk until it answers with an integer within the 
+     * min/max range.
+     *
+     * @param msgPrompt - String explaining what information you want from the user.
+     * @param min - minimum acceptable value for return
+     * @param max - maximum acceptable value for return
+     * @return an integer value as an answer to the message prompt within the min/max range
+     */
+    @Override
+    public int readInt(String msgPrompt, int min, int max) {
+        int result = readInt(msgPrompt);
+        while (result < min || result > max) {
+            print("Invalid input. Please try again.");
+            result = readInt(msgPrompt);
+        }
+        return result;
+    }
+    
+}
@@ -3,9 +3,17 @@ package com.sblinn.vendingmachine.ui;
 
 import com.sblinn.vendingmachine.dto.Change;
 import com.sblinn.vendingmachine.dto.Item;
+import com.sblinn.vendingmachine.dto.Money;
+import com.sblinn.vendingmachine.service.VendingMachineServiceLayer;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 
 /**
+ * The item menu is rendered once per inventory version and kept. When the 
+ * version moves only the lines of changed items are formatted again, and the 
+ * whole screen goes to the UserIO in a single print.
  *
  * @author sarablinn
  */
@@ -13,6 +21,15 @@ public class VendingMachineView {
     
     private UserIO io;
     
+    // inventory version the rendered menu was built from
+    private long menuVersion = VendingMachineServiceLayer.NO_VERSION;
+    // rendered item lines in menu order, reused while the item is unchanged
+    private RenderedLine[] renderedLines = new RenderedLine[0];
+    private String renderedItems = "";
+    // whole menu screen for screenBalance, null after the items change
+    private String renderedScreen;
+    private String screenBalance;
+    
     
     public VendingMachineView(UserIO io) {
         this.io = io;
@@ -22,31 +39,120 @@ public class VendingMachineView {
     public int printVendingMachineMenuAndGetSelection(List<Item> itemList, 
             String remBalance) {
         
-        io.print("=== VENDING MACHINE ===");
-        displayAllItems(itemList, remBalance);
-        io.print("=======================");
-        io.print("1. Insert Coins");
-        io.print("2. Purchase an Item");
-        io.print("3. Exit");
+        updateMenu(VendingMachineServiceLayer.NO_VERSION, itemList);
+        return printVendingMachineMenuAndGetSelection(remBalance);
+    }
+    
+    /**
+     * Prints the menu last given to updateMenu in one write and reads the 
+     * user's choice. The screen is only built again when the items or the 
+     * balance changed since the last print.
+     * 
+     * @param remBalance - String
+     * @return menu selection, 1 to 3
+     */
+    public int printVendingMachineMenuAndGetSelection(String remBalance) {
+        if(renderedScreen == null || !remBalance.equals(screenBalance)) {
+            StringBuilder screen = new StringBuilder(
+                    renderedItems.length() + 160);
+            screen.append("=== VENDING MACHINE ===\n");
+            appendItemsAndBalance(screen, remBalance);
+            screen.append("\n=======================")
+                    .append("\n1. Insert Coins")
+                    .append("\n2. Purchase an Item")
+                    .append("\n3. Exit");
+            renderedScreen = screen.toString();
+            screenBalance = remBalance;
+        }
+        io.print(renderedScreen);
 
         return io.readInt("Please select from the above choices.", 1, 3);
     }
     
+    /**
+     * @param inventoryVersion - from the service's getInventoryVersion
+     * @return true if the menu was rendered from this inventory version, so 
+     *         the items need not be fetched again
+     */
+    public boolean isMenuCurrent(long inventoryVersion) {
+        return inventoryVersion != VendingMachineServiceLayer.NO_VERSION 
+                && inventoryVersion == menuVersion;
+    }
+    
+    /**
+     * Renders the item menu for an inventory version. Lines of items whose 
+     * name, stock and price are unchanged since the last render are reused, 
+     * and if no line changed the rendered menu is kept as it is.
+     * 
+     * @param inventoryVersion - version itemList was read at, or NO_VERSION
+     * @param itemList - items to show, in order
+     */
+    public void updateMenu(long inventoryVersion, List<Item> itemList) {
+        RenderedLine[] lines = new RenderedLine[itemList.size()];
+        boolean changed = lines.length != renderedLines.length;
+        // only built when the items moved around
+        Map<String, RenderedLine> linesByLocation = null;
+        
+        int i = 0;
+        for(Item currentItem : itemList) {
+            String locationID = currentItem.getLocationID();
+            RenderedLine line;
+            if(i < renderedLines.length 
+                    && renderedLines[i].locationID.equals(locationID)) {
+                line = renderedLines[i];
+            } else {
+                if(linesByLocation == null) {
+                    linesByLocation = new HashMap<>();
+                    for(RenderedLine renderedLine : renderedLines) {
+                        linesByLocation.put(renderedLine.locationID, 
+                                renderedLine);
+                    }
+                }
+                line = linesByLocation.get(locationID);
+                changed = true;
+            }
+            if(line == null || !line.isRenderOf(currentItem)) {
+                line = new RenderedLine(currentItem);
+                changed = true;
+            }
+            lines[i++] = line;
+        }
+        
+        menuVersion = inventoryVersion;
+        if(!changed) {
+            return;
+        }
+        StringBuilder items = new StringBuilder(
+                Math.max(renderedItems.length(), 16));
+        for(RenderedLine line : lines) {
+            if(items.length() > 0) {
+                items.append('\n');
+            }
+            items.append(line.text);
+        }
+        renderedLines = lines;
+        renderedItems = items.toString();
+        renderedScreen = null;
+    }
+    
     /**
      * Displays all items and remaining balance to the console.
      * 
      * @param itemList 
      */
     public void displayAllItems(List<Item> itemList, String remBalance) {
-        for(Item currentItem : itemList) {
-            String itemInfo = String.format("# %s : %s (%s in stock) : $%s",
-                    currentItem.getLocationID(),
-                    currentItem.getName(),
-                    currentItem.getNumAvailable(),
-                    currentItem.getPrice() );
-            io.print(itemInfo);
+        updateMenu(VendingMachineServiceLayer.NO_VERSION, itemList);
+        StringBuilder screen = new StringBuilder(renderedItems.length() + 32);
+        appendItemsAndBalance(screen, remBalance);
+        io.print(screen.toString());
+    }
+    
+    private void appendItemsAndBalance(StringBuilder screen, 
+            String remBalance) {
+        if(!renderedItems.isEmpty()) {
+            screen.append(renderedItems).append('\n');
         }
-        displayBalance(remBalance);
+        screen.append("Balance: $").append(remBalance);
     }
     
     public String getItemSelection() {
@@ -54,10 +160,14 @@ public class VendingMachineView {
     }
     
     public Change getInsertedMoney() {
-        int quarters = io.readInt("Enter number of quarters: ");
-        int dimes = io.readInt("Enter number of dimes: ");
-        int nickels = io.readInt("Enter number of nickels: ");
-        int pennies = io.readInt("Enter number of pennies: ");
+        int quarters = io.readInt("Enter number of quarters: ", 
+                0, Integer.MAX_VALUE);
+        int dimes = io.readInt("Enter number of dimes: ", 
+                0, Integer.MAX_VALUE);
+        int nickels = io.readInt("Enter number of nickels: ", 
+                0, Integer.MAX_VALUE);
+        int pennies = io.readInt("Enter number of pennies: ", 
+                0, Integer.MAX_VALUE);
         
         Change change = new Change(quarters, dimes, nickels, pennies);
         return change;
@@ -69,7 +179,7 @@ public class VendingMachineView {
         io.print("Nickels: " + change.getNumNickels());
         io.print("Pennies: " + change.getNumPennies());
         
-        String changeStr = change.getChangeSum().toString();
+        String changeStr = change.getChangeValue().toString();
         
         io.print("Total change returned: $" + changeStr);
     }
@@ -114,4 +224,32 @@ public class VendingMachineView {
         io.print("UNKNOWN COMMAND");
     }
     
+    
+    /**
+     * One rendered menu line and the item fields it was rendered from.
+     */
+    private static class RenderedLine {
+        
+        private final String locationID;
+        private final String name;
+        private final int numAvailable;
+        private final Money price;
+        private final String text;
+        
+        RenderedLine(Item item) {
+            this.locationID = item.getLocationID();
+            this.name = item.getName();
+            this.numAvailable = item.getNumAvailable();
+            this.price = item.getPrice();
+            this.text = "# " + locationID + " : " + name 
+                    + " (" + numAvailable + " in stock) : $" + price;
+        }
+        
+        boolean isRenderOf(Item item) {
+            return numAvailable == item.getNumAvailable()
+                    && Objects.equals(name, item.getName())
+                    && Objects.equals(price, item.getPrice());
+        }
+    }
+    
 }
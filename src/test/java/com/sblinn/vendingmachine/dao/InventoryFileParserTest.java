@@ -0,0 +1,100 @@
+
+package com.sblinn.vendingmachine.dao;
+
+import com.sblinn.vendingmachine.dto.Item;
+import com.sblinn.vendingmachine.dto.Money;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ *
+ * @author sarablinn
+ */
+public class InventoryFileParserTest {
+    
+    /*
+    TEST PLAN:
+    
+    testParse() - write a file with 500 lines, some ending in \r\n, a blank 
+                line and no line end after the last line, and parse it with 
+                a 16 byte buffer so lines straddle reads and the buffer grows.
+                   --> 500 items come back in order, equal to what 
+                        unmarshallItem makes of the same lines.
+    
+    testParseMalformedLine() - parse a file whose 2nd line has no price and 
+                one whose price has fractions of a cent.
+                   --> PersistenceException naming the line is thrown.
+    */
+    
+    
+    private Path inventoryFile;
+    
+    @BeforeEach
+    public void setUp() throws Exception {
+        inventoryFile = Files.createTempFile("parserinventory", ".txt");
+    }
+    
+    @AfterEach
+    public void tearDown() throws Exception {
+        Files.deleteIfExists(inventoryFile);
+    }
+    
+    
+    @Test
+    public void testParse() throws Exception {
+        List<String> lines = new ArrayList<>();
+        StringBuilder text = new StringBuilder();
+        for(int i = 0; i < 500; i++) {
+            String line = "A" + i + "::Item number " + i + "::" + (i % 7) 
+                    + "::" + (i / 100) + "." + (i % 10) + (i % 3 == 0 ? "" : "5");
+            lines.add(line);
+            text.append(line).append(i % 2 == 0 ? "\r\n" : "\n");
+            if(i == 250) {
+                text.append("\n");
+            }
+        }
+        text.setLength(text.length() - 1);
+        Files.write(inventoryFile, 
+                text.toString().getBytes(StandardCharsets.UTF_8));
+        
+        List<Item> items = new ArrayList<>();
+        int itemCount = new InventoryFileParser(16)
+                .parse(inventoryFile, items::add);
+        
+        assertEquals(500, itemCount);
+        assertEquals(500, items.size());
+        for(int i = 0; i < lines.size(); i++) {
+            Item expected = VendingMachineDaoFileImpl.unmarshallItem(
+                    lines.get(i));
+            assertEquals(expected, items.get(i));
+            assertEquals(expected.getPrice(), items.get(i).getPrice());
+            assertEquals(expected.getNumAvailable(), 
+                    items.get(i).getNumAvailable());
+        }
+        assertEquals(Money.parse("4.95"), items.get(499).getPrice());
+    }
+    
+    @Test
+    public void testParseMalformedLine() throws Exception {
+        InventoryFileParser parser = new InventoryFileParser();
+        
+        Files.write(inventoryFile, "A1::Chips::5::1.00\nA2::Candy::5\n"
+                .getBytes(StandardCharsets.UTF_8));
+        PersistenceException e = assertThrows(PersistenceException.class, 
+                () -> parser.parse(inventoryFile, (item) -> { }));
+        assertTrue(e.getMessage().contains("line 2"), e.getMessage());
+        
+        Files.write(inventoryFile, "A1::Chips::5::1.005\n"
+                .getBytes(StandardCharsets.UTF_8));
+        assertThrows(PersistenceException.class, 
+                () -> parser.parse(inventoryFile, (item) -> { }));
+    }
+    
+}
@@ -0,0 +1,73 @@
+
+package com.sblinn.vendingmachine.dao;
+
+import com.sblinn.vendingmachine.dto.Item;
+import com.sblinn.vendingmachine.dto.Money;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ *
+ * @author sarablinn
+ */
+public class InventoryRowFormatTest {
+    
+    /*
+    TEST PLAN:
+    
+    testRoundTrip() - format an item whose name has a comma and a quote, and 
+                one whose location ID has a comma and a quote, in each 
+                format, then parse the rows back.
+                   --> The parsed items equal the originals.
+    
+    testParseRows() - parse rows written by hand.
+                   --> A lowercase location ID is made uppercase.
+                   --> NDJSON keys may come in any order, unknown keys are 
+                        ignored and a number price is accepted.
+                   --> Rows with the wrong number of fields, broken JSON or 
+                        fractions of a cent throw IllegalArgumentException.
+    */
+    
+    
+    @Test
+    public void testRoundTrip() {
+        Item item = new Item("B2", "Say \"Cheese\", Puffs")
+                .withNumAvailable(7)
+                .withPrice(Money.parse("1.05"));
+        Item oddLocationItem = new Item("A,\"1", "Crisps")
+                .withNumAvailable(4)
+                .withPrice(Money.parse("0.99"));
+        
+        for(InventoryRowFormat format : InventoryRowFormat.values()) {
+            Item parsed = format.parseRow(format.formatRow(item));
+            assertEquals(item, parsed, format + " should round trip.");
+            parsed = format.parseRow(format.formatRow(oddLocationItem));
+            assertEquals(oddLocationItem, parsed, 
+                    format + " should round trip the location ID.");
+        }
+    }
+    
+    @Test
+    public void testParseRows() {
+        Item csvItem = InventoryRowFormat.CSV.parseRow("a3,Crisps,4,0.99");
+        assertEquals("A3", csvItem.getLocationID());
+        assertEquals(Money.parse("0.99"), csvItem.getPrice());
+        
+        Item jsonItem = InventoryRowFormat.NDJSON.parseRow(
+                "{ \"price\": 1.5, \"name\": \"Crisps\", \"shelf\": 3, "
+                        + "\"numAvailable\": 4, \"locationID\": \"a3\" }");
+        assertEquals("A3", jsonItem.getLocationID());
+        assertEquals("Crisps", jsonItem.getName());
+        assertEquals(4, jsonItem.getNumAvailable());
+        assertEquals(Money.parse("1.50"), jsonItem.getPrice());
+        
+        assertThrows(IllegalArgumentException.class, 
+                () -> InventoryRowFormat.CSV.parseRow("A3,Crisps,4"));
+        assertThrows(IllegalArgumentException.class, 
+                () -> InventoryRowFormat.NDJSON.parseRow(
+                        "{\"locationID\":\"A3\",\"name\":\"Crisps\""));
+        assertThrows(IllegalArgumentException.class, 
+                () -> InventoryRowFormat.CSV.parseRow("A3,Crisps,4,0.995"));
+    }
+    
+}
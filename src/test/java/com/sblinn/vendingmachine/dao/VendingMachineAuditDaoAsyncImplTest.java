@@ -0,0 +1,196 @@
+package com.sblinn.vendingmachine.dao;
+
+import com.sblinn.vendingmachine.dao.VendingMachineAuditDaoAsyncImpl.FullQueuePolicy;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ *
+ * @author sarablinn
+ */
+public class VendingMachineAuditDaoAsyncImplTest {
+
+    /*
+    TEST PLAN:
+
+    testEntriesAreBatchedAndFlushedOnClose() -> writeAuditEntry(), close()
+        Queue more entries than one batch holds with a long linger time, close
+        the DAO and check that every entry was written, in order, in batches
+        no bigger than the batch size.
+
+    testDropPolicy() -> FullQueuePolicy.DROP
+        Block the wrapped DAO so the queue fills up, then check that extra
+        entries are dropped and counted instead of blocking the caller.
+
+    testEntriesKeepQueueTimestamps() -> writeAuditEntry()
+        Queue two entries 20ms apart into one batch with a long linger time.
+        Each should be written with the time it was queued, the first
+        before the second, and neither after close() was called.
+
+    testFailedBatchIsRetriedThenCounted() -> writeAuditEntry(), close()
+        A wrapped DAO that fails twice then works should get the entry
+        written with nothing counted as failed. One that always fails
+        should have the entry counted in getFailedEntryCount() and the
+        failure reported to the next caller.
+
+    testRejectsEntriesAfterClose() -> close(), writeAuditEntry()
+        Writing an entry after close() should throw PersistenceException.
+    */
+
+
+    @Test
+    public void testEntriesAreBatchedAndFlushedOnClose() throws Exception {
+        RecordingAuditDao recordingDao = new RecordingAuditDao();
+        VendingMachineAuditDaoAsyncImpl testDao =
+                new VendingMachineAuditDaoAsyncImpl(recordingDao, 100, 4,
+                        60_000, FullQueuePolicy.BLOCK);
+
+        List<String> expectedEntries = new ArrayList<>();
+        for(int i = 0; i < 10; i++) {
+            expectedEntries.add("Item A" + i + " : Twinkle Pie CREATED.");
+            testDao.writeAuditEntry(expectedEntries.get(i));
+        }
+        testDao.close();
+
+        assertEquals(expectedEntries, recordingDao.entries,
+                "Every entry should be written in order.");
+        for(int batchSize : recordingDao.batchSizes) {
+            assertTrue(batchSize <= 4, "Batches should hold at most 4 entries.");
+        }
+    }
+
+    @Test
+    public void testDropPolicy() throws Exception {
+        RecordingAuditDao recordingDao = new RecordingAuditDao();
+        recordingDao.blocked = new CountDownLatch(1);
+        VendingMachineAuditDaoAsyncImpl testDao =
+                new VendingMachineAuditDaoAsyncImpl(recordingDao, 2, 1, 0,
+                        FullQueuePolicy.DROP);
+
+        // the writer takes the first entry and blocks on it, the next two
+        // fill the queue and the rest are dropped
+        for(int i = 0; i < 10; i++) {
+            testDao.writeAuditEntry("entry " + i);
+        }
+        assertTrue(testDao.getDroppedEntryCount() > 0,
+                "Entries should be dropped while the queue is full.");
+
+        recordingDao.blocked.countDown();
+        testDao.close();
+        assertEquals(10, recordingDao.entries.size()
+                + testDao.getDroppedEntryCount(),
+                "Every entry should be either written or dropped.");
+    }
+
+
+    @Test
+    public void testEntriesKeepQueueTimestamps() throws Exception {
+        RecordingAuditDao recordingDao = new RecordingAuditDao();
+        VendingMachineAuditDaoAsyncImpl testDao =
+                new VendingMachineAuditDaoAsyncImpl(recordingDao, 100, 100,
+                        60_000, FullQueuePolicy.BLOCK);
+
+        LocalDateTime start = LocalDateTime.now();
+        testDao.writeAuditEntry("first");
+        Thread.sleep(20);
+        testDao.writeAuditEntry("second");
+        LocalDateTime closing = LocalDateTime.now();
+        testDao.close();
+
+        assertEquals(Arrays.asList(2), recordingDao.batchSizes);
+        LocalDateTime first = recordingDao.timestamps.get(0);
+        LocalDateTime second = recordingDao.timestamps.get(1);
+        assertFalse(first.isBefore(start));
+        assertTrue(first.isBefore(second),
+                "Each entry should keep the time it was queued.");
+        assertFalse(second.isAfter(closing));
+    }
+
+    @Test
+    public void testFailedBatchIsRetriedThenCounted() throws Exception {
+        RecordingAuditDao flakyDao = new RecordingAuditDao();
+        flakyDao.failuresLeft = 2;
+        VendingMachineAuditDaoAsyncImpl testDao =
+                new VendingMachineAuditDaoAsyncImpl(flakyDao, 10, 1, 0,
+                        FullQueuePolicy.BLOCK);
+        testDao.writeAuditEntry("entry");
+        testDao.close();
+        assertEquals(Arrays.asList("entry"), flakyDao.entries);
+        assertEquals(0, testDao.getFailedEntryCount());
+
+        RecordingAuditDao failingDao = new RecordingAuditDao();
+        failingDao.failuresLeft = Integer.MAX_VALUE;
+        VendingMachineAuditDaoAsyncImpl failingTestDao =
+                new VendingMachineAuditDaoAsyncImpl(failingDao, 10, 1, 0,
+                        FullQueuePolicy.BLOCK);
+        failingTestDao.writeAuditEntry("entry");
+        assertThrows(PersistenceException.class, failingTestDao::close);
+        assertEquals(1, failingTestDao.getFailedEntryCount());
+        assertEquals(VendingMachineAuditDaoAsyncImpl.MAX_WRITE_ATTEMPTS,
+                Integer.MAX_VALUE - failingDao.failuresLeft);
+    }
+
+    @Test
+    public void testRejectsEntriesAfterClose() throws Exception {
+        VendingMachineAuditDaoAsyncImpl testDao =
+                new VendingMachineAuditDaoAsyncImpl(new RecordingAuditDao(),
+                        10, 1, 0, FullQueuePolicy.BLOCK);
+        testDao.close();
+        assertThrows(PersistenceException.class,
+                () -> testDao.writeAuditEntry("too late"));
+    }
+
+
+    /**
+     * Records what the async DAO writes, optionally blocking until released
+     * or failing a number of times first.
+     */
+    private static class RecordingAuditDao implements VendingMachineAuditDao {
+
+        private final List<String> entries =
+                Collections.synchronizedList(new ArrayList<>());
+        private final List<Integer> batchSizes =
+                Collections.synchronizedList(new ArrayList<>());
+        private final List<LocalDateTime> timestamps =
+                Collections.synchronizedList(new ArrayList<>());
+        private volatile CountDownLatch blocked;
+        private volatile int failuresLeft;
+
+        @Override
+        public void writeAuditEntry(String entry) throws PersistenceException {
+            writeAuditEntries(Collections.singletonList(entry));
+        }
+
+        @Override
+        public void writeAuditEntries(List<String> entries,
+                List<LocalDateTime> timestamps) throws PersistenceException {
+            writeAuditEntries(entries);
+            this.timestamps.addAll(timestamps);
+        }
+
+        @Override
+        public void writeAuditEntries(List<String> entries)
+                throws PersistenceException {
+            if(failuresLeft > 0) {
+                failuresLeft--;
+                throw new PersistenceException("Audit file unavailable.");
+            }
+            if(blocked != null) {
+                try {
+                    blocked.await();
+                } catch(InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            batchSizes.add(entries.size());
+            this.entries.addAll(entries);
+        }
+    }
+
+}
@@ -0,0 +1,151 @@
+package com.sblinn.vendingmachine.dao;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ *
+ * @author sarablinn
+ */
+public class VendingMachineAuditDaoFileImplTest {
+
+    /*
+    TEST PLAN:
+
+    testWriteAuditEntry() -> writeAuditEntry(), writeAuditEntries()
+        Write entries one at a time and as a batch, then check the audit file
+        holds them all with timestamps.
+
+    testRollingAndRetention() -> segment rolling, compression and retention
+        Use a tiny segment size so nearly every entry rolls the file. After
+        closing, check that only the retained number of gzipped segments is
+        left and that they can be decompressed.
+
+    testWrittenBeforeReturn() -> writeAuditEntry(), writeAuditEntries()
+        Write an entry and then a batch without closing the DAO. Each should
+        be in the audit file as soon as the call returns.
+
+    testLeftoverSegmentsAreCompressed() -> compression retry and retention
+        Leave an uncompressed segment behind, as a failed compression would,
+        then roll the file. The leftover should be compressed too. With a
+        retention of 1, an old uncompressed segment should be removed as the
+        oldest segment.
+    */
+
+
+    private Path tempDir;
+    private String auditFile;
+
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        tempDir = Files.createTempDirectory("audittest");
+        auditFile = tempDir.resolve("audit.txt").toString();
+    }
+
+    @AfterEach
+    public void tearDown() throws Exception {
+        for(File file : tempDir.toFile().listFiles()) {
+            file.delete();
+        }
+        Files.delete(tempDir);
+    }
+
+
+    @Test
+    public void testWriteAuditEntry() throws Exception {
+        VendingMachineAuditDaoFileImpl testDao =
+                new VendingMachineAuditDaoFileImpl(auditFile);
+        testDao.writeAuditEntry("Item A1 : Twinkle Pie CREATED.");
+        testDao.writeAuditEntries(List.of("Item A2 : Ginger Mints CREATED.",
+                "Item A2 : Ginger Mints DELETED."));
+        testDao.close();
+
+        List<String> lines = Files.readAllLines(Path.of(auditFile));
+        assertEquals(3, lines.size(), "Audit file should have 3 entries.");
+        assertTrue(lines.get(0).endsWith(" : Item A1 : Twinkle Pie CREATED."));
+        assertTrue(lines.get(2).endsWith(" : Item A2 : Ginger Mints DELETED."));
+    }
+
+    @Test
+    public void testRollingAndRetention() throws Exception {
+        VendingMachineAuditDaoFileImpl testDao =
+                new VendingMachineAuditDaoFileImpl(auditFile, 100, 2);
+        for(int i = 0; i < 10; i++) {
+            testDao.writeAuditEntry("Item A" + i + " : Twinkle Pie CREATED.");
+        }
+        testDao.close();
+
+        File[] segments = tempDir.toFile().listFiles(
+                (dir, name) -> name.endsWith(".txt.gz"));
+        assertEquals(2, segments.length, "Only 2 segments should be kept.");
+        assertTrue(new File(auditFile).exists(),
+                "The current audit file should exist.");
+
+        List<String> segmentLines = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new GZIPInputStream(new FileInputStream(segments[0])),
+                StandardCharsets.UTF_8))) {
+            String line;
+            while((line = reader.readLine()) != null) {
+                segmentLines.add(line);
+            }
+        }
+        assertFalse(segmentLines.isEmpty(), "Segments should hold entries.");
+        assertTrue(segmentLines.get(0).contains("Twinkle Pie CREATED."));
+    }
+
+    @Test
+    public void testWrittenBeforeReturn() throws Exception {
+        VendingMachineAuditDaoFileImpl testDao =
+                new VendingMachineAuditDaoFileImpl(auditFile);
+        testDao.writeAuditEntry("Item A1 : Twinkle Pie CREATED.");
+        assertEquals(1, Files.readAllLines(Path.of(auditFile)).size(),
+                "The entry should not wait in the write buffer.");
+
+        testDao.writeAuditEntries(List.of("Item A2 : Ginger Mints CREATED.",
+                "Item A2 : Ginger Mints DELETED."));
+        assertEquals(3, Files.readAllLines(Path.of(auditFile)).size());
+        testDao.close();
+    }
+
+    @Test
+    public void testLeftoverSegmentsAreCompressed() throws Exception {
+        Path leftover = tempDir.resolve("audit.2000-01-01.1.txt");
+        Files.write(leftover, List.of("old entry"));
+
+        VendingMachineAuditDaoFileImpl testDao =
+                new VendingMachineAuditDaoFileImpl(auditFile, 100, 10);
+        for(int i = 0; i < 5; i++) {
+            testDao.writeAuditEntry("Item A" + i + " : Twinkle Pie CREATED.");
+        }
+        testDao.close();
+        assertFalse(Files.exists(leftover));
+        assertTrue(Files.exists(Path.of(leftover + ".gz")),
+                "A leftover segment should be compressed on the next roll.");
+
+        Path oldLeftover = tempDir.resolve("audit.2000-01-02.1.txt");
+        Files.write(oldLeftover, List.of("old entry"));
+        oldLeftover.toFile().setLastModified(0);
+        testDao = new VendingMachineAuditDaoFileImpl(auditFile, 100, 1);
+        testDao.writeAuditEntry("Item A5 : Twinkle Pie CREATED.");
+        testDao.writeAuditEntry("Item A6 : Twinkle Pie CREATED.");
+        testDao.close();
+        File[] segments = tempDir.toFile().listFiles(
+                (dir, name) -> name.startsWith("audit.2"));
+        assertEquals(1, segments.length, "Only 1 segment should be kept.");
+    }
+
+}
@@ -1,10 +1,19 @@
 
 package com.sblinn.vendingmachine.dao;
 
+import com.sblinn.vendingmachine.dto.InventorySnapshot;
 import com.sblinn.vendingmachine.dto.Item;
+import com.sblinn.vendingmachine.dto.Money;
+import com.sblinn.vendingmachine.metrics.LatencyMetrics;
 import java.io.FileWriter;
+import java.io.PrintWriter;
 import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
 import java.util.List;
+import java.util.stream.Collectors;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import static org.junit.jupiter.api.Assertions.*;
@@ -36,6 +45,64 @@ public class VendingMachineDaoFileImplTest {
         Create an item, update one of it's fields, retrieve it from the test
         file and check if the field data is updated. 
     
+    testCachedModeReloadsOutsideEdit() -> cached mode
+        Create an item through a cached DAO, then append a second item to the 
+        test file behind the DAO's back. Check that the DAO notices the 
+        outside edit and returns both items, and that its file metrics count 
+        2 reads of the file and 1 write.
+    
+    testGetItemsByRow() -> getItemsByRow(), getAllItems() ordering
+        Create items at B2, A1, B10, C1 and B1 out of order. Check that 
+        getAllItems() lists them sorted by location ID, that row "b" returns 
+        B1, B10 and B2 in that order, and that row "D" is empty.
+    
+    testInventoryVersion() -> getInventoryVersion()
+        With a cached DAO, check that the version stays put across reads and 
+        goes up after createItem, updateItem and an outside edit of the file.
+    
+    testInStockIndex() -> getInStockItems(), getEmptySlotCount(), 
+                          hasInStockItems()
+        Create A1 (3 in stock), B1 (sold out) and C1 (1 in stock). Check the 
+        in-stock list and empty slot count as C1 sells out, B1 is restocked 
+        and A1 is deleted, and that a fresh DAO rebuilds the same index from 
+        the file. Sell out B1 last and check nothing is left for sale.
+    
+    testInventorySnapshot() -> getInventorySnapshot()
+        Create A1 (5 in stock) and B1 (sold out), take a snapshot, then sell 
+        one A1 and delete B1. Check that the snapshot and the Item read 
+        before the sale still show 5 of A1 and B1, that a new snapshot shows 
+        the sale at a higher version, and that the lists a snapshot hands 
+        out cannot be modified.
+    
+    testCompareAndUpdate() -> compareAndUpdateItem(), compareAndDeleteItem()
+        With a cached DAO, create A1 and B1. Check that a compare-and-update 
+        of A1 at the version read succeeds and gives it a newer version, that 
+        a second one at the old version and a delete at the old version fail 
+        and change nothing, and that B1 keeps its version. Rewrite the file 
+        outside of the DAO with a new count for A1: B1 keeps its version, 
+        the update at A1's last version fails, and a delete at the version 
+        of the edited A1 succeeds.
+    
+    testCommitSale() -> commitSale()
+        With a cached DAO, create A1 with 1 in stock and B1. Check that a 
+        sale at A1's version takes one off, gives it a newer version and is 
+        in the file, that a sale at the old version and a sale of the sold 
+        out A1 are refused, and that B1 is left as it was.
+    
+    testCoalescedWrites() -> WriteMode.COALESCED, flush(), close()
+        With a coalesced DAO that flushes after 3 changes or an hour, create 
+        A1 and B1 and check the file is still empty while the DAO serves 
+        both. Sell one A1: the third change writes all three. Create C1, 
+        check it is not written until close(), and that no temporary file is 
+        left. With a 20 ms interval, check one change reaches the file on its 
+        own. Check COALESCED is refused without cached mode.
+    
+    testCoalescedFlushIsRetried() -> WriteMode.COALESCED, failed flush
+        With a 20 ms interval and a directory in the way of the temporary 
+        file, create A1 and check the file stays empty. Remove the directory 
+        and check the flush is retried and writes A1, and that the next 
+        mutation is accepted. After close(), the shutdown hook is gone.
+    
     testDeleteItem() -> deleteItem()
         Create 2 items, delete one of them. 
         (repeat process from testGetAllItems() ): Get a list of the items, check 
@@ -74,9 +141,9 @@ public class VendingMachineDaoFileImplTest {
     public void testCreateAndGetItem() throws Exception {
         // Create an item.
         String locationID = "A1";
-        Item item = new Item(locationID , "Twinkle Pie");
-        item.setNumAvailable(5);
-        item.setPrice(new BigDecimal("2.50"));
+        Item item = new Item(locationID , "Twinkle Pie")
+                .withNumAvailable(5)
+                .withPrice(new BigDecimal("2.50"));
         
         // Add item to the DAO file
         testDao.createItem(locationID, item);
@@ -96,13 +163,13 @@ public class VendingMachineDaoFileImplTest {
     @Test
     public void testGetAllItems() throws Exception {
         // Create two items
-        Item firstItem = new Item("A1" , "Twinkle Pie");
-        firstItem.setNumAvailable(5);
-        firstItem.setPrice(new BigDecimal("2.50"));
+        Item firstItem = new Item("A1" , "Twinkle Pie")
+                .withNumAvailable(5)
+                .withPrice(new BigDecimal("2.50"));
         
-        Item secondItem = new Item("A2" , "Ginger Mints");
-        secondItem.setNumAvailable(6);
-        secondItem.setPrice(new BigDecimal("3.00"));
+        Item secondItem = new Item("A2" , "Ginger Mints")
+                .withNumAvailable(6)
+                .withPrice(new BigDecimal("3.00"));
         
         // Add both items to the DAO
         testDao.createItem("A1", firstItem);
@@ -121,13 +188,13 @@ public class VendingMachineDaoFileImplTest {
     @Test
     public void testDeleteItem() throws Exception {
         // Create two items
-        Item firstItem = new Item("A1" , "Twinkle Pie");
-        firstItem.setNumAvailable(5);
-        firstItem.setPrice(new BigDecimal("2.50"));
+        Item firstItem = new Item("A1" , "Twinkle Pie")
+                .withNumAvailable(5)
+                .withPrice(new BigDecimal("2.50"));
         
-        Item secondItem = new Item("A2" , "Ginger Mints");
-        secondItem.setNumAvailable(6);
-        secondItem.setPrice(new BigDecimal("3.00"));
+        Item secondItem = new Item("A2" , "Ginger Mints")
+                .withNumAvailable(6)
+                .withPrice(new BigDecimal("3.00"));
         
         // Add both items to the DAO
         testDao.createItem("A1", firstItem);
@@ -169,13 +236,13 @@ public class VendingMachineDaoFileImplTest {
     public void testUpdateItem() throws Exception {
         // Create an item.
         String locationID = "A1";
-        Item item = new Item(locationID , "Twinkle Pie");
-        item.setNumAvailable(5);
-        item.setPrice(new BigDecimal("2.50"));
+        Item item = new Item(locationID , "Twinkle Pie")
+                .withNumAvailable(5)
+                .withPrice(new BigDecimal("2.50"));
         
         testDao.createItem(locationID, item);
-        // Modify the item object and update the DAO
-        item.setName("Chips");
+        // Rename the item and update the DAO
+        item = item.withName("Chips");
         Item updatedItem = testDao.updateItem(locationID, item);
         // Get the item from the DAO and check that it equals the the item we updated
         assertEquals(testDao.getItem(locationID), updatedItem, 
@@ -184,4 +251,308 @@ public class VendingMachineDaoFileImplTest {
                 "Name of updated item saved to the DAO should equal 'Chips.'");
     }
     
+    @Test
+    public void testCachedModeReloadsOutsideEdit() throws Exception {
+        VendingMachineDaoFileImpl cachedDao = 
+                new VendingMachineDaoFileImpl(TEST_FILE, true);
+        LatencyMetrics fileLoadMetrics = new LatencyMetrics();
+        LatencyMetrics fileWriteMetrics = new LatencyMetrics();
+        cachedDao.setFileLoadMetrics(fileLoadMetrics);
+        cachedDao.setFileWriteMetrics(fileWriteMetrics);
+        
+        Item firstItem = new Item("A1" , "Twinkle Pie")
+                .withNumAvailable(5)
+                .withPrice(new BigDecimal("2.50"));
+        cachedDao.createItem("A1", firstItem);
+        assertEquals(1, cachedDao.getAllItems().size(), 
+                "The list of items should have 1 item.");
+        
+        // Edit the file outside of the DAO
+        try (PrintWriter out = new PrintWriter(new FileWriter(TEST_FILE, true))) {
+            out.println("A2::Ginger Mints::6::3.00");
+        }
+        
+        List<Item> itemList = cachedDao.getAllItems();
+        assertEquals(2, itemList.size(), 
+                "The outside edit should have been reloaded.");
+        assertTrue(itemList.contains(firstItem));
+        assertEquals("Ginger Mints", cachedDao.getItem("A2").getName(),
+                "Item A2 should come from the edited file.");
+        
+        assertEquals(2, fileLoadMetrics.getCount(), 
+                "Only the first load and the outside edit read the file.");
+        assertEquals(1, fileWriteMetrics.getCount());
+    }
+    
+    
+    @Test
+    public void testGetItemsByRow() throws Exception {
+        for(String locationID : Arrays.asList("B2", "A1", "B10", "C1", "B1")) {
+            Item item = new Item(locationID, "Item " + locationID)
+                    .withNumAvailable(3)
+                    .withPrice(new BigDecimal("1.00"));
+            testDao.createItem(locationID, item);
+        }
+        
+        List<String> allIDs = testDao.getAllItems().stream()
+                .map(Item::getLocationID)
+                .collect(Collectors.toList());
+        assertEquals(Arrays.asList("A1", "B1", "B10", "B2", "C1"), allIDs);
+        
+        List<String> rowIDs = testDao.getItemsByRow("b").stream()
+                .map(Item::getLocationID)
+                .collect(Collectors.toList());
+        assertEquals(Arrays.asList("B1", "B10", "B2"), rowIDs);
+        
+        assertTrue(testDao.getItemsByRow("D").isEmpty());
+    }
+    
+    @Test
+    public void testInventoryVersion() throws Exception {
+        VendingMachineDao cachedDao = new VendingMachineDaoFileImpl(TEST_FILE, 
+                true);
+        Item item = new Item("A1", "Twinkle Pie")
+                .withNumAvailable(5)
+                .withPrice(new BigDecimal("2.50"));
+        
+        long version = cachedDao.getInventoryVersion();
+        cachedDao.getAllItems();
+        assertEquals(version, cachedDao.getInventoryVersion());
+        
+        cachedDao.createItem("A1", item);
+        long created = cachedDao.getInventoryVersion();
+        assertTrue(created > version);
+        
+        item = item.withNumAvailable(4);
+        cachedDao.updateItem("A1", item);
+        long updated = cachedDao.getInventoryVersion();
+        assertTrue(updated > created);
+        
+        try (PrintWriter out = new PrintWriter(new FileWriter(TEST_FILE, 
+                true))) {
+            out.println("B1::Gummy Bears::3::1.25");
+        }
+        assertTrue(cachedDao.getInventoryVersion() > updated);
+    }
+    
+    @Test
+    public void testInStockIndex() throws Exception {
+        for(String itemData : Arrays.asList("A1:3", "B1:0", "C1:1")) {
+            String locationID = itemData.split(":")[0];
+            Item item = new Item(locationID, "Item " + locationID)
+                    .withNumAvailable(Integer.parseInt(itemData.split(":")[1]))
+                    .withPrice(new BigDecimal("1.00"));
+            testDao.createItem(locationID, item);
+        }
+        assertEquals(Arrays.asList("A1", "C1"), inStockIDs(testDao));
+        assertEquals(1, testDao.getEmptySlotCount());
+        
+        Item c1 = testDao.getItem("C1").withNumAvailable(0);
+        testDao.updateItem("C1", c1);
+        assertEquals(Arrays.asList("A1"), inStockIDs(testDao));
+        assertEquals(2, testDao.getEmptySlotCount());
+        
+        Item b1 = testDao.getItem("B1").withNumAvailable(5);
+        testDao.updateItem("B1", b1);
+        testDao.deleteItem("A1");
+        assertEquals(Arrays.asList("B1"), inStockIDs(testDao));
+        assertEquals(1, testDao.getEmptySlotCount());
+        
+        VendingMachineDao reloadedDao = new VendingMachineDaoFileImpl(
+                TEST_FILE, true);
+        assertEquals(Arrays.asList("B1"), inStockIDs(reloadedDao));
+        assertEquals(1, reloadedDao.getEmptySlotCount());
+        assertTrue(reloadedDao.hasInStockItems());
+        
+        b1 = b1.withNumAvailable(0);
+        reloadedDao.updateItem("B1", b1);
+        assertFalse(reloadedDao.hasInStockItems());
+        assertEquals(2, reloadedDao.getEmptySlotCount());
+    }
+    
+    @Test
+    public void testInventorySnapshot() throws Exception {
+        Item a1 = new Item("A1", "Twinkle Pie")
+                .withNumAvailable(5)
+                .withPrice(new BigDecimal("2.50"));
+        testDao.createItem("A1", a1);
+        testDao.createItem("B1", new Item("B1", "Chips", 0, 
+                Money.ofCents(150)));
+        
+        InventorySnapshot before = testDao.getInventorySnapshot();
+        Item a1BeforeSale = testDao.getItem("A1");
+        testDao.updateItem("A1", a1BeforeSale.withNumAvailable(4));
+        testDao.deleteItem("B1");
+        
+        assertEquals(5, a1BeforeSale.getNumAvailable());
+        assertEquals(5, before.getItem("a1").getNumAvailable());
+        assertEquals(2, before.getItemCount());
+        assertEquals(1, before.getEmptySlotCount());
+        assertEquals(Arrays.asList(a1), before.getInStockItems());
+        
+        InventorySnapshot after = testDao.getInventorySnapshot();
+        assertTrue(after.getVersion() > before.getVersion());
+        assertEquals(4, after.getItem("A1").getNumAvailable());
+        assertNull(after.getItem("B1"));
+        assertEquals(1, after.getItemCount());
+        
+        assertThrows(UnsupportedOperationException.class, 
+                () -> after.getItems().add(a1));
+        assertThrows(UnsupportedOperationException.class, 
+                () -> after.getInStockItems().clear());
+    }
+    
+    @Test
+    public void testCompareAndUpdate() throws Exception {
+        VendingMachineDao cachedDao = new VendingMachineDaoFileImpl(TEST_FILE, 
+                true);
+        cachedDao.createItem("A1", new Item("A1", "Twinkle Pie", 5, 
+                Money.ofCents(250)));
+        cachedDao.createItem("B1", new Item("B1", "Chips", 3, 
+                Money.ofCents(150)));
+        Item a1 = cachedDao.getItem("A1");
+        Item b1 = cachedDao.getItem("B1");
+        
+        Item sold = cachedDao.compareAndUpdateItem("A1", a1.getVersion(), 
+                a1.withNumAvailable(4));
+        assertNotNull(sold);
+        assertTrue(sold.getVersion() > b1.getVersion());
+        assertEquals(sold.getVersion(), cachedDao.getItem("A1").getVersion());
+        
+        assertNull(cachedDao.compareAndUpdateItem("A1", a1.getVersion(), 
+                a1.withNumAvailable(3)));
+        assertNull(cachedDao.compareAndDeleteItem("A1", a1.getVersion()));
+        assertEquals(4, cachedDao.getItem("A1").getNumAvailable());
+        assertEquals(b1.getVersion(), cachedDao.getItem("B1").getVersion());
+        
+        // Edit the file outside of the DAO
+        Files.write(Paths.get(TEST_FILE), Arrays.asList(
+                "A1::Twinkle Pie::12::2.50", "B1::Chips::3::1.50"));
+        assertEquals(b1.getVersion(), cachedDao.getItem("B1").getVersion());
+        assertNull(cachedDao.compareAndUpdateItem("A1", sold.getVersion(), 
+                sold.withNumAvailable(3)));
+        Item edited = cachedDao.getItem("A1");
+        assertEquals(12, edited.getNumAvailable());
+        assertEquals(edited, cachedDao.compareAndDeleteItem("A1", 
+                edited.getVersion()));
+        assertNull(cachedDao.getItem("A1"));
+    }
+    
+    @Test
+    public void testCommitSale() throws Exception {
+        VendingMachineDao cachedDao = new VendingMachineDaoFileImpl(TEST_FILE, 
+                true);
+        cachedDao.createItem("A1", new Item("A1", "Twinkle Pie", 1, 
+                Money.ofCents(250)));
+        cachedDao.createItem("B1", new Item("B1", "Chips", 3, 
+                Money.ofCents(150)));
+        Item a1 = cachedDao.getItem("A1");
+        Item b1 = cachedDao.getItem("B1");
+        
+        Item sold = cachedDao.commitSale("a1", a1.getVersion());
+        assertEquals(a1.withNumAvailable(0), sold);
+        assertTrue(sold.getVersion() > a1.getVersion());
+        assertEquals(0, new VendingMachineDaoFileImpl(TEST_FILE)
+                .getItem("A1").getNumAvailable());
+        
+        assertNull(cachedDao.commitSale("A1", a1.getVersion()));
+        assertNull(cachedDao.commitSale("A1", sold.getVersion()));
+        assertNull(cachedDao.commitSale("C1", 0));
+        assertEquals(sold.getVersion(), cachedDao.getItem("A1").getVersion());
+        assertEquals(b1.getVersion(), cachedDao.getItem("B1").getVersion());
+    }
+    
+    @Test
+    public void testCoalescedWrites() throws Exception {
+        VendingMachineDaoFileImpl coalescedDao = new VendingMachineDaoFileImpl(
+                TEST_FILE, true, VendingMachineDaoFileImpl.WriteMode.COALESCED, 
+                3600000, 3);
+        try {
+            coalescedDao.createItem("A1", new Item("A1", "Twinkle Pie", 5, 
+                    Money.ofCents(250)));
+            coalescedDao.createItem("B1", new Item("B1", "Chips", 3, 
+                    Money.ofCents(150)));
+            assertTrue(Files.readAllLines(Paths.get(TEST_FILE)).isEmpty());
+            assertEquals(2, coalescedDao.getAllItems().size());
+            
+            Item a1 = coalescedDao.getItem("A1");
+            coalescedDao.commitSale("A1", a1.getVersion());
+            assertEquals(Arrays.asList("A1::Twinkle Pie::4::2.50", 
+                    "B1::Chips::3::1.50"), 
+                    Files.readAllLines(Paths.get(TEST_FILE)));
+            
+            coalescedDao.createItem("C1", new Item("C1", "Gum", 9, 
+                    Money.ofCents(75)));
+            assertEquals(2, Files.readAllLines(Paths.get(TEST_FILE)).size());
+        } finally {
+            coalescedDao.close();
+        }
+        assertEquals(3, Files.readAllLines(Paths.get(TEST_FILE)).size());
+        assertFalse(Files.exists(Paths.get(TEST_FILE + ".tmp")));
+        
+        VendingMachineDaoFileImpl timedDao = new VendingMachineDaoFileImpl(
+                TEST_FILE, true, VendingMachineDaoFileImpl.WriteMode.COALESCED, 
+                20, 100);
+        try {
+            timedDao.deleteItem("C1");
+            long deadline = System.currentTimeMillis() + 5000;
+            while(Files.readAllLines(Paths.get(TEST_FILE)).size() == 3 
+                    && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(2, Files.readAllLines(Paths.get(TEST_FILE)).size());
+        } finally {
+            timedDao.close();
+        }
+        
+        assertThrows(IllegalArgumentException.class, 
+                () -> new VendingMachineDaoFileImpl(TEST_FILE, false, 
+                        VendingMachineDaoFileImpl.WriteMode.COALESCED, 20, 
+                        100));
+    }
+    
+    @Test
+    public void testCoalescedFlushIsRetried() throws Exception {
+        Path directory = Files.createTempDirectory("coalescedretry");
+        Path inventory = directory.resolve("inventory.txt");
+        Path tempFile = directory.resolve("inventory.txt.tmp");
+        Files.createFile(inventory);
+        VendingMachineDaoFileImpl coalescedDao = new VendingMachineDaoFileImpl(
+                inventory.toString(), true, 
+                VendingMachineDaoFileImpl.WriteMode.COALESCED, 20, 100);
+        try {
+            // a directory in the way of the temporary file fails the flush
+            Files.createDirectory(tempFile);
+            coalescedDao.createItem("A1", new Item("A1", "Twinkle Pie", 5, 
+                    Money.ofCents(250)));
+            Thread.sleep(100);
+            assertTrue(Files.readAllLines(inventory).isEmpty());
+            
+            Files.delete(tempFile);
+            long deadline = System.currentTimeMillis() + 5000;
+            while(Files.readAllLines(inventory).isEmpty() 
+                    && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(Arrays.asList("A1::Twinkle Pie::5::2.50"), 
+                    Files.readAllLines(inventory), 
+                    "The failed flush should be tried again.");
+            coalescedDao.createItem("B1", new Item("B1", "Chips", 3, 
+                    Money.ofCents(150)));
+        } finally {
+            coalescedDao.close();
+            Files.deleteIfExists(tempFile);
+            Files.deleteIfExists(inventory);
+            Files.delete(directory);
+        }
+        assertFalse(Runtime.getRuntime().removeShutdownHook(
+                coalescedDao.getShutdownHook()), 
+                "close() should remove the shutdown hook.");
+    }
+    
+    private List<String> inStockIDs(VendingMachineDao dao) throws Exception {
+        return dao.getInStockItems().stream()
+                .map(Item::getLocationID)
+                .collect(Collectors.toList());
+    }
 }
@@ -0,0 +1,185 @@
+package com.sblinn.vendingmachine.dao;
+
+import com.sblinn.vendingmachine.dto.Item;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ *
+ * @author sarablinn
+ */
+public class VendingMachineDaoJournalImplTest {
+
+    /*
+    TEST PLAN:
+
+    testReplayAfterRestart() -> createItem(), updateItem(), deleteItem(),
+                                replay on startup
+        Create, update and delete items, close the DAO, then open a new DAO on
+        the same files and check that it sees the same inventory.
+
+    testTornRecordIsSkipped() -> replay on startup
+        Create an item, close the DAO, append half a record to the journal.
+        A new DAO should load the intact item, ignore the torn bytes, and keep
+        working.
+
+    testCompaction() -> background compaction
+        Use a tiny compaction threshold so every mutation triggers a
+        compaction, then check that the snapshot file holds the inventory.
+
+    testSalesDuringCompaction()
+        With a tiny compaction threshold, sell 150 of 200 of an item so that
+        sales are journaled while compactions write snapshots. Reopen and
+        check that 50 are left.
+
+    testOversizedRecordRejected() -> createItem()
+        Creating an item whose name makes its record longer than replay
+        accepts --> PersistenceException. An item created after it should
+        still be there when the journal is replayed.
+    */
+
+
+    private Path tempDir;
+    private String snapshotFile;
+    private String journalFile;
+
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        tempDir = Files.createTempDirectory("journaltest");
+        snapshotFile = tempDir.resolve("inventory.txt").toString();
+        journalFile = tempDir.resolve("inventory.txt.journal").toString();
+    }
+
+    @AfterEach
+    public void tearDown() throws Exception {
+        for(File file : tempDir.toFile().listFiles()) {
+            file.delete();
+        }
+        Files.delete(tempDir);
+    }
+
+
+    @Test
+    public void testReplayAfterRestart() throws Exception {
+        VendingMachineDaoJournalImpl testDao = new VendingMachineDaoJournalImpl(
+                snapshotFile, journalFile, Long.MAX_VALUE);
+
+        Item firstItem = createTestItem("A1", "Twinkle Pie", 5, "2.50");
+        Item secondItem = createTestItem("A2", "Ginger Mints", 6, "3.00");
+        testDao.createItem("A1", firstItem);
+        testDao.createItem("A2", secondItem);
+
+        Item updatedItem = createTestItem("A1", "Twinkle Pie", 4, "2.50");
+        testDao.updateItem("A1", updatedItem);
+        testDao.deleteItem("A2");
+        testDao.close();
+
+        VendingMachineDao reopenedDao = new VendingMachineDaoJournalImpl(
+                snapshotFile, journalFile, Long.MAX_VALUE);
+        List<Item> itemList = reopenedDao.getAllItems();
+        assertEquals(1, itemList.size(), "Only A1 should remain.");
+        assertEquals(updatedItem, itemList.get(0),
+                "A1 should have the updated stock.");
+    }
+
+    @Test
+    public void testTornRecordIsSkipped() throws Exception {
+        VendingMachineDaoJournalImpl testDao = new VendingMachineDaoJournalImpl(
+                snapshotFile, journalFile, Long.MAX_VALUE);
+        Item item = createTestItem("A1", "Twinkle Pie", 5, "2.50");
+        testDao.createItem("A1", item);
+        testDao.close();
+
+        // half written record: a length and crc with no payload after it
+        try (FileOutputStream out = new FileOutputStream(journalFile, true)) {
+            out.write(new byte[] {0, 0, 0, 40, 1, 2, 3, 4, 1});
+        }
+
+        VendingMachineDaoJournalImpl reopenedDao =
+                new VendingMachineDaoJournalImpl(
+                        snapshotFile, journalFile, Long.MAX_VALUE);
+        assertEquals(item, reopenedDao.getItem("A1"),
+                "The intact record should be replayed.");
+
+        Item secondItem = createTestItem("A2", "Ginger Mints", 6, "3.00");
+        reopenedDao.createItem("A2", secondItem);
+        reopenedDao.close();
+
+        VendingMachineDao finalDao = new VendingMachineDaoJournalImpl(
+                snapshotFile, journalFile, Long.MAX_VALUE);
+        assertEquals(2, finalDao.getAllItems().size(),
+                "A record appended after the torn one should be replayed.");
+    }
+
+    @Test
+    public void testCompaction() throws Exception {
+        VendingMachineDaoJournalImpl testDao =
+                new VendingMachineDaoJournalImpl(snapshotFile, journalFile, 1);
+        testDao.createItem("A1", createTestItem("A1", "Twinkle Pie", 5, "2.50"));
+        testDao.createItem("A2", createTestItem("A2", "Ginger Mints", 6, "3.00"));
+        testDao.close();
+
+        List<String> snapshot = Files.readAllLines(new File(snapshotFile).toPath());
+        assertFalse(snapshot.isEmpty(), "Compaction should write a snapshot.");
+
+        VendingMachineDao reopenedDao = new VendingMachineDaoJournalImpl(
+                snapshotFile, journalFile, Long.MAX_VALUE);
+        assertEquals(2, reopenedDao.getAllItems().size(),
+                "Snapshot plus journal should hold both items.");
+    }
+
+    @Test
+    public void testSalesDuringCompaction() throws Exception {
+        VendingMachineDaoJournalImpl testDao =
+                new VendingMachineDaoJournalImpl(snapshotFile, journalFile, 1);
+        testDao.createItem("A1", createTestItem("A1", "Twinkle Pie", 200, "2.50"));
+        for(int i = 0; i < 150; i++) {
+            Item currentItem = testDao.getItem("A1");
+            assertNotNull(testDao.commitSale("A1", currentItem.getVersion()));
+        }
+        testDao.close();
+
+        VendingMachineDao reopenedDao = new VendingMachineDaoJournalImpl(
+                snapshotFile, journalFile, Long.MAX_VALUE);
+        assertEquals(50, reopenedDao.getItem("A1").getNumAvailable(),
+                "Sales journaled while a compaction ran should be kept.");
+    }
+
+    @Test
+    public void testOversizedRecordRejected() throws Exception {
+        VendingMachineDaoJournalImpl testDao = new VendingMachineDaoJournalImpl(
+                snapshotFile, journalFile, Long.MAX_VALUE);
+        String longName = "x".repeat(0xFFFF);
+        assertThrows(PersistenceException.class, () -> testDao.createItem(
+                "A1", createTestItem("A1", longName, 5, "2.50")));
+        assertNull(testDao.getItem("A1"));
+        Item secondItem = createTestItem("A2", "Ginger Mints", 6, "3.00");
+        testDao.createItem("A2", secondItem);
+        testDao.close();
+
+        VendingMachineDao reopenedDao = new VendingMachineDaoJournalImpl(
+                snapshotFile, journalFile, Long.MAX_VALUE);
+        assertNull(reopenedDao.getItem("A1"));
+        assertEquals(secondItem, reopenedDao.getItem("A2"),
+                "Records after the rejected one should be replayed.");
+    }
+
+
+    private Item createTestItem(String locationID, String name, int numAvailable,
+            String price) {
+        Item item = new Item(locationID, name)
+                .withNumAvailable(numAvailable)
+                .withPrice(new BigDecimal(price));
+        return item;
+    }
+
+}
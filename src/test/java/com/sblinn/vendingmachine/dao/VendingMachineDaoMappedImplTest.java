@@ -0,0 +1,196 @@
+package com.sblinn.vendingmachine.dao;
+
+import com.sblinn.vendingmachine.dto.Item;
+import java.io.File;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ *
+ * @author sarablinn
+ */
+public class VendingMachineDaoMappedImplTest {
+
+    /*
+    TEST PLAN:
+
+    testCrudSurvivesReopen() -> createItem(), updateItem(), deleteItem()
+        Create two items, sell one (count only update), rename the other,
+        delete nothing, reopen the file with a new DAO and check both items.
+        Then delete one and check that a new item reuses the freed slot.
+
+    testGrowth() -> rebuild when the slots run out
+        Create more items than the default slot capacity and check that all of
+        them can be read back after reopening.
+
+    testCommitSale() -> commitSale()
+        Create A1 with 2 in stock. Sell it down at the versions read, check
+        that a sale at a stale version and a sale of the sold out slot are
+        refused, and that the count survives reopening the file.
+
+    testConverterRoundTrip() -> InventoryFormatConverter
+        Convert a text inventory to binary and back, and check that the text
+        is unchanged.
+
+    testLongLocationIDRejected() -> createItem(), InventoryFormatConverter
+        Creating an item whose location ID is longer than
+        MAX_LOCATION_ID_LENGTH --> PersistenceException, and the DAO still
+        works. Moving A1 to a location ID that is too long -->
+        PersistenceException, and A1 is still there after reopening.
+        Converting a text inventory holding such an ID -->
+        PersistenceException and no binary file is written.
+    */
+
+
+    private Path tempDir;
+    private String dataFile;
+
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        tempDir = Files.createTempDirectory("mappedtest");
+        dataFile = tempDir.resolve("inventory.dat").toString();
+    }
+
+    @AfterEach
+    public void tearDown() throws Exception {
+        for(File file : tempDir.toFile().listFiles()) {
+            file.delete();
+        }
+        Files.delete(tempDir);
+    }
+
+
+    @Test
+    public void testCrudSurvivesReopen() throws Exception {
+        VendingMachineDaoMappedImpl testDao =
+                new VendingMachineDaoMappedImpl(dataFile);
+        testDao.createItem("A1", createTestItem("A1", "Twinkle Pie", 5, "2.50"));
+        testDao.createItem("A2", createTestItem("A2", "Ginger Mints", 6, "3.00"));
+
+        Item soldItem = createTestItem("A1", "Twinkle Pie", 4, "2.50");
+        testDao.updateItem("A1", soldItem);
+        Item renamedItem = createTestItem("A2", "Corn Krispies", 6, "1.53");
+        testDao.updateItem("A2", renamedItem);
+        testDao.close();
+
+        VendingMachineDaoMappedImpl reopenedDao =
+                new VendingMachineDaoMappedImpl(dataFile);
+        assertEquals(soldItem, reopenedDao.getItem("a1"),
+                "A1 should have the sold down count.");
+        assertEquals(renamedItem, reopenedDao.getItem("A2"),
+                "A2 should have the new name and price.");
+
+        Item deletedItem = reopenedDao.deleteItem("A1");
+        assertEquals(soldItem, deletedItem, "Deleted item should be A1.");
+        assertNull(reopenedDao.getItem("A1"), "A1 was removed.");
+
+        Item newItem = createTestItem("B1", "Potato Snaps", 1, "3.21");
+        reopenedDao.createItem("B1", newItem);
+        assertEquals(Arrays.asList(renamedItem, newItem),
+                reopenedDao.getAllItems(), "A2 and B1 should remain.");
+    }
+
+    @Test
+    public void testGrowth() throws Exception {
+        VendingMachineDaoMappedImpl testDao =
+                new VendingMachineDaoMappedImpl(dataFile);
+        for(int i = 0; i < 500; i++) {
+            testDao.createItem("C" + i,
+                    createTestItem("C" + i, "Item number " + i, i, "1.00"));
+        }
+        testDao.close();
+
+        List<Item> itemList = new VendingMachineDaoMappedImpl(dataFile)
+                .getAllItems();
+        assertEquals(500, itemList.size(), "All 500 items should be stored.");
+        assertTrue(itemList.contains(
+                createTestItem("C499", "Item number 499", 499, "1.00")));
+    }
+
+    @Test
+    public void testCommitSale() throws Exception {
+        VendingMachineDaoMappedImpl testDao =
+                new VendingMachineDaoMappedImpl(dataFile);
+        testDao.createItem("A1", createTestItem("A1", "Twinkle Pie", 2, "2.50"));
+        Item a1 = testDao.getItem("A1");
+
+        Item soldItem = testDao.commitSale("a1", a1.getVersion());
+        assertEquals(createTestItem("A1", "Twinkle Pie", 1, "2.50"), soldItem);
+        assertTrue(soldItem.getVersion() > a1.getVersion());
+        assertNull(testDao.commitSale("A1", a1.getVersion()),
+                "A sale at a stale version should be refused.");
+
+        Item lastItem = testDao.commitSale("A1", soldItem.getVersion());
+        assertEquals(0, lastItem.getNumAvailable());
+        assertNull(testDao.commitSale("A1", lastItem.getVersion()),
+                "A sold out slot should not be sold.");
+        assertNull(testDao.commitSale("B1", 0));
+        testDao.close();
+
+        assertEquals(0, new VendingMachineDaoMappedImpl(dataFile)
+                .getItem("A1").getNumAvailable());
+    }
+
+    @Test
+    public void testConverterRoundTrip() throws Exception {
+        Path textFile = tempDir.resolve("inventory.txt");
+        Path convertedFile = tempDir.resolve("converted.txt");
+        List<String> lines = Arrays.asList(
+                "A1::Twinkle Pie::2::2.50",
+                "A2::Corn Krispies::2::1.53",
+                "A3::Potato Snaps::0::3.21");
+        Files.write(textFile, lines);
+
+        assertEquals(3, InventoryFormatConverter.textToBinary(
+                textFile.toString(), dataFile));
+        assertEquals(3, InventoryFormatConverter.binaryToText(
+                dataFile, convertedFile.toString()));
+        assertEquals(lines, Files.readAllLines(convertedFile),
+                "Round trip should give back the same text.");
+    }
+
+    @Test
+    public void testLongLocationIDRejected() throws Exception {
+        VendingMachineDaoMappedImpl testDao =
+                new VendingMachineDaoMappedImpl(dataFile);
+        assertThrows(PersistenceException.class, () -> testDao.createItem(
+                "A123456789", createTestItem("A123456789", "Long", 1, "1.00")));
+        testDao.createItem("A1", createTestItem("A1", "Twinkle Pie", 5, "2.50"));
+        assertEquals(1, testDao.getAllItems().size());
+        assertThrows(PersistenceException.class, () -> testDao.updateItem(
+                "A1", createTestItem("A123456789", "Twinkle Pie", 5, "2.50")));
+        testDao.close();
+        assertEquals(createTestItem("A1", "Twinkle Pie", 5, "2.50"),
+                new VendingMachineDaoMappedImpl(dataFile).getItem("A1"),
+                "A failed move should keep the item.");
+
+        Path textFile = tempDir.resolve("inventory.txt");
+        String otherFile = tempDir.resolve("other.dat").toString();
+        Files.write(textFile, Arrays.asList(
+                "A1::Twinkle Pie::2::2.50",
+                "A123456789::Corn Krispies::2::1.53"));
+        assertThrows(PersistenceException.class,
+                () -> InventoryFormatConverter.textToBinary(
+                        textFile.toString(), otherFile));
+        assertFalse(Files.exists(Path.of(otherFile)),
+                "Nothing should be converted.");
+    }
+
+
+    private Item createTestItem(String locationID, String name, int numAvailable,
+            String price) {
+        Item item = new Item(locationID, name)
+                .withNumAvailable(numAvailable)
+                .withPrice(new BigDecimal(price));
+        return item;
+    }
+
+}
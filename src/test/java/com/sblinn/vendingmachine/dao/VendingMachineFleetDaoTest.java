@@ -0,0 +1,114 @@
+
+package com.sblinn.vendingmachine.dao;
+
+import com.sblinn.vendingmachine.dto.Item;
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ *
+ * @author sarablinn
+ */
+public class VendingMachineFleetDaoTest {
+    
+    /*
+    TEST PLAN:
+    
+    - Each test gets a temp fleet directory holding inventories for machines 
+        M1, M2 and M3, each with one Item at A1 whose name is the machine ID.
+        The fleet DAO holds at most 2 inventories.
+    
+    testMachinesAreSeparate() - get A1 through each machine's DAO, then 
+                update M1's A1.
+                   --> Each machine returns its own item.
+                   --> Only M1's item changes, and machine IDs are case 
+                        insensitive.
+    
+    testLeastRecentlyUsedEviction() - use M1, M2, M1, then M3, then update M2.
+                   --> At most 2 inventories are ever loaded.
+                   --> M2's update is on disk and seen after it is reloaded.
+    
+    testUnknownMachine() - use machine M9, which has no file, and machine 
+                "../M1".
+                   --> PersistenceException for M9, IllegalArgumentException 
+                        for the invalid ID.
+    */
+    
+    
+    private Path fleetDirectory;
+    private VendingMachineFleetDao fleetDao;
+    
+    @BeforeEach
+    public void setUp() throws Exception {
+        fleetDirectory = Files.createTempDirectory("fleet");
+        for(String machineID : Arrays.asList("M1", "M2", "M3")) {
+            Files.write(fleetDirectory.resolve(machineID + ".txt"), 
+                    Arrays.asList("A1::" + machineID + "::5::2.50"));
+        }
+        fleetDao = new VendingMachineFleetDao(fleetDirectory.toString(), 2);
+    }
+    
+    @AfterEach
+    public void tearDown() {
+        for(File file : fleetDirectory.toFile().listFiles()) {
+            file.delete();
+        }
+        fleetDirectory.toFile().delete();
+    }
+    
+    
+    @Test
+    public void testMachinesAreSeparate() throws Exception {
+        VendingMachineDao m1 = fleetDao.forMachine("M1");
+        assertEquals("M1", m1.getItem("A1").getName());
+        assertEquals("M2", fleetDao.forMachine("M2").getItem("A1").getName());
+        
+        Item updated = m1.getItem("A1").withNumAvailable(4);
+        m1.updateItem("A1", updated);
+        
+        assertEquals(4, fleetDao.forMachine("m1").getItem("A1")
+                .getNumAvailable());
+        assertEquals(5, fleetDao.forMachine("M2").getItem("A1")
+                .getNumAvailable());
+    }
+    
+    @Test
+    public void testLeastRecentlyUsedEviction() throws Exception {
+        VendingMachineDao m1 = fleetDao.forMachine("M1");
+        VendingMachineDao m2 = fleetDao.forMachine("M2");
+        VendingMachineDao m3 = fleetDao.forMachine("M3");
+        
+        m1.getAllItems();
+        m2.getAllItems();
+        m1.getAllItems();
+        assertEquals(2, fleetDao.getLoadedCount());
+        // M2 is the least recently used, so M3 evicts it
+        m3.getAllItems();
+        assertEquals(2, fleetDao.getLoadedCount());
+        
+        Item updated = m2.getItem("A1").withNumAvailable(1);
+        m2.updateItem("A1", updated);
+        assertEquals(2, fleetDao.getLoadedCount());
+        
+        assertTrue(Files.readAllLines(fleetDirectory.resolve("M2.txt"))
+                .contains("A1::M2::1::2.50"));
+        m1.getAllItems();
+        m3.getAllItems();
+        assertEquals(1, m2.getItem("A1").getNumAvailable());
+    }
+    
+    @Test
+    public void testUnknownMachine() {
+        assertThrows(PersistenceException.class, 
+                () -> fleetDao.forMachine("M9").getAllItems());
+        assertThrows(IllegalArgumentException.class, 
+                () -> fleetDao.forMachine("../M1"));
+    }
+    
+}
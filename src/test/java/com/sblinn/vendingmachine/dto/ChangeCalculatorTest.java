@@ -0,0 +1,134 @@
+package com.sblinn.vendingmachine.dto;
+
+import java.math.BigDecimal;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ *
+ * @author sarablinn
+ */
+public class ChangeCalculatorTest {
+    
+    /*
+    TEST PLAN:
+    
+    testAllCoins()
+        $0.91 --> 3 quarters, 1 dime, 1 nickel, 1 penny.
+    
+    testLargeRefund()
+        $10,000.04 --> 40,000 quarters and 4 pennies.
+    
+    testReusesHolder()
+        Calculate $0.30 then $0.05 into the same Change. The second result 
+        should not keep coins from the first, and the holder is returned.
+    
+    testDenominationSubset()
+        Calculator with only dimes and nickels (given out of order).
+        $0.35 --> 3 dimes, 1 nickel. $0.36 --> IllegalArgumentException.
+    
+    testGreedyFailingDenominations()
+        Calculator with only quarters and dimes, where largest-coin-first 
+        fails. $0.30 --> 3 dimes, $0.55 --> 1 quarter and 3 dimes, 
+        $100.05 --> 399 quarters and 3 dimes, $0.20 --> 2 dimes. 
+        $0.15 and $0.05 --> IllegalArgumentException. With quarters, dimes 
+        and pennies, $0.30 --> 3 dimes rather than 1 quarter and 5 pennies.
+    
+    testBigDecimalConstructor()
+        new Change(BigDecimal) for "5", "1.5" and "0.07" should be $5.00, 
+        $1.50 and $0.07.
+    */
+    
+    
+    @Test
+    public void testAllCoins() {
+        Change change = ChangeCalculator.ALL_COINS.calculate(91, 
+                new Change(0, 0, 0, 0));
+        
+        assertEquals(3, change.getNumQuarters());
+        assertEquals(1, change.getNumDimes());
+        assertEquals(1, change.getNumNickels());
+        assertEquals(1, change.getNumPennies());
+    }
+    
+    @Test
+    public void testLargeRefund() {
+        Change change = new Change(Money.ofCents(1_000_004));
+        
+        assertEquals(40_000, change.getNumQuarters());
+        assertEquals(4, change.getNumPennies());
+        assertEquals(1_000_004, change.getChangeValue().getCents());
+    }
+    
+    @Test
+    public void testReusesHolder() {
+        Change holder = new Change(0, 0, 0, 0);
+        ChangeCalculator.ALL_COINS.calculate(30, holder);
+        
+        Change result = ChangeCalculator.ALL_COINS.calculate(5, holder);
+        
+        assertSame(holder, result);
+        assertEquals(0, holder.getNumQuarters());
+        assertEquals(1, holder.getNumNickels());
+        assertEquals(5, holder.getChangeValue().getCents());
+    }
+    
+    @Test
+    public void testDenominationSubset() {
+        ChangeCalculator calculator = 
+                new ChangeCalculator(Coin.NICKEL, Coin.DIME);
+        Change holder = new Change(0, 0, 0, 0);
+        
+        calculator.calculate(35, holder);
+        assertEquals(3, holder.getNumCoins(Coin.DIME));
+        assertEquals(1, holder.getNumCoins(Coin.NICKEL));
+        
+        assertThrows(IllegalArgumentException.class, 
+                () -> calculator.calculate(36, holder));
+    }
+    
+    @Test
+    public void testGreedyFailingDenominations() {
+        ChangeCalculator calculator = 
+                new ChangeCalculator(Coin.QUARTER, Coin.DIME);
+        Change holder = new Change(0, 0, 0, 0);
+        
+        calculator.calculate(30, holder);
+        assertEquals(0, holder.getNumQuarters());
+        assertEquals(3, holder.getNumDimes());
+        
+        calculator.calculate(55, holder);
+        assertEquals(1, holder.getNumQuarters());
+        assertEquals(3, holder.getNumDimes());
+        
+        calculator.calculate(10_005, holder);
+        assertEquals(399, holder.getNumQuarters());
+        assertEquals(3, holder.getNumDimes());
+        
+        calculator.calculate(20, holder);
+        assertEquals(0, holder.getNumQuarters());
+        assertEquals(2, holder.getNumDimes());
+        
+        assertThrows(IllegalArgumentException.class, 
+                () -> calculator.calculate(15, holder));
+        assertThrows(IllegalArgumentException.class, 
+                () -> calculator.calculate(5, holder));
+        
+        new ChangeCalculator(Coin.QUARTER, Coin.DIME, Coin.PENNY)
+                .calculate(30, holder);
+        assertEquals(3, holder.getNumDimes());
+        assertEquals(0, holder.getNumQuarters());
+        assertEquals(0, holder.getNumPennies());
+    }
+    
+    @Test
+    public void testBigDecimalConstructor() {
+        assertEquals(500, new Change(new BigDecimal("5"))
+                .getChangeValue().getCents());
+        assertEquals(150, new Change(new BigDecimal("1.5"))
+                .getChangeValue().getCents());
+        assertEquals(7, new Change(new BigDecimal("0.07"))
+                .getChangeValue().getCents());
+    }
+    
+}
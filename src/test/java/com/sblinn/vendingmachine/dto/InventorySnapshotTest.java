@@ -0,0 +1,84 @@
+package com.sblinn.vendingmachine.dto;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ *
+ * @author sarablinn
+ */
+public class InventorySnapshotTest {
+
+    /*
+    TEST PLAN:
+
+    testWithItemKeepsOriginal()
+        Snapshot of 200 items (more than one chunk), every other one sold out.
+        Sell out one in-stock item and restock one sold out item with
+        withItems, then add a new location ID with withItem and remove one
+        with withoutItem. Each new snapshot should have the given version,
+        the changed Items, and an empty slot count and in-stock list that
+        match its Items. The original snapshot should not change.
+    */
+
+
+    @Test
+    public void testWithItemKeepsOriginal() {
+        List<Item> items = new ArrayList<>();
+        for(int i = 0; i < 200; i++) {
+            items.add(new Item(String.format("A%03d", i), "Item " + i,
+                    i % 2, Money.ofCents(100)));
+        }
+        InventorySnapshot original = new InventorySnapshot(1, items);
+        assertEquals(100, original.getEmptySlotCount());
+
+        Map<String, Item> updates = new HashMap<>();
+        updates.put("A001", original.getItem("A001").withNumAvailable(0));
+        updates.put("A150", original.getItem("A150").withNumAvailable(5));
+        InventorySnapshot updated = original.withItems(2, updates);
+
+        assertEquals(2, updated.getVersion());
+        assertEquals(0, updated.getItem("a001").getNumAvailable());
+        assertEquals(5, updated.getItem("A150").getNumAvailable());
+        assertEquals(100, updated.getEmptySlotCount());
+        assertEquals(countInStock(updated), updated.getInStockItems().size());
+        assertEquals(200, updated.getItems().size());
+
+        InventorySnapshot added = updated.withItem(3, "B001",
+                new Item("B001", "New", 0, Money.ofCents(50)));
+        assertEquals(201, added.getItemCount());
+        assertEquals(101, added.getEmptySlotCount());
+        assertEquals("B001", added.getItems().get(200).getLocationID());
+
+        InventorySnapshot removed = added.withoutItem(4, "A150");
+        assertNull(removed.getItem("A150"));
+        assertEquals(200, removed.getItemCount());
+        assertEquals(countInStock(removed),
+                removed.getItemCount() - removed.getEmptySlotCount());
+        assertEquals(10, removed.getItemsByRow("A01").size());
+
+        // the original is untouched
+        assertEquals(1, original.getItem("A001").getNumAvailable());
+        assertEquals(0, original.getItem("A150").getNumAvailable());
+        assertEquals(100, original.getEmptySlotCount());
+        assertNull(original.getItem("B001"));
+        assertEquals(1, original.withItems(5, Collections.emptyMap())
+                .getItem("A001").getNumAvailable());
+    }
+
+
+    private int countInStock(InventorySnapshot snapshot) {
+        int inStock = 0;
+        for(Item item : snapshot.getItems()) {
+            if(item.getNumAvailable() != 0) {
+                inStock++;
+            }
+        }
+        return inStock;
+    }
+}
@@ -0,0 +1,129 @@
+package com.sblinn.vendingmachine.jfr;
+
+import com.sblinn.vendingmachine.dao.VendingMachineAuditDaoFileImpl;
+import com.sblinn.vendingmachine.dao.VendingMachineDaoFileImpl;
+import com.sblinn.vendingmachine.service.VendingMachineServiceLayerImpl;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.PrintWriter;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ *
+ * @author sarablinn
+ */
+public class VendingMachineEventsTest {
+
+    /*
+    TEST PLAN:
+
+    Record a sale of A1 ($2.50, paid with $3.00) through the service layer over
+    a file DAO and a file audit DAO in a temp directory, with every vending 
+    machine event enabled.
+
+    testSaleRecordsEvents()
+        --> one Sale event for A1, SUCCESS, 300 inserted and 50 change.
+        --> InventoryLoad with 2 items and the file's size in bytes.
+        --> InventoryWrite with 2 items.
+        --> AuditWrite with 1 entry and some bytes.
+        --> ChangeCalculation for 50 cents with 2 coins.
+    */
+
+
+    private Path directory;
+
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        directory = Files.createTempDirectory("jfr-test");
+    }
+
+    @AfterEach
+    public void tearDown() throws Exception {
+        for(File file : directory.toFile().listFiles()) {
+            file.delete();
+        }
+        Files.delete(directory);
+    }
+
+
+    @Test
+    public void testSaleRecordsEvents() throws Exception {
+        File inventoryFile = directory.resolve("inventory.txt").toFile();
+        try (PrintWriter out = new PrintWriter(new FileWriter(inventoryFile))) {
+            out.println("A1::Twinkle Pies::5::2.50");
+            out.println("A2::Ginger Mints::2::3.00");
+        }
+        long inventoryBytes = inventoryFile.length();
+        VendingMachineAuditDaoFileImpl auditDao = 
+                new VendingMachineAuditDaoFileImpl(
+                        directory.resolve("audit.txt").toString());
+        VendingMachineServiceLayerImpl service = 
+                new VendingMachineServiceLayerImpl(
+                        new VendingMachineDaoFileImpl(inventoryFile.getPath()),
+                        auditDao);
+
+        Path recordingFile = directory.resolve("sale.jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable("com.sblinn.vendingmachine.*");
+            recording.start();
+            service.sellItem("A1", new BigDecimal("3.00"));
+            recording.stop();
+            recording.dump(recordingFile);
+        } finally {
+            auditDao.close();
+        }
+        List<RecordedEvent> events = RecordingFile.readAllEvents(recordingFile);
+
+        RecordedEvent sale = only(events, "com.sblinn.vendingmachine.Sale");
+        assertEquals("A1", sale.getString("locationID"));
+        assertEquals("SUCCESS", sale.getString("outcome"));
+        assertEquals(300, sale.getLong("insertedCents"));
+        assertEquals(50, sale.getLong("changeCents"));
+
+        RecordedEvent load = first(events,
+                "com.sblinn.vendingmachine.InventoryLoad");
+        assertEquals(2, load.getInt("itemCount"));
+        assertEquals(inventoryBytes, load.getLong("bytesRead"));
+
+        RecordedEvent write = first(events,
+                "com.sblinn.vendingmachine.InventoryWrite");
+        assertEquals(2, write.getInt("itemCount"));
+
+        RecordedEvent audit = first(events,
+                "com.sblinn.vendingmachine.AuditWrite");
+        assertEquals(1, audit.getInt("entryCount"));
+        assertTrue(audit.getLong("bytesWritten") > 0);
+
+        RecordedEvent change = only(events,
+                "com.sblinn.vendingmachine.ChangeCalculation");
+        assertEquals(50, change.getLong("amountCents"));
+        assertEquals(2, change.getInt("coinCount"));
+    }
+
+
+    private RecordedEvent first(List<RecordedEvent> events, String name) {
+        return events.stream()
+                .filter((e) -> e.getEventType().getName().equals(name))
+                .findFirst()
+                .orElseThrow(() -> new AssertionError("No " + name + " event"));
+    }
+
+    private RecordedEvent only(List<RecordedEvent> events, String name) {
+        assertEquals(1, events.stream()
+                .filter((e) -> e.getEventType().getName().equals(name))
+                .count(), "Expected one " + name + " event");
+        return first(events, name);
+    }
+
+}
@@ -0,0 +1,74 @@
+package com.sblinn.vendingmachine.metrics;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ *
+ * @author sarablinn
+ */
+public class LatencyHistogramTest {
+    
+    /*
+    TEST PLAN:
+    
+    testBucketsCoverValues()
+        For values across the whole long range, the bucket a value lands in 
+        should have an upper bound at or above the value and within 1/16 of it.
+    
+    testPercentiles()
+        Record 1 to 10,000 microseconds once each.
+        --> p50 near 5,000us, p99 near 9,900us, p99.9 near 9,990us, each 
+            within 7%, max exactly 10,000us, count 10,000.
+    
+    testEmptyAndReset()
+        Empty histogram reports 0 for everything, also after reset().
+    */
+    
+    
+    @Test
+    public void testBucketsCoverValues() {
+        for(long value = 0; value < Long.MAX_VALUE / 3 && value >= 0; 
+                value = value * 3 / 2 + 1) {
+            long upperBound = LatencyHistogram.bucketUpperBound(
+                    LatencyHistogram.bucketIndex(value));
+            assertTrue(upperBound >= value, "Upper bound below " + value);
+            assertTrue(upperBound - value <= value / 16, 
+                    "Bucket too wide for " + value);
+        }
+    }
+    
+    @Test
+    public void testPercentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for(long micros = 1; micros <= 10_000; micros++) {
+            histogram.record(micros * 1000);
+        }
+        
+        assertEquals(10_000, histogram.getCount());
+        assertEquals(10_000_000, histogram.getMaxNanos());
+        assertWithin(5_000_000, histogram.getPercentileNanos(50));
+        assertWithin(9_900_000, histogram.getPercentileNanos(99));
+        assertWithin(9_990_000, histogram.getPercentileNanos(99.9));
+    }
+    
+    @Test
+    public void testEmptyAndReset() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.getPercentileNanos(99));
+        
+        histogram.record(42);
+        histogram.reset();
+        
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getMaxNanos());
+        assertEquals(0, histogram.getPercentileNanos(50));
+    }
+    
+    
+    private void assertWithin(long expected, long actual) {
+        assertTrue(Math.abs(actual - expected) <= expected * 0.07, 
+                "Expected about " + expected + " but was " + actual);
+    }
+    
+}
@@ -0,0 +1,158 @@
+package com.sblinn.vendingmachine.server;
+
+import com.sblinn.vendingmachine.service.VendingMachineAuditDaoStubImpl;
+import com.sblinn.vendingmachine.service.VendingMachineDaoStubImpl;
+import com.sblinn.vendingmachine.service.VendingMachineServiceLayerImpl;
+import com.sblinn.vendingmachine.ui.UserIOSocketImpl;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ *
+ * @author sarablinn
+ */
+public class VendingMachineServerTest {
+
+    /*
+    TEST PLAN:
+
+    Start a server on a free localhost port, sharing one service over the DAO
+    stub (A1 Twinkle Pies, 5 in stock, $2.50), and drive it with kiosk
+    clients speaking the MSG/ASK line protocol.
+
+    testPurchaseOverSocket()
+        Insert 12 quarters, buy A1 and exit. The kiosk should see the purchase
+        banner, $0.50 in change and the exit banner.
+
+    testSessionsHaveSeparateBalances()
+        Two kiosks connect at once. After the first inserts coins, the second
+        should still see a $0.00 balance.
+    */
+
+
+    private VendingMachineServer server;
+
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        server = new VendingMachineServer(new VendingMachineServiceLayerImpl(
+                new VendingMachineDaoStubImpl(),
+                new VendingMachineAuditDaoStubImpl()), 0, 4);
+        server.start();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        server.close();
+    }
+
+
+    @Test
+    public void testPurchaseOverSocket() throws Exception {
+        try (Kiosk kiosk = new Kiosk(server.getPort())) {
+            kiosk.answer("1");  // insert coins
+            kiosk.answer("12"); // quarters
+            kiosk.answer("0");  // dimes
+            kiosk.answer("0");  // nickels
+            kiosk.answer("0");  // pennies
+            kiosk.answer("");   // continue
+            kiosk.answer("2");  // purchase
+            kiosk.answer("A1");
+            kiosk.answer("");   // continue
+            kiosk.answer("3");  // exit
+            kiosk.readToEnd();
+
+            assertTrue(kiosk.messages.contains(
+                    "=== ITEM PURCHASE SUCCESSFUL ==="));
+            assertTrue(kiosk.messages.contains("Total change returned: $0.50"));
+            assertEquals("Good Bye.",
+                    kiosk.messages.get(kiosk.messages.size() - 1));
+        }
+    }
+
+    @Test
+    public void testSessionsHaveSeparateBalances() throws Exception {
+        try (Kiosk first = new Kiosk(server.getPort());
+                Kiosk second = new Kiosk(server.getPort())) {
+            first.answer("1");
+            first.answer("4");
+            first.answer("0");
+            first.answer("0");
+            first.answer("0");
+            first.answer("");   // continue, after the balance is shown
+            assertTrue(first.messages.contains("Balance: $1.00"),
+                    "First kiosk should have a $1.00 balance.");
+
+            // the second kiosk's first menu is already waiting for it
+            second.messages.clear();
+            second.answer("1");
+            second.answer("0");
+            second.answer("0");
+            second.answer("0");
+            second.answer("0");
+            second.answer("");
+            assertTrue(second.messages.contains("Balance: $0.00"),
+                    "Second kiosk should have its own empty balance.");
+        }
+    }
+
+
+    /**
+     * Minimal kiosk client: collects MSG lines and answers ASK lines.
+     */
+    private static class Kiosk implements AutoCloseable {
+
+        private final Socket socket;
+        private final BufferedReader in;
+        private final PrintWriter out;
+        private final List<String> messages = new ArrayList<>();
+
+        Kiosk(int port) throws IOException {
+            socket = new Socket(InetAddress.getLoopbackAddress(), port);
+            in = new BufferedReader(new InputStreamReader(
+                    socket.getInputStream(), StandardCharsets.UTF_8));
+            out = new PrintWriter(new OutputStreamWriter(
+                    socket.getOutputStream(), StandardCharsets.UTF_8), true);
+        }
+
+        /**
+         * Reads up to the next prompt and answers it.
+         */
+        void answer(String answer) throws IOException {
+            String line;
+            while((line = in.readLine()) != null) {
+                if(line.startsWith(UserIOSocketImpl.PROMPT)) {
+                    out.println(answer);
+                    return;
+                }
+                messages.add(line.substring(UserIOSocketImpl.MESSAGE.length()));
+            }
+            fail("Server closed the connection before prompting.");
+        }
+
+        void readToEnd() throws IOException {
+            String line;
+            while((line = in.readLine()) != null) {
+                messages.add(line.substring(UserIOSocketImpl.MESSAGE.length()));
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            socket.close();
+        }
+    }
+
+}
@@ -0,0 +1,165 @@
+package com.sblinn.vendingmachine.service;
+
+import com.sblinn.vendingmachine.dto.Change;
+import com.sblinn.vendingmachine.dto.Money;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ *
+ * @author sarablinn
+ */
+public class CoinHopperTest {
+    
+    /*
+    TEST PLAN:
+    
+    testDispenseGreedy()
+        Hopper with plenty of every coin, dispense $0.41.
+        --> 1 quarter, 1 dime, 1 nickel, 1 penny, and those coins leave the 
+            hopper.
+    
+    testDispenseWhenGreedyFails()
+        Hopper with 1 quarter and 3 dimes only, dispense $0.30. Greedy takes
+        the quarter and is stuck with 5 cents.
+        --> 3 dimes, and the quarter stays in the hopper.
+    
+    testDispenseExactChangeUnavailable()
+        Hopper with 2 dimes only, dispense $0.15.
+        --> ExactChangeUnavailableException, hopper unchanged.
+    
+    testDepositFeedsChange()
+        Empty hopper cannot make $0.25 until a quarter is deposited.
+    
+    testDepositRejectsNegativeCounts()
+        Depositing a negative count of any coin --> IllegalArgumentException 
+        and the hopper is unchanged.
+    
+    testTableFollowsUsableCounts()
+        Hopper with 40 quarters and 3 dimes only, dispense $0.30 (3 dimes), 
+        then deposit and dispense quarters, which a table up to $0.30 can 
+        only use one of. Deposit 3 dimes and dispense $0.30 again --> 3 
+        dimes. Dispense $0.30 once more with no dimes left --> 
+        ExactChangeUnavailableException.
+    
+    testLargeHopperMatchesBruteForce()
+        Hopper of about 500 mixed coins with no pennies. Every amount up to 
+        $5.00 should be makeable exactly when a brute force search says so, and
+        with no more coins than the brute force minimum.
+    */
+    
+    
+    @Test
+    public void testDispenseGreedy() throws Exception {
+        CoinHopper hopper = new CoinHopper(10, 10, 10, 10);
+        
+        Change change = hopper.dispense(Money.ofCents(41));
+        
+        assertEquals(1, change.getNumQuarters());
+        assertEquals(1, change.getNumDimes());
+        assertEquals(1, change.getNumNickels());
+        assertEquals(1, change.getNumPennies());
+        assertEquals(9, hopper.getCoins().getNumQuarters());
+        assertEquals(9, hopper.getCoins().getNumPennies());
+    }
+    
+    @Test
+    public void testDispenseWhenGreedyFails() throws Exception {
+        CoinHopper hopper = new CoinHopper(1, 3, 0, 0);
+        
+        Change change = hopper.dispense(Money.ofCents(30));
+        
+        assertEquals(0, change.getNumQuarters());
+        assertEquals(3, change.getNumDimes());
+        assertEquals(1, hopper.getCoins().getNumQuarters(), 
+                "The quarter should still be in the hopper.");
+    }
+    
+    @Test
+    public void testDispenseExactChangeUnavailable() {
+        CoinHopper hopper = new CoinHopper(0, 2, 0, 0);
+        
+        try {
+            hopper.dispense(Money.ofCents(15));
+            fail("Expected ExactChangeUnavailableException was not thrown.");
+        } catch(ExactChangeUnavailableException e) {
+            assertEquals(2, hopper.getCoins().getNumDimes(), 
+                    "Hopper should be unchanged.");
+        }
+    }
+    
+    @Test
+    public void testDepositFeedsChange() {
+        CoinHopper hopper = new CoinHopper();
+        assertFalse(hopper.canMakeChange(Money.ofCents(25)));
+        
+        hopper.deposit(new Change(1, 0, 0, 0));
+        
+        assertTrue(hopper.canMakeChange(Money.ofCents(25)));
+    }
+    
+    @Test
+    public void testDepositRejectsNegativeCounts() {
+        CoinHopper hopper = new CoinHopper(1, 1, 1, 1);
+        
+        assertThrows(IllegalArgumentException.class, 
+                () -> hopper.deposit(new Change(2, 0, 0, -1)));
+        assertThrows(IllegalArgumentException.class, 
+                () -> hopper.deposit(new Change(0, -5, 0, 0)));
+        
+        Change coins = hopper.getCoins();
+        assertEquals(1, coins.getNumQuarters());
+        assertEquals(1, coins.getNumDimes());
+        assertEquals(1, coins.getNumNickels());
+        assertEquals(1, coins.getNumPennies());
+    }
+    
+    @Test
+    public void testTableFollowsUsableCounts() throws Exception {
+        CoinHopper hopper = new CoinHopper(40, 3, 0, 0);
+        
+        assertEquals(3, hopper.dispense(Money.ofCents(30)).getNumDimes());
+        hopper.deposit(new Change(2, 0, 0, 0));
+        assertEquals(1, hopper.dispense(Money.ofCents(25)).getNumQuarters());
+        hopper.deposit(new Change(0, 3, 0, 0));
+        
+        Change change = hopper.dispense(Money.ofCents(30));
+        assertEquals(3, change.getNumDimes());
+        assertEquals(0, change.getNumQuarters());
+        assertThrows(ExactChangeUnavailableException.class, 
+                () -> hopper.dispense(Money.ofCents(30)));
+        assertEquals(41, hopper.getCoins().getNumQuarters());
+    }
+    
+    @Test
+    public void testLargeHopperMatchesBruteForce() {
+        int quarters = 7, dimes = 180, nickels = 313;
+        CoinHopper hopper = new CoinHopper(quarters, dimes, nickels, 0);
+        
+        for(int amount = 0; amount <= 500; amount++) {
+            int fewest = Integer.MAX_VALUE;
+            for(int q = 0; q <= quarters && q * 25 <= amount; q++) {
+                for(int d = 0; d <= dimes && q * 25 + d * 10 <= amount; d++) {
+                    int rest = amount - q * 25 - d * 10;
+                    if(rest % 5 == 0 && rest / 5 <= nickels) {
+                        fewest = Math.min(fewest, q + d + rest / 5);
+                    }
+                }
+            }
+            
+            boolean possible = fewest != Integer.MAX_VALUE;
+            assertEquals(possible, hopper.canMakeChange(
+                    Money.ofCents(amount)), "Amount " + amount);
+            if(possible) {
+                CoinHopper copy = new CoinHopper(quarters, dimes, nickels, 0);
+                Money due = Money.ofCents(amount);
+                Change change = assertDoesNotThrow(() -> copy.dispense(due));
+                assertEquals(amount, change.getChangeValue().getCents());
+                assertEquals(fewest, change.getNumQuarters() 
+                        + change.getNumDimes() + change.getNumNickels() 
+                        + change.getNumPennies(), "Coins for " + amount);
+            }
+        }
+    }
+    
+}
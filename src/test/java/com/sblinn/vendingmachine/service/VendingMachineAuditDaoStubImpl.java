@@ -3,6 +3,7 @@ package com.sblinn.vendingmachine.service;
 
 import com.sblinn.vendingmachine.dao.PersistenceException;
 import com.sblinn.vendingmachine.dao.VendingMachineAuditDao;
+import java.util.List;
 
 /**
  * AuditDao Stub implementation used in lieu of the actual AuditDao for testing 
@@ -19,6 +20,14 @@ public class VendingMachineAuditDaoStubImpl implements VendingMachineAuditDao {
         // do nothing
 
     }
+
+    @Override
+    public void writeAuditEntries(List<String> entries) 
+            throws PersistenceException {
+
+        // do nothing
+
+    }
     
     
 }
@@ -24,9 +24,9 @@ public class VendingMachineDaoStubImpl implements VendingMachineDao {
      * Creates a hard-coded Item for the stub.
      */
     public VendingMachineDaoStubImpl() {
-        onlyItem = new Item("A1", "Twinkle Pies");
-        onlyItem.setNumAvailable(5);
-        onlyItem.setPrice(new BigDecimal("2.50"));
+        onlyItem = new Item("A1", "Twinkle Pies")
+                .withNumAvailable(5)
+                .withPrice(new BigDecimal("2.50"));
     }
     
     /**
@@ -1,12 +1,30 @@
 
 package com.sblinn.vendingmachine.service;
 
+import com.sblinn.vendingmachine.dao.InventoryFormatConverter;
+import com.sblinn.vendingmachine.dao.InventoryRowFormat;
 import com.sblinn.vendingmachine.dao.PersistenceException;
 import com.sblinn.vendingmachine.dao.VendingMachineAuditDao;
 import com.sblinn.vendingmachine.dao.VendingMachineDao;
+import com.sblinn.vendingmachine.dao.VendingMachineDaoFileImpl;
+import com.sblinn.vendingmachine.dao.VendingMachineDaoJournalImpl;
+import com.sblinn.vendingmachine.dao.VendingMachineDaoMappedImpl;
+import com.sblinn.vendingmachine.dao.VendingMachineFleetDao;
 import com.sblinn.vendingmachine.dto.Change;
 import com.sblinn.vendingmachine.dto.Item;
+import com.sblinn.vendingmachine.dto.Money;
+import com.sblinn.vendingmachine.dto.SaleRequest;
+import com.sblinn.vendingmachine.dto.SaleResult;
 import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.BeforeEach;
@@ -51,6 +69,73 @@ public class VendingMachineServiceLayerImplTest {
         - Test: Set onlyItem to a version with 0 remaining stock available.
                 locationID = A1, remMoney = 2.50
             --> NoItemInventoryException should be thrown.
+        - Test: 8 threads each try to buy A1 20 times while it has 50 in stock.
+            --> Exactly 50 sales succeed, the rest get NoItemInventoryException,
+                and A1 ends with 0 in stock.
+        - Test: service with a coin hopper holding 2 dimes. Insert 1 quarter 
+                and 1 dime, buy A1 (2.50) with remMoney = 2.65.
+            --> ExactChangeUnavailableException should be thrown, A1 stays at 5
+                and the inserted coins are in the hopper.
+        - Test: service with a coin hopper holding 2 dimes. Insert -1 dime.
+            --> IllegalArgumentException should be thrown and the hopper 
+                still holds 2 dimes.
+        - Test: with sellItem metrics set, sell A1 once for 3.00, once for 
+                2.00 and once from A9.
+            --> Count 3, with 1 success, 1 insufficient funds and 1 invalid 
+                data.
+    
+    testSellItems() - sell a batch of A1 for 3.00, A1 for 2.00, A9 for 3.00 
+                and A1 for 2.50.
+                   --> No exception is thrown, 4 results come back in order.
+                   --> The 1st and 4th succeed with 0.50 and 0.00 change, the 
+                        2nd fails with InsufficientFundsException and the 3rd 
+                        with InvalidDataException.
+                   --> A1 ends with 3 in stock.
+    
+    testImportItems() - with a file DAO over a temp inventory holding A1, 
+                import CSV rows for A1, B1, B1 again, a row with no name and 
+                a row with a bad price.
+                   --> 5 rows read, A1 and B1 imported with A1 replaced, 1 
+                        duplicate (B1) and 2 invalid rows reported.
+                   --> The inventory holds the imported A1 and B1, and 
+                        exporting it as CSV gives the header and their rows.
+    
+    testImportRejectsUnstorableFields() - with a file DAO over an empty 
+                temp inventory, import NDJSON rows whose name holds an 
+                escaped line break, a tab or "::", one whose location ID 
+                holds "::", and one valid row.
+                   --> 4 invalid rows are reported, and the inventory file 
+                        holds only the valid item on one line.
+    
+    testVersionedUpdates() - with a cached file DAO over a temp inventory 
+                holding 5 Twinkle Pies at A1, read A1, sell one, then update 
+                the A1 that was read.
+                   --> StaleItemException is thrown and A1 keeps its name 
+                        with 4 left.
+                   --> Updating with an Item built from scratch succeeds.
+                - with a DAO that restocks A1 to 10 just before the first 
+                    sale is saved, sell A1.
+                   --> The sale is retried against the restocked A1 and 9 
+                        are left.
+                - with a DAO that restocks A1 to 20 just before the first 
+                    batch is saved, sell A1 twice in one batch.
+                   --> The batch is retried against the restocked A1, 18 
+                        are left and the metrics count 2 successful sales.
+    
+    testStaleUpdateOnEveryDao() - over the file, journal, mapped and fleet 
+                DAOs, each freshly opened on 5 Twinkle Pies at A1, read A1, 
+                sell one, then update the A1 that was read. The fleet 
+                machine is evicted and reloaded between the read and the 
+                sale.
+                   --> StaleItemException is thrown and 4 are left, the 
+                        sale is not undone.
+    
+    testFleetServiceRoutesByMachine() - with a fleet of machines M1 and M2, 
+                each holding Twinkle Pies at A1, sell A1 on M1 twice.
+                   --> forMachine returns the same service for m1 and M1.
+                   --> forMachine throws IllegalArgumentException for a 
+                        null or invalid machine ID.
+                   --> M1 has 3 left and M2 still has 5.
     
     */
     
@@ -94,9 +179,9 @@ public class VendingMachineServiceLayerImplTest {
     private void testCreateValidItem() {
         // Create VALID item (valid data, no duplicate ID)
         // --> should not throw any exceptions
-        Item item = new Item("A2", "Ginger Mints");
-        item.setNumAvailable(2);
-        item.setPrice(new BigDecimal("3.00"));
+        Item item = new Item("A2", "Ginger Mints")
+                .withNumAvailable(2)
+                .withPrice(new BigDecimal("3.00"));
         
         try {
             service.createItem(item);
@@ -111,9 +196,9 @@ public class VendingMachineServiceLayerImplTest {
     @Test
     private void testCreateInvalidItem() {
         // Create INVALID item -- missing required name property.
-        Item item = new Item("A2", "");
-        item.setNumAvailable(2);
-        item.setPrice(new BigDecimal("3.00"));
+        Item item = new Item("A2", "")
+                .withNumAvailable(2)
+                .withPrice(new BigDecimal("3.00"));
         
         try {
             service.createItem(item);
@@ -130,9 +215,9 @@ public class VendingMachineServiceLayerImplTest {
     private void testCreateItemDuplicateLocationID() {
         // Create item using duplicate locationID as onlyItem in DAO stub
         // --> should throw DuplicateLocationIDException
-        Item item = new Item("A1", "Ginger Mints");
-        item.setNumAvailable(2);
-        item.setPrice(new BigDecimal("3.00"));
+        Item item = new Item("A1", "Ginger Mints")
+                .withNumAvailable(2)
+                .withPrice(new BigDecimal("3.00"));
         
         try {
             service.createItem(item);
@@ -146,9 +231,9 @@ public class VendingMachineServiceLayerImplTest {
     
     @Test
     private void testGetItemValidLocationID() throws Exception {
-        Item testClone = new Item("A1", "Twinkle Pies");
-        testClone.setNumAvailable(5);
-        testClone.setPrice(new BigDecimal("2.50"));
+        Item testClone = new Item("A1", "Twinkle Pies")
+                .withNumAvailable(5)
+                .withPrice(new BigDecimal("2.50"));
 
         Item retrievedItem = service.getItem("A1");
         assertNotNull(retrievedItem, "Getting item at A1 should not be null.");
@@ -166,9 +251,9 @@ public class VendingMachineServiceLayerImplTest {
     
     @Test
     public void testGetAllItems() throws Exception {
-        Item testClone = new Item("A1", "Twinkle Pies");
-        testClone.setNumAvailable(5);
-        testClone.setPrice(new BigDecimal("2.50"));
+        Item testClone = new Item("A1", "Twinkle Pies")
+                .withNumAvailable(5)
+                .withPrice(new BigDecimal("2.50"));
         
         assertEquals(1, service.getAllItems().size(), 
                 "List should only have 1 Item");
@@ -178,12 +263,11 @@ public class VendingMachineServiceLayerImplTest {
     
     @Test 
     private void testUpdateItem() throws Exception {
-        Item testClone = new Item("A1", "Twinkle Pies");
-        testClone.setNumAvailable(5);
-        testClone.setPrice(new BigDecimal("2.50"));
+        Item testClone = new Item("A1", "Twinkle Pies")
+                .withNumAvailable(5)
+                .withPrice(new BigDecimal("2.50"));
         
-        Item updatedItem = testClone;
-        updatedItem.setName("Ginger Pies");
+        Item updatedItem = testClone.withName("Ginger Pies");
         
         Item retrievedItem;
         // Valid locationID A1
@@ -209,9 +293,9 @@ public class VendingMachineServiceLayerImplTest {
     
     @Test
     public void testDeleteItem() throws Exception {
-        Item testClone = new Item("A1", "Twinkle Pies");
-        testClone.setNumAvailable(5);
-        testClone.setPrice(new BigDecimal("2.50"));
+        Item testClone = new Item("A1", "Twinkle Pies")
+                .withNumAvailable(5)
+                .withPrice(new BigDecimal("2.50"));
         
         Item deletedItem;
         // Correct locationID
@@ -232,9 +316,9 @@ public class VendingMachineServiceLayerImplTest {
     
     @Test
     public void testSellItem() {
-        Item testClone = new Item("A1", "Twinkle Pies");
-        testClone.setNumAvailable(5);
-        testClone.setPrice(new BigDecimal("2.50"));
+        Item testClone = new Item("A1", "Twinkle Pies")
+                .withNumAvailable(5)
+                .withPrice(new BigDecimal("2.50"));
         
         Item retrievedSoldItem;
         
@@ -261,9 +345,9 @@ public class VendingMachineServiceLayerImplTest {
     
     @Test
     public void testSellItemInvalidLocationID() throws Exception {
-        Item testClone = new Item("A1", "Twinkle Pies");
-        testClone.setNumAvailable(5);
-        testClone.setPrice(new BigDecimal("2.50"));
+        Item testClone = new Item("A1", "Twinkle Pies")
+                .withNumAvailable(5)
+                .withPrice(new BigDecimal("2.50"));
         
         Item retrievedUnsoldItem;
         BigDecimal testMoney = new BigDecimal("3.23");
@@ -286,9 +370,9 @@ public class VendingMachineServiceLayerImplTest {
     
     @Test
     public void testSellItemInsufficientFunds() throws Exception {
-        Item testClone = new Item("A1", "Twinkle Pies");
-        testClone.setNumAvailable(5);
-        testClone.setPrice(new BigDecimal("2.50"));
+        Item testClone = new Item("A1", "Twinkle Pies")
+                .withNumAvailable(5)
+                .withPrice(new BigDecimal("2.50"));
         
         Item retrievedUnsoldItem;
         
@@ -311,9 +395,9 @@ public class VendingMachineServiceLayerImplTest {
 
     @Test
     public void testSellItemOutOfStock() {
-        Item item = new Item("A1", "Twinkle Pies");
-        item.setNumAvailable(0);
-        item.setPrice(new BigDecimal("2.50"));
+        Item item = new Item("A1", "Twinkle Pies")
+                .withNumAvailable(0)
+                .withPrice(new BigDecimal("2.50"));
         
         BigDecimal testMoney = new BigDecimal("2.50");
         
@@ -333,4 +417,389 @@ public class VendingMachineServiceLayerImplTest {
             return; // passed
         }
     }
+    
+    @Test
+    public void testConcurrentSellItemNeverOversells() throws Exception {
+        Item item = new Item("A1", "Twinkle Pies")
+                .withNumAvailable(50)
+                .withPrice(new BigDecimal("2.50"));
+        
+        VendingMachineDao dao = new VendingMachineDaoStubImpl(item);
+        VendingMachineAuditDao auditDao = new VendingMachineAuditDaoStubImpl();
+        this.service = new VendingMachineServiceLayerImpl(dao, auditDao);
+        
+        ExecutorService buyers = Executors.newFixedThreadPool(8);
+        List<Future<Integer>> results = new ArrayList<>();
+        for(int i = 0; i < 8; i++) {
+            results.add(buyers.submit(() -> {
+                int sales = 0;
+                for(int attempt = 0; attempt < 20; attempt++) {
+                    try {
+                        service.sellItem("A1", new BigDecimal("3.00"));
+                        sales++;
+                    } catch(NoItemInventoryException e) {
+                        // sold out, expected once 50 sales are made
+                    }
+                }
+                return sales;
+            }));
+        }
+        
+        int totalSales = 0;
+        for(Future<Integer> result : results) {
+            totalSales += result.get();
+        }
+        buyers.shutdown();
+        
+        assertEquals(50, totalSales, "Exactly 50 units should be sold.");
+        assertEquals(0, service.getItem("A1").getNumAvailable(), 
+                "A1 should be sold out.");
+    }
+    
+    @Test
+    public void testSellItemExactChangeUnavailable() throws Exception {
+        CoinHopper hopper = new CoinHopper(0, 2, 0, 0);
+        this.service = new VendingMachineServiceLayerImpl(
+                new VendingMachineDaoStubImpl(), 
+                new VendingMachineAuditDaoStubImpl(), hopper);
+        service.insertMoney(new Change(1, 1, 0, 0));
+        
+        try {
+            service.sellItem("A1", new BigDecimal("2.65"));
+            fail("Expected ExactChangeUnavailableException was not thrown.");
+        } catch(ExactChangeUnavailableException e) {
+            assertEquals(5, service.getItem("A1").getNumAvailable(), 
+                    "A1 should not have been sold.");
+            assertEquals(1, hopper.getCoins().getNumQuarters());
+            assertEquals(3, hopper.getCoins().getNumDimes());
+        }
+    }
+    
+    @Test
+    public void testInsertMoneyRejectsNegativeCounts() throws Exception {
+        CoinHopper hopper = new CoinHopper(0, 2, 0, 0);
+        this.service = new VendingMachineServiceLayerImpl(
+                new VendingMachineDaoStubImpl(), 
+                new VendingMachineAuditDaoStubImpl(), hopper);
+        
+        assertThrows(IllegalArgumentException.class, 
+                () -> service.insertMoney(new Change(0, -1, 0, 0)));
+        assertEquals(2, hopper.getCoins().getNumDimes());
+    }
+    
+    @Test
+    public void testSellItemMetricsCountOutcomes() throws Exception {
+        OperationMetrics sellItemMetrics = new OperationMetrics();
+        VendingMachineServiceLayerImpl serviceImpl = 
+                new VendingMachineServiceLayerImpl(
+                        new VendingMachineDaoStubImpl(), 
+                        new VendingMachineAuditDaoStubImpl());
+        serviceImpl.setSellItemMetrics(sellItemMetrics);
+        
+        serviceImpl.sellItem("A1", new BigDecimal("3.00"));
+        assertThrows(InsufficientFundsException.class, 
+                () -> serviceImpl.sellItem("A1", new BigDecimal("2.00")));
+        assertThrows(InvalidDataException.class, 
+                () -> serviceImpl.sellItem("A9", new BigDecimal("3.00")));
+        
+        assertEquals(3, sellItemMetrics.getCount());
+        assertEquals(1, sellItemMetrics.getSuccessCount());
+        assertEquals(1, sellItemMetrics.getInsufficientFundsCount());
+        assertEquals(1, sellItemMetrics.getInvalidDataCount());
+        assertTrue(sellItemMetrics.getMaxMicros() > 0);
+    }
+    
+    @Test
+    public void testSellItems() throws Exception {
+        List<SaleRequest> orders = Arrays.asList(
+                new SaleRequest("A1", Money.parse("3.00")),
+                new SaleRequest("A1", Money.parse("2.00")),
+                new SaleRequest("A9", Money.parse("3.00")),
+                new SaleRequest("A1", Money.parse("2.50")));
+        
+        List<SaleResult> results = service.sellItems(orders);
+        
+        assertEquals(4, results.size());
+        for(int i = 0; i < orders.size(); i++) {
+            assertSame(orders.get(i), results.get(i).getSaleRequest());
+        }
+        
+        assertTrue(results.get(0).isSuccessful());
+        assertEquals(Money.parse("0.50"), 
+                results.get(0).getChange().getChangeValue());
+        
+        assertFalse(results.get(1).isSuccessful());
+        assertTrue(results.get(1).getFailure() 
+                instanceof InsufficientFundsException);
+        
+        assertFalse(results.get(2).isSuccessful());
+        assertTrue(results.get(2).getFailure() 
+                instanceof InvalidDataException);
+        
+        assertTrue(results.get(3).isSuccessful());
+        assertEquals(Money.ZERO, results.get(3).getChange().getChangeValue());
+        
+        assertEquals(3, service.getItem("A1").getNumAvailable(), 
+                "Two units of A1 should have been sold.");
+    }
+    
+    @Test
+    public void testImportItems() throws Exception {
+        Path inventory = Files.createTempFile("importinventory", ".txt");
+        try {
+            Files.write(inventory, Arrays.asList("A1::Twinkle Pies::5::2.50"));
+            VendingMachineServiceLayer fileService = 
+                    new VendingMachineServiceLayerImpl(
+                            new VendingMachineDaoFileImpl(inventory.toString()),
+                            new VendingMachineAuditDaoStubImpl());
+            
+            ImportReport report = fileService.importItems(Arrays.asList(
+                    "locationID,name,numAvailable,price",
+                    "a1,\"Pies, Twinkle\",8,2.75",
+                    "B1,Gummy Bears,10,1.25",
+                    "B1,Sour Bears,10,1.25",
+                    "C1,,10,1.00",
+                    "C2,Crisps,10,1.005").stream(), InventoryRowFormat.CSV);
+            
+            assertEquals(5, report.getRowsRead());
+            assertEquals(2, report.getImportedCount());
+            assertEquals(1, report.getReplacedCount());
+            assertEquals(1, report.getDuplicateCount());
+            assertEquals(Arrays.asList("B1"), report.getDuplicateLocationIDs());
+            assertEquals(2, report.getInvalidCount());
+            assertEquals(3, report.getRejections().size());
+            
+            Item a1 = fileService.getItem("A1");
+            assertEquals("Pies, Twinkle", a1.getName());
+            assertEquals(8, a1.getNumAvailable());
+            assertEquals(Money.parse("2.75"), a1.getPrice());
+            assertEquals("Gummy Bears", fileService.getItem("B1").getName());
+            assertEquals(2, fileService.getAllItems().size());
+            
+            List<String> exported = new ArrayList<>();
+            assertEquals(2, fileService.exportItems(
+                    InventoryRowFormat.CSV, exported::add));
+            assertEquals(Arrays.asList("locationID,name,numAvailable,price",
+                    "A1,\"Pies, Twinkle\",8,2.75", "B1,Gummy Bears,10,1.25"),
+                    exported);
+        } finally {
+            Files.deleteIfExists(inventory);
+        }
+    }
+    
+    @Test
+    public void testImportRejectsUnstorableFields() throws Exception {
+        Path inventory = Files.createTempFile("importinventory", ".txt");
+        try {
+            VendingMachineServiceLayer fileService = 
+                    new VendingMachineServiceLayerImpl(
+                            new VendingMachineDaoFileImpl(inventory.toString()),
+                            new VendingMachineAuditDaoStubImpl());
+            
+            ImportReport report = fileService.importItems(Arrays.asList(
+                    "{\"locationID\":\"A1\",\"name\":\"Twinkle\\nPies\","
+                            + "\"numAvailable\":5,\"price\":\"2.50\"}",
+                    "{\"locationID\":\"A2\",\"name\":\"Ginger\\tMints\","
+                            + "\"numAvailable\":5,\"price\":\"2.50\"}",
+                    "{\"locationID\":\"A3\",\"name\":\"Crisps::Salted\","
+                            + "\"numAvailable\":5,\"price\":\"2.50\"}",
+                    "{\"locationID\":\"A::4\",\"name\":\"Crisps\","
+                            + "\"numAvailable\":5,\"price\":\"2.50\"}",
+                    "{\"locationID\":\"A5\",\"name\":\"Gummy Bears\","
+                            + "\"numAvailable\":5,\"price\":\"2.50\"}")
+                    .stream(), InventoryRowFormat.NDJSON);
+            
+            assertEquals(5, report.getRowsRead());
+            assertEquals(4, report.getInvalidCount());
+            assertEquals(1, report.getImportedCount());
+            assertEquals(Arrays.asList("A5::Gummy Bears::5::2.50"), 
+                    Files.readAllLines(inventory));
+        } finally {
+            Files.deleteIfExists(inventory);
+        }
+    }
+    
+    @Test
+    public void testVersionedUpdates() throws Exception {
+        Path inventory = Files.createTempFile("versionedinventory", ".txt");
+        try {
+            Files.write(inventory, Arrays.asList("A1::Twinkle Pies::5::2.50"));
+            VendingMachineServiceLayer fileService = 
+                    new VendingMachineServiceLayerImpl(
+                            new VendingMachineDaoFileImpl(
+                                    inventory.toString(), true),
+                            new VendingMachineAuditDaoStubImpl());
+            
+            Item read = fileService.getItem("A1");
+            fileService.sellItem("A1", Money.parse("2.50"));
+            assertThrows(StaleItemException.class, () -> fileService
+                    .updateItem("A1", read.withName("Stale Pies")));
+            assertEquals("Twinkle Pies", fileService.getItem("A1").getName());
+            assertEquals(4, fileService.getItem("A1").getNumAvailable());
+            
+            fileService.updateItem("A1", new Item("A1", "Fresh Pies", 4, 
+                    Money.parse("2.50")));
+            assertEquals("Fresh Pies", fileService.getItem("A1").getName());
+            
+            VendingMachineDao racingDao = new VendingMachineDaoFileImpl(
+                    inventory.toString(), true) {
+                private boolean restocked = false;
+                
+                @Override
+                public synchronized Item commitSale(String locationID, 
+                        long expectedVersion) throws PersistenceException {
+                    if(!restocked) {
+                        restocked = true;
+                        updateItem(locationID, 
+                                getItem(locationID).withNumAvailable(10));
+                    }
+                    return super.commitSale(locationID, expectedVersion);
+                }
+            };
+            VendingMachineServiceLayer racingService = 
+                    new VendingMachineServiceLayerImpl(racingDao, 
+                            new VendingMachineAuditDaoStubImpl());
+            racingService.sellItem("A1", Money.parse("2.50"));
+            assertEquals(9, racingService.getItem("A1").getNumAvailable());
+            
+            VendingMachineDao racingBatchDao = new VendingMachineDaoFileImpl(
+                    inventory.toString(), true) {
+                private boolean restocked = false;
+                
+                @Override
+                public synchronized boolean compareAndUpdateItems(
+                        List<Item> updatedItems, 
+                        Map<String, Long> expectedVersions) 
+                        throws PersistenceException {
+                    if(!restocked) {
+                        restocked = true;
+                        updateItem("A1", getItem("A1").withNumAvailable(20));
+                    }
+                    return super.compareAndUpdateItems(updatedItems, 
+                            expectedVersions);
+                }
+            };
+            OperationMetrics batchMetrics = new OperationMetrics();
+            VendingMachineServiceLayerImpl racingBatchService = 
+                    new VendingMachineServiceLayerImpl(racingBatchDao, 
+                            new VendingMachineAuditDaoStubImpl());
+            racingBatchService.setSellItemMetrics(batchMetrics);
+            List<SaleResult> results = racingBatchService.sellItems(
+                    Arrays.asList(new SaleRequest("A1", Money.parse("2.50")), 
+                            new SaleRequest("A1", Money.parse("2.50"))));
+            assertTrue(results.get(0).isSuccessful());
+            assertTrue(results.get(1).isSuccessful());
+            assertEquals(18, racingBatchService.getItem("A1")
+                    .getNumAvailable());
+            assertEquals(2, batchMetrics.getCount());
+            assertEquals(2, batchMetrics.getSuccessCount());
+        } finally {
+            Files.deleteIfExists(inventory);
+        }
+    }
+    
+    @Test
+    public void testStaleUpdateOnEveryDao() throws Exception {
+        Path directory = Files.createTempDirectory("staleupdates");
+        Path textFile = directory.resolve("file.txt");
+        Path journalFile = directory.resolve("journal.txt");
+        Path dataFile = directory.resolve("mapped.dat");
+        try {
+            for(String file : Arrays.asList("file.txt", "journal.txt", 
+                    "M1.txt", "M2.txt")) {
+                Files.write(directory.resolve(file), 
+                        Arrays.asList("A1::Twinkle Pies::5::2.50"));
+            }
+            InventoryFormatConverter.textToBinary(journalFile.toString(), 
+                    dataFile.toString());
+            
+            assertStaleUpdateRejected(new VendingMachineServiceLayerImpl(
+                    new VendingMachineDaoFileImpl(textFile.toString(), true),
+                    new VendingMachineAuditDaoStubImpl()), () -> { });
+            
+            VendingMachineDaoJournalImpl journalDao = 
+                    new VendingMachineDaoJournalImpl(journalFile.toString());
+            try {
+                assertStaleUpdateRejected(new VendingMachineServiceLayerImpl(
+                        journalDao, new VendingMachineAuditDaoStubImpl()), 
+                        () -> { });
+            } finally {
+                journalDao.close();
+            }
+            
+            VendingMachineDaoMappedImpl mappedDao = 
+                    new VendingMachineDaoMappedImpl(dataFile.toString());
+            try {
+                assertStaleUpdateRejected(new VendingMachineServiceLayerImpl(
+                        mappedDao, new VendingMachineAuditDaoStubImpl()), 
+                        () -> { });
+            } finally {
+                mappedDao.close();
+            }
+            
+            VendingMachineFleetService fleetService = 
+                    new VendingMachineFleetService(
+                            new VendingMachineFleetDao(
+                                    directory.toString(), 1),
+                            new VendingMachineAuditDaoStubImpl());
+            // loading M2 evicts M1, which is reloaded by the sale
+            assertStaleUpdateRejected(fleetService.forMachine("M1"), 
+                    () -> fleetService.forMachine("M2").getItem("A1"));
+        } finally {
+            for(Path file : Files.newDirectoryStream(directory)) {
+                Files.delete(file);
+            }
+            Files.delete(directory);
+        }
+    }
+    
+    private void assertStaleUpdateRejected(VendingMachineServiceLayer service,
+            ServiceCall beforeSale) throws Exception {
+        Item read = service.getItem("A1");
+        beforeSale.run();
+        service.sellItem("A1", Money.parse("2.50"));
+        assertThrows(StaleItemException.class, 
+                () -> service.updateItem("A1", read.withName("Renamed")));
+        assertEquals("Twinkle Pies", service.getItem("A1").getName());
+        assertEquals(4, service.getItem("A1").getNumAvailable());
+    }
+    
+    @FunctionalInterface
+    private interface ServiceCall {
+        void run() throws Exception;
+    }
+    
+    @Test
+    public void testFleetServiceRoutesByMachine() throws Exception {
+        Path fleetDirectory = Files.createTempDirectory("fleet");
+        Path m1File = fleetDirectory.resolve("M1.txt");
+        Path m2File = fleetDirectory.resolve("M2.txt");
+        try {
+            Files.write(m1File, Arrays.asList("A1::Twinkle Pies::5::2.50"));
+            Files.write(m2File, Arrays.asList("A1::Twinkle Pies::5::2.50"));
+            VendingMachineFleetService fleetService = 
+                    new VendingMachineFleetService(
+                            new VendingMachineFleetDao(
+                                    fleetDirectory.toString(), 1),
+                            new VendingMachineAuditDaoStubImpl());
+            
+            assertSame(fleetService.forMachine("M1"), 
+                    fleetService.forMachine("m1"));
+            assertThrows(IllegalArgumentException.class, 
+                    () -> fleetService.forMachine(null));
+            assertThrows(IllegalArgumentException.class, 
+                    () -> fleetService.forMachine("M/1"));
+            fleetService.forMachine("M1").sellItem("A1", Money.parse("2.50"));
+            fleetService.forMachine("M1").sellItem("A1", Money.parse("3.00"));
+            
+            assertEquals(3, fleetService.forMachine("M1").getItem("A1")
+                    .getNumAvailable());
+            assertEquals(5, fleetService.forMachine("M2").getItem("A1")
+                    .getNumAvailable());
+        } finally {
+            Files.deleteIfExists(m1File);
+            Files.deleteIfExists(m2File);
+            Files.deleteIfExists(fleetDirectory);
+        }
+    }
 }
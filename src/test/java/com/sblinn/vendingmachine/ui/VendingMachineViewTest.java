@@ -0,0 +1,116 @@
+
+package com.sblinn.vendingmachine.ui;
+
+import com.sblinn.vendingmachine.dto.Item;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ *
+ * @author sarablinn
+ */
+public class VendingMachineViewTest {
+    
+    /*
+    TEST PLAN:
+    
+    - A recording UserIO keeps every print and answers every readInt with 3.
+    
+    testMenuIsOneWrite() - update the menu with A1 and B1 at version 1, then 
+                print it.
+                   --> Exactly one print, holding the banner, both item lines, 
+                        the balance and the choices in order.
+    
+    testMenuCachedByVersion() - update at version 1, sell one A1, then check 
+                isMenuCurrent and update at version 2.
+                   --> Version 1 is current until version 2 arrives, 
+                        NO_VERSION is never current.
+                   --> The redrawn menu shows A1 with 4 in stock and B1's line 
+                        is unchanged.
+    */
+    
+    
+    private final List<String> printed = new ArrayList<>();
+    private VendingMachineView view;
+    private Item a1;
+    private Item b1;
+    
+    @BeforeEach
+    public void setUp() {
+        printed.clear();
+        view = new VendingMachineView(new RecordingIO());
+        a1 = new Item("A1", "Twinkle Pies")
+                .withNumAvailable(5)
+                .withPrice(new BigDecimal("2.50"));
+        b1 = new Item("B1", "Gummy Bears")
+                .withNumAvailable(2)
+                .withPrice(new BigDecimal("1.25"));
+    }
+    
+    
+    @Test
+    public void testMenuIsOneWrite() {
+        view.updateMenu(1, Arrays.asList(a1, b1));
+        assertEquals(3, view.printVendingMachineMenuAndGetSelection("0.75"));
+        
+        assertEquals(1, printed.size());
+        assertEquals("=== VENDING MACHINE ===\n"
+                + "# A1 : Twinkle Pies (5 in stock) : $2.50\n"
+                + "# B1 : Gummy Bears (2 in stock) : $1.25\n"
+                + "Balance: $0.75\n"
+                + "=======================\n"
+                + "1. Insert Coins\n"
+                + "2. Purchase an Item\n"
+                + "3. Exit", printed.get(0));
+    }
+    
+    @Test
+    public void testMenuCachedByVersion() {
+        view.updateMenu(1, Arrays.asList(a1, b1));
+        view.printVendingMachineMenuAndGetSelection("0.00");
+        String b1Line = printed.get(0).split("\n")[2];
+        
+        assertTrue(view.isMenuCurrent(1));
+        assertFalse(view.isMenuCurrent(-1));
+        
+        a1 = a1.withNumAvailable(4);
+        assertFalse(view.isMenuCurrent(2));
+        view.updateMenu(2, Arrays.asList(a1, b1));
+        assertTrue(view.isMenuCurrent(2));
+        view.printVendingMachineMenuAndGetSelection("0.00");
+        
+        String[] lines = printed.get(1).split("\n");
+        assertEquals("# A1 : Twinkle Pies (4 in stock) : $2.50", lines[1]);
+        assertEquals(b1Line, lines[2]);
+    }
+    
+    
+    private class RecordingIO implements UserIO {
+
+        @Override
+        public void print(String msg) {
+            printed.add(msg);
+        }
+
+        @Override
+        public int readInt(String prompt) {
+            return 3;
+        }
+
+        @Override
+        public int readInt(String prompt, int min, int max) {
+            return 3;
+        }
+
+        @Override
+        public String readString(String prompt) {
+            return "";
+        }
+    }
+    
+}